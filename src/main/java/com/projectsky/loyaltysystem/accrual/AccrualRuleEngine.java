@@ -0,0 +1,50 @@
+package com.projectsky.loyaltysystem.accrual;
+
+import com.projectsky.loyaltysystem.config.AccrualProperties;
+import com.projectsky.loyaltysystem.enums.Category;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Правила подменяются целиком одной атомарной записью: расчеты в процессе дорабатывают на старой версии.
+// Версии только растут: запоздавшая перезагрузка не откатывает узел к старым правилам
+@Component
+@Slf4j
+public class AccrualRuleEngine {
+
+    private final AtomicReference<AccrualRules> rules;
+
+    public AccrualRuleEngine(AccrualProperties properties) {
+        this.rules = new AtomicReference<>(AccrualRules.compile(properties, 0));
+    }
+
+    public int calculatePoints(Category category, BigDecimal price, LocalDateTime purchasedAt) {
+        int ordinal = category == null ? Category.BASIC.ordinal() : category.ordinal();
+        long priceMinor = price.movePointRight(2).setScale(0, RoundingMode.CEILING).longValueExact();
+        return Math.toIntExact(rules.get().points(ordinal, priceMinor, purchasedAt.toLocalDate().toEpochDay()));
+    }
+
+    public AccrualProperties currentRules() {
+        return rules.get().source();
+    }
+
+    public long currentVersion() {
+        return rules.get().version();
+    }
+
+    public boolean replaceRules(AccrualProperties properties, long version) {
+        // Компиляция до подмены: некорректные правила не попадают в работу
+        AccrualRules compiled = AccrualRules.compile(properties, version);
+        AccrualRules previous = rules.getAndUpdate(current -> current.version() < version ? compiled : current);
+        if (previous.version() >= version) {
+            return false;
+        }
+        log.info("Правила начисления баллов обновлены до версии {}, уровней={}, акций={}",
+                version, properties.tiers().size(), properties.campaigns().size());
+        return true;
+    }
+}
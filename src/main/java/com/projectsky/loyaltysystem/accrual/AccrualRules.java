@@ -0,0 +1,91 @@
+package com.projectsky.loyaltysystem.accrual;
+
+import com.projectsky.loyaltysystem.config.AccrualProperties;
+import com.projectsky.loyaltysystem.enums.Category;
+import com.projectsky.loyaltysystem.exception.InvalidAccrualRulesException;
+
+import java.util.List;
+
+// Скомпилированные правила: неизменяемые массивы по ordinal уровня, расчет только в long без аллокаций.
+// Цена передается в копейках, ставка в базисных пунктах, баллы округляются вверх, как и раньше
+public final class AccrualRules {
+
+    // 100 копеек в рубле * 10 000 базисных пунктов
+    private static final long DIVISOR = 1_000_000L;
+    private static final long NO_CAP = Long.MAX_VALUE;
+
+    private final AccrualProperties source;
+    // 0 - правила из конфигурации, иначе версия из accrual_rule_sets
+    private final long version;
+    private final long[] rateBps;
+    private final long[] maxPoints;
+    private final long[] bonusPoints;
+    private final long[] campaignFromDay;
+    private final long[] campaignToDay;
+    private final long[] campaignMultiplierPercent;
+
+    private AccrualRules(AccrualProperties source, long version) {
+        Category[] categories = Category.values();
+        this.source = source;
+        this.version = version;
+        this.rateBps = new long[categories.length];
+        this.maxPoints = new long[categories.length];
+        this.bonusPoints = new long[categories.length];
+        for (Category category : categories) {
+            AccrualProperties.TierRule rule = source.tiers().get(category);
+            if (rule == null) {
+                throw new InvalidAccrualRulesException("Не задано правило начисления для уровня " + category);
+            }
+            if (rule.rateBps() < 0 || rule.bonusPoints() < 0 || (rule.maxPoints() != null && rule.maxPoints() < 0)) {
+                throw new InvalidAccrualRulesException("Отрицательные значения в правиле для уровня " + category);
+            }
+            rateBps[category.ordinal()] = rule.rateBps();
+            maxPoints[category.ordinal()] = rule.maxPoints() == null ? NO_CAP : rule.maxPoints();
+            bonusPoints[category.ordinal()] = rule.bonusPoints();
+        }
+
+        List<AccrualProperties.Campaign> campaigns = source.campaigns();
+        this.campaignFromDay = new long[campaigns.size()];
+        this.campaignToDay = new long[campaigns.size()];
+        this.campaignMultiplierPercent = new long[campaigns.size()];
+        for (int i = 0; i < campaigns.size(); i++) {
+            AccrualProperties.Campaign campaign = campaigns.get(i);
+            if (campaign.from() == null || campaign.to() == null || campaign.to().isBefore(campaign.from())
+                    || campaign.multiplierPercent() < 100) {
+                throw new InvalidAccrualRulesException("Некорректная акция " + campaign.name());
+            }
+            campaignFromDay[i] = campaign.from().toEpochDay();
+            campaignToDay[i] = campaign.to().toEpochDay();
+            campaignMultiplierPercent[i] = campaign.multiplierPercent();
+        }
+    }
+
+    public static AccrualRules compile(AccrualProperties source, long version) {
+        return new AccrualRules(source, version);
+    }
+
+    public AccrualProperties source() {
+        return source;
+    }
+
+    public long version() {
+        return version;
+    }
+
+    public long points(int categoryOrdinal, long priceMinor, long epochDay) {
+        long rate = rateBps[categoryOrdinal];
+        // Деление по частям, чтобы произведение цены на ставку не переполняло long
+        long base = priceMinor / DIVISOR * rate + Math.ceilDiv(priceMinor % DIVISOR * rate, DIVISOR);
+
+        // Акции не суммируются: действует наибольший множитель на дату покупки
+        long multiplier = 100;
+        for (int i = 0; i < campaignFromDay.length; i++) {
+            if (epochDay >= campaignFromDay[i] && epochDay <= campaignToDay[i] && campaignMultiplierPercent[i] > multiplier) {
+                multiplier = campaignMultiplierPercent[i];
+            }
+        }
+        long boosted = Math.ceilDiv(Math.multiplyExact(base, multiplier), 100L);
+
+        return Math.min(boosted, maxPoints[categoryOrdinal]) + bonusPoints[categoryOrdinal];
+    }
+}
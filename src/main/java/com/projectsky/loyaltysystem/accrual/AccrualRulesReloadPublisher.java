@@ -0,0 +1,8 @@
+package com.projectsky.loyaltysystem.accrual;
+
+// Оповещает остальные узлы о новой версии правил начисления
+@FunctionalInterface
+public interface AccrualRulesReloadPublisher {
+
+    void publish(long version);
+}
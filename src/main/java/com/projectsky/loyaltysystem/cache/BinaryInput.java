@@ -0,0 +1,100 @@
+package com.projectsky.loyaltysystem.cache;
+
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+
+public final class BinaryInput {
+
+    static final int DECIMAL_NULL = 0;
+    static final int DECIMAL_LONG = 1;
+    static final int DECIMAL_BIG = 2;
+
+    private final byte[] buffer;
+    private int position;
+
+    public BinaryInput(byte[] buffer, int offset) {
+        this.buffer = buffer;
+        this.position = offset;
+    }
+
+    public int readByte() {
+        if (position >= buffer.length) {
+            throw new SerializationException("Неожиданный конец записи кэша");
+        }
+        return buffer[position++] & 0xFF;
+    }
+
+    public boolean readBoolean() {
+        return readByte() != 0;
+    }
+
+    public long readVarLong() {
+        long zigZag = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = readByte();
+            zigZag |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return (zigZag >>> 1) ^ -(zigZag & 1);
+            }
+        }
+        throw new SerializationException("Некорректное varint-значение в записи кэша");
+    }
+
+    public Long readNullableLong() {
+        return readBoolean() ? readVarLong() : null;
+    }
+
+    public Integer readNullableInt() {
+        return readBoolean() ? Math.toIntExact(readVarLong()) : null;
+    }
+
+    public String readString() {
+        int length = Math.toIntExact(readVarLong());
+        if (length < 0) {
+            return null;
+        }
+        return new String(readBytes(length), StandardCharsets.UTF_8);
+    }
+
+    public byte[] readByteArray() {
+        int length = Math.toIntExact(readVarLong());
+        return length < 0 ? null : readBytes(length);
+    }
+
+    public BigDecimal readDecimal() {
+        int kind = readByte();
+        BigInteger unscaled = switch (kind) {
+            case DECIMAL_NULL -> null;
+            case DECIMAL_LONG -> BigInteger.valueOf(readVarLong());
+            case DECIMAL_BIG -> new BigInteger(readBytes(Math.toIntExact(readVarLong())));
+            default -> throw new SerializationException("Неизвестный формат BigDecimal в записи кэша: " + kind);
+        };
+        return unscaled == null ? null : new BigDecimal(unscaled, Math.toIntExact(readVarLong()));
+    }
+
+    public LocalDateTime readDateTime() {
+        if (!readBoolean()) {
+            return null;
+        }
+        long micros = readVarLong();
+        return LocalDateTime.ofEpochSecond(
+                Math.floorDiv(micros, 1_000_000L),
+                (int) Math.floorMod(micros, 1_000_000L) * 1_000,
+                ZoneOffset.UTC);
+    }
+
+    private byte[] readBytes(int length) {
+        if (position + length > buffer.length) {
+            throw new SerializationException("Неожиданный конец записи кэша");
+        }
+        byte[] bytes = Arrays.copyOfRange(buffer, position, position + length);
+        position += length;
+        return bytes;
+    }
+}
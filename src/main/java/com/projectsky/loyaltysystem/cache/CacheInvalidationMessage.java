@@ -0,0 +1,11 @@
+package com.projectsky.loyaltysystem.cache;
+
+import java.io.Serializable;
+
+// key == null означает сброс всего региона
+public record CacheInvalidationMessage(
+        String origin,
+        String cacheName,
+        Object key
+) implements Serializable {
+}
@@ -0,0 +1,7 @@
+package com.projectsky.loyaltysystem.cache;
+
+@FunctionalInterface
+public interface CacheInvalidationPublisher {
+
+    void publish(CacheInvalidationMessage message);
+}
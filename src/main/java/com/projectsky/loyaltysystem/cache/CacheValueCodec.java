@@ -0,0 +1,16 @@
+package com.projectsky.loyaltysystem.cache;
+
+// Компактное бинарное представление одного типа значений кэша.
+// typeId должен быть уникальным и не меняться; при изменении раскладки полей увеличивается schemaVersion
+public interface CacheValueCodec<T> {
+
+    int typeId();
+
+    Class<T> type();
+
+    int schemaVersion();
+
+    void write(T value, BinaryOutput out);
+
+    T read(BinaryInput in, int schemaVersion);
+}
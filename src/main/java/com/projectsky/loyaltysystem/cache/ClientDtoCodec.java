@@ -0,0 +1,45 @@
+package com.projectsky.loyaltysystem.cache;
+
+import com.projectsky.loyaltysystem.dto.ClientDto;
+import org.springframework.stereotype.Component;
+
+@Component
+public class ClientDtoCodec implements CacheValueCodec<ClientDto> {
+
+    @Override
+    public int typeId() {
+        return 2;
+    }
+
+    @Override
+    public Class<ClientDto> type() {
+        return ClientDto.class;
+    }
+
+    @Override
+    public int schemaVersion() {
+        return 1;
+    }
+
+    @Override
+    public void write(ClientDto value, BinaryOutput out) {
+        out.writeNullableLong(value.id());
+        out.writeString(value.username());
+        out.writeString(value.email());
+        out.writeDecimal(value.balance());
+        out.writeNullableInt(value.points());
+        out.writeString(value.category());
+    }
+
+    @Override
+    public ClientDto read(BinaryInput in, int schemaVersion) {
+        return new ClientDto(
+                in.readNullableLong(),
+                in.readString(),
+                in.readString(),
+                in.readDecimal(),
+                in.readNullableInt(),
+                in.readString()
+        );
+    }
+}
@@ -0,0 +1,50 @@
+package com.projectsky.loyaltysystem.cache;
+
+import com.projectsky.loyaltysystem.dto.ClientFullDto;
+import com.projectsky.loyaltysystem.enums.Category;
+import org.springframework.stereotype.Component;
+
+@Component
+public class ClientFullDtoCodec implements CacheValueCodec<ClientFullDto> {
+
+    @Override
+    public int typeId() {
+        return 1;
+    }
+
+    @Override
+    public Class<ClientFullDto> type() {
+        return ClientFullDto.class;
+    }
+
+    @Override
+    public int schemaVersion() {
+        return 1;
+    }
+
+    @Override
+    public void write(ClientFullDto value, BinaryOutput out) {
+        out.writeNullableLong(value.getId());
+        out.writeString(value.getUsername());
+        out.writeString(value.getEmail());
+        out.writeDecimal(value.getBalance());
+        out.writeNullableInt(value.getPoints());
+        out.writeString(value.getCategory());
+        out.writeDateTime(value.getLastPurchase());
+        out.writeNullableInt(value.getTotalPurchases());
+    }
+
+    @Override
+    public ClientFullDto read(BinaryInput in, int schemaVersion) {
+        return new ClientFullDto(
+                in.readNullableLong(),
+                in.readString(),
+                in.readString(),
+                in.readDecimal(),
+                in.readNullableInt(),
+                Category.valueOf(in.readString()),
+                in.readDateTime(),
+                in.readNullableInt()
+        );
+    }
+}
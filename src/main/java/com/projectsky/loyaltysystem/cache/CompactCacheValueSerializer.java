@@ -0,0 +1,76 @@
+package com.projectsky.loyaltysystem.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+// Формат записи: [маркер][typeId varint][версия схемы][поля кодека].
+// Типы без кодека и записи без маркера (например, оставшиеся от JDK-сериализации) обрабатываются JDK-сериализатором
+@Slf4j
+public class CompactCacheValueSerializer implements RedisSerializer<Object> {
+
+    static final int FORMAT_MARKER = 0xC7;
+
+    private final Map<Class<?>, CacheValueCodec<?>> codecsByType = new HashMap<>();
+    private final Map<Integer, CacheValueCodec<?>> codecsById = new HashMap<>();
+    private final RedisSerializer<Object> fallback = new JdkSerializationRedisSerializer();
+
+    public CompactCacheValueSerializer(Collection<? extends CacheValueCodec<?>> codecs) {
+        for (CacheValueCodec<?> codec : codecs) {
+            if (codecsById.putIfAbsent(codec.typeId(), codec) != null) {
+                throw new IllegalStateException("Повторный typeId кодека кэша: " + codec.typeId());
+            }
+            codecsByType.put(codec.type(), codec);
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public byte[] serialize(Object value) throws SerializationException {
+        if (value == null) {
+            return null;
+        }
+        CacheValueCodec<Object> codec = (CacheValueCodec<Object>) codecsByType.get(value.getClass());
+        if (codec == null) {
+            return fallback.serialize(value);
+        }
+
+        BinaryOutput out = new BinaryOutput(64);
+        out.writeByte(FORMAT_MARKER);
+        out.writeVarLong(codec.typeId());
+        out.writeByte(codec.schemaVersion());
+        codec.write(value, out);
+        return out.toByteArray();
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        if ((bytes[0] & 0xFF) != FORMAT_MARKER) {
+            return fallback.deserialize(bytes);
+        }
+
+        BinaryInput in = new BinaryInput(bytes, 1);
+        int typeId = Math.toIntExact(in.readVarLong());
+        int schemaVersion = in.readByte();
+        CacheValueCodec<?> codec = codecsById.get(typeId);
+        // Запись от более новой версии приложения считается промахом и будет перезаписана
+        if (codec == null || schemaVersion > codec.schemaVersion()) {
+            log.debug("Пропущена запись кэша typeId={} версии={}", typeId, schemaVersion);
+            return null;
+        }
+        return codec.read(in, schemaVersion);
+    }
+
+    @Override
+    public boolean canSerialize(Class<?> type) {
+        return true;
+    }
+}
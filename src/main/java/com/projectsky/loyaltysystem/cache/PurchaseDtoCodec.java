@@ -0,0 +1,43 @@
+package com.projectsky.loyaltysystem.cache;
+
+import com.projectsky.loyaltysystem.dto.PurchaseDto;
+import org.springframework.stereotype.Component;
+
+@Component
+public class PurchaseDtoCodec implements CacheValueCodec<PurchaseDto> {
+
+    @Override
+    public int typeId() {
+        return 3;
+    }
+
+    @Override
+    public Class<PurchaseDto> type() {
+        return PurchaseDto.class;
+    }
+
+    @Override
+    public int schemaVersion() {
+        return 1;
+    }
+
+    @Override
+    public void write(PurchaseDto value, BinaryOutput out) {
+        out.writeNullableLong(value.id());
+        out.writeNullableLong(value.clientId());
+        out.writeString(value.name());
+        out.writeDecimal(value.price());
+        out.writeDateTime(value.purchaseDate());
+    }
+
+    @Override
+    public PurchaseDto read(BinaryInput in, int schemaVersion) {
+        return new PurchaseDto(
+                in.readNullableLong(),
+                in.readNullableLong(),
+                in.readString(),
+                in.readDecimal(),
+                in.readDateTime()
+        );
+    }
+}
@@ -0,0 +1,206 @@
+package com.projectsky.loyaltysystem.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.AbstractValueAdaptingCache;
+
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// Локальный Caffeine перед общим удаленным кэшем. Удаление и очистка рассылаются остальным узлам,
+// чтобы они сбросили свою локальную копию; запись - это заполнение после промаха, ее не рассылаем
+@Slf4j
+public class TwoLevelCache extends AbstractValueAdaptingCache {
+
+    // Сверх этого числа неудавшиеся удаления заменяются одной очисткой удаленного кэша
+    private static final int MAX_PENDING_EVICTS = 10_000;
+
+    private final String name;
+    private final com.github.benmanes.caffeine.cache.Cache<Object, Object> local;
+    private final Cache remote;
+    private final String origin;
+    private final CacheInvalidationPublisher publisher;
+
+    // Удаления, не дошедшие до Redis: до повтора эти ключи читаются мимо удаленного кэша
+    private final Set<Object> pendingEvicts = ConcurrentHashMap.newKeySet();
+    private volatile boolean pendingClear;
+
+    private final LongAdder localHits = new LongAdder();
+    private final LongAdder remoteHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder puts = new LongAdder();
+
+    public TwoLevelCache(String name,
+                         com.github.benmanes.caffeine.cache.Cache<Object, Object> local,
+                         Cache remote,
+                         String origin,
+                         CacheInvalidationPublisher publisher) {
+        super(false);
+        this.name = name;
+        this.local = local;
+        this.remote = remote;
+        this.origin = origin;
+        this.publisher = publisher;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public com.github.benmanes.caffeine.cache.Cache<Object, Object> getNativeCache() {
+        return local;
+    }
+
+    @Override
+    protected Object lookup(Object key) {
+        Object value = local.getIfPresent(key);
+        if (value != null) {
+            localHits.increment();
+            return value;
+        }
+        if (pendingClear || pendingEvicts.contains(key)) {
+            misses.increment();
+            return null;
+        }
+
+        ValueWrapper remoteValue = remote.get(key);
+        if (remoteValue == null || remoteValue.get() == null) {
+            misses.increment();
+            return null;
+        }
+
+        remoteHits.increment();
+        local.put(key, remoteValue.get());
+        return remoteValue.get();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        Object cached = lookup(key);
+        if (cached != null) {
+            return (T) cached;
+        }
+
+        T value;
+        try {
+            value = valueLoader.call();
+        } catch (Exception e) {
+            throw new ValueRetrievalException(key, valueLoader, e);
+        }
+        put(key, value);
+        return value;
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        if (value == null) {
+            evict(key);
+            return;
+        }
+        // Локальную копию кладем только после удачной записи в Redis, иначе узел разойдется с остальными
+        local.invalidate(key);
+        if (writeRemote(() -> remote.put(key, value), "запись", key)) {
+            // Свежее значение заменило устаревшее в Redis: повторять удаление уже не нужно
+            pendingEvicts.remove(key);
+            local.put(key, value);
+            puts.increment();
+        }
+    }
+
+    @Override
+    public void evict(Object key) {
+        local.invalidate(key);
+        if (!writeRemote(() -> remote.evict(key), "удаление", key)) {
+            if (pendingEvicts.size() < MAX_PENDING_EVICTS) {
+                pendingEvicts.add(key);
+            } else {
+                pendingClear = true;
+            }
+        }
+        publish(key);
+    }
+
+    @Override
+    public void clear() {
+        local.invalidateAll();
+        if (!writeRemote(remote::clear, "очистка", null)) {
+            pendingClear = true;
+        }
+        publish(null);
+    }
+
+    // Повтор неудавшихся удалений и очистки, пока Redis не примет их. Возвращает число оставшихся
+    public int repairRemote() {
+        if (pendingClear && retryRemote(remote::clear)) {
+            pendingClear = false;
+            pendingEvicts.clear();
+        }
+        for (Object key : pendingEvicts) {
+            if (!retryRemote(() -> remote.evict(key))) {
+                break;
+            }
+            pendingEvicts.remove(key);
+        }
+        return pendingEvicts.size() + (pendingClear ? 1 : 0);
+    }
+
+    public void invalidateLocal(Object key) {
+        if (key == null) {
+            local.invalidateAll();
+        } else {
+            local.invalidate(key);
+        }
+    }
+
+    public long localHitCount() {
+        return localHits.sum();
+    }
+
+    public long remoteHitCount() {
+        return remoteHits.sum();
+    }
+
+    public long missCount() {
+        return misses.sum();
+    }
+
+    public long putCount() {
+        return puts.sum();
+    }
+
+    // Записи выполняются после коммита, вне CacheErrorHandler: сбой Redis не должен превращать
+    // уже закоммиченную операцию в ошибку. Неудавшееся удаление повторяет repairRemote
+    private boolean writeRemote(Runnable operation, String action, Object key) {
+        try {
+            operation.run();
+            return true;
+        } catch (RuntimeException e) {
+            log.warn("Не удалось выполнить {} в удаленном кэше={} для ключа={}", action, name, key, e);
+            return false;
+        }
+    }
+
+    private boolean retryRemote(Runnable operation) {
+        try {
+            operation.run();
+            return true;
+        } catch (RuntimeException e) {
+            log.debug("Удаленный кэш={} все еще недоступен", name, e);
+            return false;
+        }
+    }
+
+    private void publish(Object key) {
+        try {
+            publisher.publish(new CacheInvalidationMessage(origin, name, key));
+        } catch (RuntimeException e) {
+            // Рассылка best-effort: локальные копии на других узлах все равно истекут по TTL
+            log.warn("Не удалось разослать инвалидацию кэша={} для ключа={}", name, key, e);
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.projectsky.loyaltysystem.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.interceptor.CacheErrorHandler;
+
+// Недоступный Redis не должен ронять запросы: ошибка чтения считается промахом и запрос идет в базу
+@Slf4j
+public class TwoLevelCacheErrorHandler implements CacheErrorHandler {
+
+    @Override
+    public void handleCacheGetError(RuntimeException exception, Cache cache, Object key) {
+        log.warn("Ошибка чтения из кэша={} для ключа={}, читаем из базы", cache.getName(), key, exception);
+    }
+
+    @Override
+    public void handleCachePutError(RuntimeException exception, Cache cache, Object key, Object value) {
+        log.warn("Ошибка записи в кэш={} для ключа={}", cache.getName(), key, exception);
+    }
+
+    @Override
+    public void handleCacheEvictError(RuntimeException exception, Cache cache, Object key) {
+        log.warn("Ошибка удаления из кэша={} для ключа={}", cache.getName(), key, exception);
+    }
+
+    @Override
+    public void handleCacheClearError(RuntimeException exception, Cache cache) {
+        log.warn("Ошибка очистки кэша={}", cache.getName(), exception);
+    }
+}
@@ -0,0 +1,69 @@
+package com.projectsky.loyaltysystem.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.transaction.AbstractTransactionSupportingCacheManager;
+import org.springframework.cache.transaction.TransactionAwareCacheDecorator;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Function;
+
+public class TwoLevelCacheManager extends AbstractTransactionSupportingCacheManager {
+
+    private final String origin = UUID.randomUUID().toString();
+    private final CacheManager remoteCacheManager;
+    private final Collection<String> cacheNames;
+    private final Function<String, String> localSpecs;
+    private final CacheInvalidationPublisher publisher;
+
+    public TwoLevelCacheManager(CacheManager remoteCacheManager,
+                                Collection<String> cacheNames,
+                                Function<String, String> localSpecs,
+                                CacheInvalidationPublisher publisher) {
+        this.remoteCacheManager = remoteCacheManager;
+        this.cacheNames = List.copyOf(cacheNames);
+        this.localSpecs = localSpecs;
+        this.publisher = publisher;
+        // Запись и инвалидация выполняются после коммита, как и в локальном режиме
+        setTransactionAware(true);
+    }
+
+    @Override
+    protected Collection<? extends Cache> loadCaches() {
+        return cacheNames.stream()
+                .map(name -> new TwoLevelCache(
+                        name,
+                        Caffeine.from(localSpecs.apply(name)).recordStats().build(),
+                        remoteCacheManager.getCache(name),
+                        origin,
+                        publisher))
+                .toList();
+    }
+
+    public void onInvalidation(CacheInvalidationMessage message) {
+        if (origin.equals(message.origin())) {
+            return;
+        }
+
+        if (unwrap(lookupCache(message.cacheName())) instanceof TwoLevelCache twoLevelCache) {
+            twoLevelCache.invalidateLocal(message.key());
+        }
+    }
+
+    public int repairRemote() {
+        int pending = 0;
+        for (String name : getCacheNames()) {
+            if (unwrap(lookupCache(name)) instanceof TwoLevelCache twoLevelCache) {
+                pending += twoLevelCache.repairRemote();
+            }
+        }
+        return pending;
+    }
+
+    private Cache unwrap(Cache cache) {
+        return cache instanceof TransactionAwareCacheDecorator decorator ? decorator.getTargetCache() : cache;
+    }
+}
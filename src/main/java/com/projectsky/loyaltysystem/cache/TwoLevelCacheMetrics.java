@@ -0,0 +1,57 @@
+package com.projectsky.loyaltysystem.cache;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.binder.cache.CacheMeterBinder;
+
+public class TwoLevelCacheMetrics extends CacheMeterBinder<TwoLevelCache> {
+
+    public TwoLevelCacheMetrics(TwoLevelCache cache, Iterable<Tag> tags) {
+        super(cache, cache.getName(), tags);
+    }
+
+    @Override
+    protected Long size() {
+        TwoLevelCache cache = getCache();
+        return cache == null ? null : cache.getNativeCache().estimatedSize();
+    }
+
+    @Override
+    protected long hitCount() {
+        TwoLevelCache cache = getCache();
+        return cache == null ? 0 : cache.localHitCount() + cache.remoteHitCount();
+    }
+
+    @Override
+    protected Long missCount() {
+        TwoLevelCache cache = getCache();
+        return cache == null ? null : cache.missCount();
+    }
+
+    @Override
+    protected Long evictionCount() {
+        TwoLevelCache cache = getCache();
+        return cache == null ? null : cache.getNativeCache().stats().evictionCount();
+    }
+
+    @Override
+    protected long putCount() {
+        TwoLevelCache cache = getCache();
+        return cache == null ? 0 : cache.putCount();
+    }
+
+    @Override
+    protected void bindImplementationSpecificMetrics(MeterRegistry registry) {
+        FunctionCounter.builder("cache.tier.hits", getCache(), TwoLevelCache::localHitCount)
+                .tags(getTagsWithCacheName())
+                .tag("tier", "local")
+                .description("Hits served by the local cache tier")
+                .register(registry);
+        FunctionCounter.builder("cache.tier.hits", getCache(), TwoLevelCache::remoteHitCount)
+                .tags(getTagsWithCacheName())
+                .tag("tier", "remote")
+                .description("Hits served by the remote cache tier")
+                .register(registry);
+    }
+}
@@ -0,0 +1,48 @@
+package com.projectsky.loyaltysystem.config;
+
+import com.projectsky.loyaltysystem.accrual.AccrualRulesReloadPublisher;
+import com.projectsky.loyaltysystem.service.AccrualRulesService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+@Configuration
+@EnableConfigurationProperties(AccrualProperties.class)
+@Slf4j
+public class AccrualConfig {
+
+    // Несколько узлов: о новой версии правил оповещает Redis pub/sub, как и об инвалидации кэша
+    @Bean
+    @ConditionalOnProperty(name = "loyalty.cache.mode", havingValue = "two-level")
+    public AccrualRulesReloadPublisher accrualRulesReloadPublisher(
+            StringRedisTemplate redisTemplate,
+            @Value("${loyalty.accrual.reload-channel:loyalty:accrual-rules}") String channel) {
+        return version -> redisTemplate.convertAndSend(channel, Long.toString(version));
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "loyalty.cache.mode", havingValue = "two-level")
+    public RedisMessageListenerContainer accrualRulesReloadListenerContainer(
+            RedisConnectionFactory connectionFactory,
+            AccrualRulesService accrualRulesService,
+            @Value("${loyalty.accrual.reload-channel:loyalty:accrual-rules}") String channel) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener((message, pattern) -> {
+            try {
+                accrualRulesService.reload();
+            } catch (RuntimeException e) {
+                // Версию подхватит периодическая проверка
+                log.warn("Не удалось перезагрузить правила начисления по оповещению", e);
+            }
+        }, new ChannelTopic(channel));
+        return container;
+    }
+}
@@ -0,0 +1,44 @@
+package com.projectsky.loyaltysystem.config;
+
+import com.projectsky.loyaltysystem.enums.Category;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+// Описание правил начисления баллов: ставка по уровню клиента в базисных пунктах от цены,
+// потолок и фиксированный бонус за покупку, а также акции-множители по датам
+@ConfigurationProperties(prefix = "loyalty.accrual")
+public record AccrualProperties(
+        Map<Category, TierRule> tiers,
+        List<Campaign> campaigns
+) {
+
+    public AccrualProperties {
+        if (tiers == null || tiers.isEmpty()) {
+            tiers = Arrays.stream(Category.values())
+                    .collect(Collectors.toMap(Function.identity(), category -> new TierRule(500, null, 0)));
+        }
+        tiers = Map.copyOf(tiers);
+        campaigns = campaigns == null ? List.of() : List.copyOf(campaigns);
+    }
+
+    public record TierRule(
+            int rateBps,
+            Long maxPoints,
+            long bonusPoints
+    ) {
+    }
+
+    public record Campaign(
+            String name,
+            LocalDate from,
+            LocalDate to,
+            int multiplierPercent
+    ) {
+    }
+}
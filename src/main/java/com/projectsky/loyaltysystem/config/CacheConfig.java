@@ -0,0 +1,32 @@
+package com.projectsky.loyaltysystem.config;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.cache.transaction.TransactionAwareCacheManagerProxy;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.List;
+
+@Configuration
+@EnableConfigurationProperties(LoyaltyCacheProperties.class)
+public class CacheConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "loyalty.cache.mode", havingValue = "local", matchIfMissing = true)
+    public CacheManager cacheManager(LoyaltyCacheProperties properties) {
+        CaffeineCacheManager caffeineCacheManager = new CaffeineCacheManager();
+        // Пустой список отключает создание регионов на лету: доступны только объявленные в CacheNames
+        caffeineCacheManager.setCacheNames(List.of());
+        for (String region : CacheNames.ALL) {
+            caffeineCacheManager.registerCustomCache(region, Caffeine.from(properties.specFor(region))
+                    .recordStats()
+                    .build());
+        }
+        // Запись и инвалидация выполняются после коммита, чтобы в кэш не попадало незафиксированное состояние
+        return new TransactionAwareCacheManagerProxy(caffeineCacheManager);
+    }
+}
@@ -0,0 +1,18 @@
+package com.projectsky.loyaltysystem.config;
+
+import java.util.List;
+
+// Каждый регион хранит значения ровно одного типа
+public final class CacheNames {
+
+    // ClientFullDto по id клиента
+    public static final String CLIENT_SUMMARY = "clientSummary";
+
+    // PurchaseDto по id покупки
+    public static final String PURCHASE = "purchase";
+
+    public static final List<String> ALL = List.of(CLIENT_SUMMARY, PURCHASE);
+
+    private CacheNames() {
+    }
+}
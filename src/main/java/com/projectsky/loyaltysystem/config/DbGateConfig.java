@@ -0,0 +1,37 @@
+package com.projectsky.loyaltysystem.config;
+
+import com.projectsky.loyaltysystem.datasource.ConnectionGateDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+@Configuration
+@ConditionalOnProperty(prefix = "loyalty.db.gate", name = "enabled", havingValue = "true")
+@Slf4j
+public class DbGateConfig {
+
+    // static: постпроцессор создается раньше остальных бинов, свойства читаются напрямую из окружения
+    @Bean
+    static BeanPostProcessor connectionGatePostProcessor(Environment environment) {
+        DbGateProperties properties = Binder.get(environment)
+                .bindOrCreate("loyalty.db.gate", DbGateProperties.class);
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                // Ограничивается каждый пул отдельно; маршрутизирующие обертки над пулами не трогаем
+                if (!(bean instanceof HikariDataSource hikari)) {
+                    return bean;
+                }
+                int permits = properties.permits() > 0 ? properties.permits() : hikari.getMaximumPoolSize();
+                log.info("Доступ к источнику данных {} ограничен: разрешений={}, ожидание={}, очередь={}",
+                        beanName, permits, properties.acquireTimeout(), properties.maxWaiting());
+                return new ConnectionGateDataSource(hikari, permits, properties.acquireTimeout(), properties.maxWaiting());
+            }
+        };
+    }
+}
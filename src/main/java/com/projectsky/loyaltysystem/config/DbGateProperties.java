@@ -0,0 +1,23 @@
+package com.projectsky.loyaltysystem.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+// permits = 0 - по размеру пула Hikari
+@ConfigurationProperties(prefix = "loyalty.db.gate")
+public record DbGateProperties(
+        int permits,
+        Duration acquireTimeout,
+        int maxWaiting
+) {
+
+    public DbGateProperties {
+        if (acquireTimeout == null) {
+            acquireTimeout = Duration.ofSeconds(5);
+        }
+        if (maxWaiting <= 0) {
+            maxWaiting = 10_000;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.projectsky.loyaltysystem.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.projectsky.loyaltysystem.idempotency.IdempotencyFilter;
+import com.projectsky.loyaltysystem.idempotency.IdempotencyStore;
+import com.projectsky.loyaltysystem.idempotency.LocalIdempotencyStore;
+import com.projectsky.loyaltysystem.idempotency.TwoLevelIdempotencyStore;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.web.util.pattern.PathPatternParser;
+
+import java.util.List;
+import java.util.concurrent.Executors;
+
+// Режим хранилища следует режиму кэша: один узел - только память, несколько узлов - память перед Redis
+@Configuration
+@EnableConfigurationProperties(IdempotencyProperties.class)
+public class IdempotencyConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "loyalty.cache.mode", havingValue = "local", matchIfMissing = true)
+    public IdempotencyStore localIdempotencyStore(IdempotencyProperties properties) {
+        return localStore(properties);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "loyalty.cache.mode", havingValue = "two-level")
+    public IdempotencyStore twoLevelIdempotencyStore(IdempotencyProperties properties,
+                                                     RedisConnectionFactory connectionFactory) {
+        RedisTemplate<String, byte[]> redisTemplate = new RedisTemplate<>();
+        redisTemplate.setConnectionFactory(connectionFactory);
+        redisTemplate.setKeySerializer(RedisSerializer.string());
+        redisTemplate.setValueSerializer(RedisSerializer.byteArray());
+        redisTemplate.afterPropertiesSet();
+        return new TwoLevelIdempotencyStore(localStore(properties), redisTemplate,
+                properties.ttl(), properties.lockTimeout());
+    }
+
+    @Bean
+    public FilterRegistrationBean<IdempotencyFilter> idempotencyFilter(IdempotencyStore store,
+                                                                       IdempotencyProperties properties,
+                                                                       ObjectMapper objectMapper) {
+        PathPatternParser parser = PathPatternParser.defaultInstance;
+        List<IdempotencyFilter.Endpoint> endpoints = List.of(
+                // Только одиночная покупка: пакетная загрузка читает тело потоком
+                new IdempotencyFilter.Endpoint("POST", parser.parse("/api/purchase/{clientId:\\d+}")),
+                new IdempotencyFilter.Endpoint("PATCH", parser.parse("/api/purchase/{purchaseId}/refund")),
+                new IdempotencyFilter.Endpoint("PATCH", parser.parse("/api/client/{clientId}/balance"))
+        );
+        // Свой поток, а не бин: общий планировщик занят джобами, а бин ScheduledExecutorService
+        // отключил бы планировщик Spring Boot. Три продления за lockTimeout переживают один сбой Redis
+        FilterRegistrationBean<IdempotencyFilter> registration = new FilterRegistrationBean<>(
+                new IdempotencyFilter(store, objectMapper, endpoints, properties.maxBodySize(),
+                        Executors.newSingleThreadScheduledExecutor(
+                                Thread.ofPlatform().name("idempotency-renewal").daemon().factory()),
+                        properties.lockTimeout().dividedBy(3)));
+        registration.addUrlPatterns("/api/purchase/*", "/api/client/*");
+        return registration;
+    }
+
+    private LocalIdempotencyStore localStore(IdempotencyProperties properties) {
+        return new LocalIdempotencyStore(properties.maxEntries(), properties.ttl(), properties.lockTimeout());
+    }
+}
@@ -0,0 +1,29 @@
+package com.projectsky.loyaltysystem.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "loyalty.idempotency")
+public record IdempotencyProperties(
+        Duration ttl,
+        Duration lockTimeout,
+        long maxEntries,
+        int maxBodySize
+) {
+
+    public IdempotencyProperties {
+        if (ttl == null) {
+            ttl = Duration.ofHours(24);
+        }
+        if (lockTimeout == null) {
+            lockTimeout = Duration.ofSeconds(30);
+        }
+        if (maxEntries <= 0) {
+            maxEntries = 100_000;
+        }
+        if (maxBodySize <= 0) {
+            maxBodySize = 64 * 1024;
+        }
+    }
+}
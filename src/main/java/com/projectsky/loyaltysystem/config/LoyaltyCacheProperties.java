@@ -0,0 +1,40 @@
+package com.projectsky.loyaltysystem.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.Map;
+
+@ConfigurationProperties(prefix = "loyalty.cache")
+public record LoyaltyCacheProperties(
+        String mode,
+        String defaultSpec,
+        Map<String, String> regions,
+        Duration remoteTtl,
+        String invalidationChannel,
+        String codec
+) {
+
+    public LoyaltyCacheProperties {
+        if (mode == null || mode.isBlank()) {
+            mode = "local";
+        }
+        if (defaultSpec == null || defaultSpec.isBlank()) {
+            defaultSpec = "maximumSize=10000,expireAfterWrite=10m";
+        }
+        regions = regions == null ? Map.of() : Map.copyOf(regions);
+        if (remoteTtl == null) {
+            remoteTtl = Duration.ofMinutes(30);
+        }
+        if (invalidationChannel == null || invalidationChannel.isBlank()) {
+            invalidationChannel = "loyalty:cache:invalidation";
+        }
+        if (codec == null || codec.isBlank()) {
+            codec = "compact";
+        }
+    }
+
+    public String specFor(String region) {
+        return regions.getOrDefault(region, defaultSpec);
+    }
+}
@@ -0,0 +1,49 @@
+package com.projectsky.loyaltysystem.config;
+
+import com.projectsky.loyaltysystem.metrics.DbStatementMetricsFilter;
+import com.projectsky.loyaltysystem.metrics.ServiceTimingInterceptor;
+import com.projectsky.loyaltysystem.metrics.StatementCountingInspector;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.aop.Advisor;
+import org.springframework.aop.support.DefaultPointcutAdvisor;
+import org.springframework.aop.support.annotation.AnnotationMatchingPointcut;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Role;
+import org.springframework.core.Ordered;
+import org.springframework.stereotype.Service;
+
+@Configuration
+public class MetricsConfig {
+
+    // Время вызова каждого метода сервисов. Таймер стоит снаружи повторов и транзакции: в замер входят
+    // ожидание соединения, коммит и все попытки. Вызовы из кэша тоже учитываются, это наблюдаемая задержка
+    @Bean
+    @Role(BeanDefinition.ROLE_INFRASTRUCTURE)
+    static Advisor serviceTimingAdvisor(ObjectProvider<MeterRegistry> meterRegistry) {
+        DefaultPointcutAdvisor advisor = new DefaultPointcutAdvisor(
+                new AnnotationMatchingPointcut(Service.class, true),
+                new ServiceTimingInterceptor(() -> meterRegistry.getIfAvailable(() -> Metrics.globalRegistry)));
+        advisor.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return advisor;
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer statementCountingCustomizer() {
+        return properties -> properties.put(AvailableSettings.STATEMENT_INSPECTOR, new StatementCountingInspector());
+    }
+
+    @Bean
+    public FilterRegistrationBean<DbStatementMetricsFilter> dbStatementMetricsFilter(MeterRegistry meterRegistry) {
+        FilterRegistrationBean<DbStatementMetricsFilter> registration = new FilterRegistrationBean<>(
+                new DbStatementMetricsFilter(meterRegistry));
+        registration.addUrlPatterns("/api/*");
+        return registration;
+    }
+}
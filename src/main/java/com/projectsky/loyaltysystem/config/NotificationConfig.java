@@ -0,0 +1,29 @@
+package com.projectsky.loyaltysystem.config;
+
+import com.projectsky.loyaltysystem.notification.NotificationDispatcher;
+import com.projectsky.loyaltysystem.notification.NotificationTemplates;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.mail.javamail.JavaMailSender;
+
+// Письма включаются вместе с JavaMailSender: достаточно задать spring.mail.host
+@Configuration
+@ConditionalOnProperty(prefix = "spring.mail", name = "host")
+@EnableConfigurationProperties(NotificationProperties.class)
+public class NotificationConfig {
+
+    @Bean
+    public NotificationTemplates notificationTemplates() {
+        return new NotificationTemplates();
+    }
+
+    @Bean
+    public NotificationDispatcher notificationDispatcher(JavaMailSender mailSender,
+                                                         NotificationTemplates templates,
+                                                         NotificationProperties properties) {
+        return new NotificationDispatcher(mailSender, templates, properties.from(), properties.queueCapacity(),
+                properties.coalesceWindow(), properties.maxBatch());
+    }
+}
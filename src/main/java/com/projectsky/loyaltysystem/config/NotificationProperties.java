@@ -0,0 +1,29 @@
+package com.projectsky.loyaltysystem.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "loyalty.notifications")
+public record NotificationProperties(
+        String from,
+        int queueCapacity,
+        Duration coalesceWindow,
+        int maxBatch
+) {
+
+    public NotificationProperties {
+        if (from == null) {
+            from = "noreply@loyalty.local";
+        }
+        if (queueCapacity <= 0) {
+            queueCapacity = 10_000;
+        }
+        if (coalesceWindow == null) {
+            coalesceWindow = Duration.ofSeconds(5);
+        }
+        if (maxBatch <= 0) {
+            maxBatch = 200;
+        }
+    }
+}
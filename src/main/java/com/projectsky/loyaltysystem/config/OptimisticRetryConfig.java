@@ -0,0 +1,38 @@
+package com.projectsky.loyaltysystem.config;
+
+import com.projectsky.loyaltysystem.retry.OptimisticRetryInterceptor;
+import com.projectsky.loyaltysystem.retry.RetryOnConflict;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import org.springframework.aop.Advisor;
+import org.springframework.aop.support.DefaultPointcutAdvisor;
+import org.springframework.aop.support.annotation.AnnotationMatchingPointcut;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Role;
+import org.springframework.core.Ordered;
+import org.springframework.core.env.Environment;
+
+@Configuration
+public class OptimisticRetryConfig {
+
+    // static: советник нужен автопрокси раньше остальных бинов. Порядок выше транзакционного,
+    // поэтому каждая попытка выполняется в своей транзакции. Реестр метрик берется лениво, при первом конфликте
+    @Bean
+    @Role(BeanDefinition.ROLE_INFRASTRUCTURE)
+    static Advisor optimisticRetryAdvisor(Environment environment, ObjectProvider<MeterRegistry> meterRegistry) {
+        OptimisticRetryProperties properties = Binder.get(environment)
+                .bindOrCreate("loyalty.optimistic-retry", OptimisticRetryProperties.class);
+        OptimisticRetryInterceptor interceptor = new OptimisticRetryInterceptor(properties.maxAttempts(),
+                properties.initialBackoff(), properties.maxBackoff(),
+                () -> meterRegistry.getIfAvailable(() -> Metrics.globalRegistry));
+        DefaultPointcutAdvisor advisor = new DefaultPointcutAdvisor(
+                AnnotationMatchingPointcut.forMethodAnnotation(RetryOnConflict.class), interceptor);
+        // Сразу за таймером сервисов: в замер попадают все попытки
+        advisor.setOrder(Ordered.HIGHEST_PRECEDENCE + 1);
+        return advisor;
+    }
+}
@@ -0,0 +1,25 @@
+package com.projectsky.loyaltysystem.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "loyalty.optimistic-retry")
+public record OptimisticRetryProperties(
+        int maxAttempts,
+        Duration initialBackoff,
+        Duration maxBackoff
+) {
+
+    public OptimisticRetryProperties {
+        if (maxAttempts <= 0) {
+            maxAttempts = 5;
+        }
+        if (initialBackoff == null) {
+            initialBackoff = Duration.ofMillis(10);
+        }
+        if (maxBackoff == null) {
+            maxBackoff = Duration.ofMillis(200);
+        }
+    }
+}
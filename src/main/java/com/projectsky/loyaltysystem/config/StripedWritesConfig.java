@@ -0,0 +1,23 @@
+package com.projectsky.loyaltysystem.config;
+
+import com.projectsky.loyaltysystem.service.PurchaseService;
+import com.projectsky.loyaltysystem.striping.StripedPurchaseExecutor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+// Режим для горячих счетов: одиночные покупки клиента выстраиваются в очередь своей полосы
+// и проводятся микропакетами вместо борьбы за блокировку строки клиента
+@Configuration
+@ConditionalOnProperty(prefix = "loyalty.striped-writes", name = "enabled", havingValue = "true")
+@EnableConfigurationProperties(StripedWritesProperties.class)
+public class StripedWritesConfig {
+
+    @Bean
+    public StripedPurchaseExecutor stripedPurchaseExecutor(PurchaseService purchaseService,
+                                                           StripedWritesProperties properties) {
+        return new StripedPurchaseExecutor(purchaseService, properties.stripes(), properties.queueCapacity(),
+                properties.maxBatch(), properties.enqueueTimeout(), properties.resultTimeout());
+    }
+}
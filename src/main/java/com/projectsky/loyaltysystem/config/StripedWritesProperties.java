@@ -0,0 +1,33 @@
+package com.projectsky.loyaltysystem.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "loyalty.striped-writes")
+public record StripedWritesProperties(
+        int stripes,
+        int queueCapacity,
+        int maxBatch,
+        Duration enqueueTimeout,
+        Duration resultTimeout
+) {
+
+    public StripedWritesProperties {
+        if (stripes <= 0) {
+            stripes = 8;
+        }
+        if (queueCapacity <= 0) {
+            queueCapacity = 1_000;
+        }
+        if (maxBatch <= 0) {
+            maxBatch = 256;
+        }
+        if (enqueueTimeout == null) {
+            enqueueTimeout = Duration.ofSeconds(1);
+        }
+        if (resultTimeout == null) {
+            resultTimeout = Duration.ofSeconds(10);
+        }
+    }
+}
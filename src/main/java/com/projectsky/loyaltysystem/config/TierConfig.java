@@ -0,0 +1,9 @@
+package com.projectsky.loyaltysystem.config;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties(TierProperties.class)
+public class TierConfig {
+}
@@ -0,0 +1,51 @@
+package com.projectsky.loyaltysystem.config;
+
+import com.projectsky.loyaltysystem.enums.Category;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+@ConfigurationProperties(prefix = "loyalty.tiers")
+public record TierProperties(
+        BigDecimal silverThreshold,
+        BigDecimal goldThreshold,
+        int windowMonths
+) {
+
+    public TierProperties {
+        if (silverThreshold == null) {
+            silverThreshold = BigDecimal.valueOf(10_000);
+        }
+        if (goldThreshold == null) {
+            goldThreshold = BigDecimal.valueOf(50_000);
+        }
+        if (windowMonths <= 0) {
+            windowMonths = 12;
+        }
+    }
+
+    public Category categoryFor(BigDecimal spend) {
+        if (spend.compareTo(goldThreshold) >= 0) {
+            return Category.GOLD;
+        }
+        if (spend.compareTo(silverThreshold) >= 0) {
+            return Category.SILVER;
+        }
+        return Category.BASIC;
+    }
+
+    public LocalDate periodOf(LocalDateTime dateTime) {
+        return dateTime.toLocalDate().withDayOfMonth(1);
+    }
+
+    // Первая корзина окна: текущий месяц и windowMonths - 1 предыдущих
+    public LocalDate windowStart(LocalDate today) {
+        return today.withDayOfMonth(1).minusMonths(windowMonths - 1L);
+    }
+
+    public boolean inWindow(LocalDateTime dateTime, LocalDate today) {
+        return !periodOf(dateTime).isBefore(windowStart(today));
+    }
+}
@@ -0,0 +1,91 @@
+package com.projectsky.loyaltysystem.config;
+
+import com.projectsky.loyaltysystem.cache.CacheInvalidationMessage;
+import com.projectsky.loyaltysystem.cache.CacheValueCodec;
+import com.projectsky.loyaltysystem.cache.CompactCacheValueSerializer;
+import com.projectsky.loyaltysystem.cache.TwoLevelCache;
+import com.projectsky.loyaltysystem.cache.TwoLevelCacheErrorHandler;
+import com.projectsky.loyaltysystem.cache.TwoLevelCacheManager;
+import com.projectsky.loyaltysystem.cache.TwoLevelCacheMetrics;
+import org.springframework.boot.actuate.metrics.cache.CacheMeterBinderProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cache.annotation.CachingConfigurer;
+import org.springframework.cache.interceptor.CacheErrorHandler;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.util.List;
+import java.util.Set;
+
+// Несколько узлов: локальный near-cache перед Redis, инвалидация через Redis pub/sub
+@Configuration
+@ConditionalOnProperty(name = "loyalty.cache.mode", havingValue = "two-level")
+public class TwoLevelCacheConfig implements CachingConfigurer {
+
+    @Override
+    public CacheErrorHandler errorHandler() {
+        return new TwoLevelCacheErrorHandler();
+    }
+
+    @Bean
+    public RedisSerializer<Object> cacheValueSerializer(LoyaltyCacheProperties properties,
+                                                        List<CacheValueCodec<?>> codecs) {
+        return "jdk".equals(properties.codec())
+                ? new JdkSerializationRedisSerializer()
+                : new CompactCacheValueSerializer(codecs);
+    }
+
+    @Bean
+    public TwoLevelCacheManager cacheManager(LoyaltyCacheProperties properties,
+                                             RedisConnectionFactory connectionFactory,
+                                             RedisTemplate<Object, Object> redisTemplate,
+                                             RedisSerializer<Object> cacheValueSerializer) {
+        RedisCacheManager remoteCacheManager = RedisCacheManager.builder(connectionFactory)
+                .cacheDefaults(RedisCacheConfiguration.defaultCacheConfig()
+                        .entryTtl(properties.remoteTtl())
+                        .disableCachingNullValues()
+                        .prefixCacheNameWith("loyalty:")
+                        .serializeValuesWith(RedisSerializationContext.SerializationPair
+                                .fromSerializer(cacheValueSerializer)))
+                .initialCacheNames(Set.copyOf(CacheNames.ALL))
+                .disableCreateOnMissingCache()
+                .build();
+        remoteCacheManager.initializeCaches();
+
+        String channel = properties.invalidationChannel();
+        return new TwoLevelCacheManager(
+                remoteCacheManager,
+                CacheNames.ALL,
+                properties::specFor,
+                message -> redisTemplate.convertAndSend(channel, message));
+    }
+
+    @Bean
+    public RedisMessageListenerContainer cacheInvalidationListenerContainer(LoyaltyCacheProperties properties,
+                                                                            RedisConnectionFactory connectionFactory,
+                                                                            RedisTemplate<Object, Object> redisTemplate,
+                                                                            TwoLevelCacheManager cacheManager) {
+        RedisSerializer<?> serializer = redisTemplate.getValueSerializer();
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(
+                (message, pattern) -> cacheManager.onInvalidation(
+                        (CacheInvalidationMessage) serializer.deserialize(message.getBody())),
+                new ChannelTopic(properties.invalidationChannel()));
+        return container;
+    }
+
+    @Bean
+    public CacheMeterBinderProvider<TwoLevelCache> twoLevelCacheMeterBinderProvider() {
+        return TwoLevelCacheMetrics::new;
+    }
+}
@@ -0,0 +1,28 @@
+package com.projectsky.loyaltysystem.controller;
+
+import com.projectsky.loyaltysystem.config.AccrualProperties;
+import com.projectsky.loyaltysystem.service.AccrualRulesService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/accrual-rules")
+@RequiredArgsConstructor
+public class AccrualRulesController {
+
+    private final AccrualRulesService accrualRulesService;
+
+    @GetMapping
+    public ResponseEntity<AccrualProperties> getRules() {
+        return ResponseEntity.ok(accrualRulesService.currentRules());
+    }
+
+    // Новая версия сохраняется и расходится по всем узлам
+    @PutMapping
+    public ResponseEntity<AccrualProperties> replaceRules(
+            @RequestBody AccrualProperties rules
+    ) {
+        return ResponseEntity.ok(accrualRulesService.replaceRules(rules));
+    }
+}
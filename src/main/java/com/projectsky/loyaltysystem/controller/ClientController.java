@@ -1,14 +1,25 @@
 package com.projectsky.loyaltysystem.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.projectsky.loyaltysystem.dto.*;
+import com.projectsky.loyaltysystem.enums.PurchaseStatus;
 import com.projectsky.loyaltysystem.service.ClientService;
+import com.projectsky.loyaltysystem.service.PurchaseService;
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Set;
 
 @RestController
 @RequestMapping("/api/client")
@@ -16,15 +27,25 @@ import java.util.List;
 public class ClientController {
 
     private final ClientService clientService;
+    private final PurchaseService purchaseService;
+    private final ObjectMapper objectMapper;
 
     @GetMapping
-    public ResponseEntity<List<ClientDto>> getAllClients() {
-        List<ClientDto> allClients = clientService.getAllClients();
+    public ResponseEntity<List<ClientDto>> getAllClients(
+            @RequestParam(required = false) Long after,
+            @RequestParam(defaultValue = "100") @Min(1) @Max(1000) int limit
+    ) {
+        List<ClientDto> allClients = clientService.getAllClients(after, limit);
         return allClients.isEmpty()
                 ? ResponseEntity.noContent().build()
                 : ResponseEntity.ok(allClients);
     }
 
+    @GetMapping(value = "/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllClients() {
+        return NdjsonResponses.stream(objectMapper, clientService::streamAllClients);
+    }
+
     @GetMapping("/{clientId}")
     public ResponseEntity<ClientFullDto> getClientById(
             @PathVariable Long clientId
@@ -32,6 +53,23 @@ public class ClientController {
         return ResponseEntity.ok(clientService.getClientById(clientId));
     }
 
+    @GetMapping("/{clientId}/purchases")
+    public ResponseEntity<List<ClientPurchaseDto>> getClientPurchases(
+            @PathVariable Long clientId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) Set<PurchaseStatus> status,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime beforeDate,
+            @RequestParam(required = false) Long beforeId,
+            @RequestParam(defaultValue = "50") @Min(1) @Max(1000) int limit
+    ) {
+        List<ClientPurchaseDto> purchases = purchaseService.getClientPurchases(
+                clientId, from, to, status, beforeDate, beforeId, limit);
+        return purchases.isEmpty()
+                ? ResponseEntity.noContent().build()
+                : ResponseEntity.ok(purchases);
+    }
+
     @PostMapping
     public ResponseEntity<IdDto> createClient(
             @Valid @RequestBody ClientCreateDto dto
@@ -0,0 +1,36 @@
+package com.projectsky.loyaltysystem.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.function.Consumer;
+
+final class NdjsonResponses {
+
+    private NdjsonResponses() {
+    }
+
+    // Пишет элементы по одному JSON-объекту на строку по мере их поступления из источника
+    static <T> ResponseEntity<StreamingResponseBody> stream(ObjectMapper mapper, Consumer<Consumer<T>> source) {
+        ObjectWriter writer = mapper.writer();
+        StreamingResponseBody body = out -> {
+            source.accept(item -> {
+                try {
+                    out.write(writer.writeValueAsBytes(item));
+                    out.write('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            out.flush();
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+}
@@ -1,15 +1,35 @@
 package com.projectsky.loyaltysystem.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.projectsky.loyaltysystem.dto.IdDto;
+import com.projectsky.loyaltysystem.dto.PurchaseBatchLineDto;
+import com.projectsky.loyaltysystem.dto.PurchaseBatchResultDto;
 import com.projectsky.loyaltysystem.dto.PurchaseCreateDto;
 import com.projectsky.loyaltysystem.dto.PurchaseDto;
+import com.projectsky.loyaltysystem.dto.RefundDto;
+import com.projectsky.loyaltysystem.dto.RefundLineDto;
+import com.projectsky.loyaltysystem.dto.RefundResultDto;
 import com.projectsky.loyaltysystem.service.PurchaseService;
+import com.projectsky.loyaltysystem.striping.StripedPurchaseExecutor;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.stream.Stream;
 
 @RestController
 @RequestMapping("/api/purchase")
@@ -17,15 +37,25 @@ import java.util.List;
 public class PurchaseController {
 
     private final PurchaseService purchaseService;
+    private final ObjectMapper objectMapper;
+    private final ObjectProvider<StripedPurchaseExecutor> stripedPurchaseExecutor;
 
     @GetMapping
-    public ResponseEntity<List<PurchaseDto>> getAllPurchases() {
-        List<PurchaseDto> allPurchases = purchaseService.getAllPurchases();
+    public ResponseEntity<List<PurchaseDto>> getAllPurchases(
+            @RequestParam(required = false) Long after,
+            @RequestParam(defaultValue = "100") @Min(1) @Max(1000) int limit
+    ) {
+        List<PurchaseDto> allPurchases = purchaseService.getAllPurchases(after, limit);
         return allPurchases.isEmpty()
                 ? ResponseEntity.noContent().build()
                 : ResponseEntity.ok(allPurchases);
     }
 
+    @GetMapping(value = "/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllPurchases() {
+        return NdjsonResponses.stream(objectMapper, purchaseService::streamAllPurchases);
+    }
+
     @GetMapping("/{purchaseId}")
     public ResponseEntity<PurchaseDto> getPurchaseById(
             @PathVariable Long purchaseId
@@ -36,18 +66,56 @@ public class PurchaseController {
     @PostMapping("/{clientId}")
     public ResponseEntity<IdDto> createPurchase(
             @PathVariable Long clientId,
-            @RequestBody PurchaseCreateDto dto
+            @RequestBody @Valid PurchaseCreateDto dto
     ) {
+        // В режиме полос покупка проводится потоком полосы клиента в составе микропакета
+        StripedPurchaseExecutor striped = stripedPurchaseExecutor.getIfAvailable();
         return ResponseEntity
                 .status(HttpStatus.CREATED)
-                .body(purchaseService.addPurchase(dto, clientId));
+                .body(striped != null ? striped.addPurchase(dto, clientId) : purchaseService.addPurchase(dto, clientId));
+    }
+
+    @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<List<PurchaseBatchResultDto>> createPurchases(
+            @RequestBody List<PurchaseBatchLineDto> lines
+    ) {
+        return ResponseEntity.ok(purchaseService.addPurchases(lines));
+    }
+
+    // Тело читается построчно по мере проведения порций и в памяти целиком не держится.
+    // Строка, которую не удалось разобрать, получает INVALID, остальные проводятся
+    @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<List<PurchaseBatchResultDto>> createPurchasesFromNdjson(
+            InputStream body
+    ) {
+        ObjectReader reader = objectMapper.readerFor(PurchaseBatchLineDto.class);
+        try (Stream<PurchaseBatchLineDto> lines = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8)).lines()
+                .filter(line -> !line.isBlank())
+                .map(line -> readLine(reader, line))) {
+            return ResponseEntity.ok(purchaseService.addPurchases(lines.iterator()));
+        }
+    }
+
+    private PurchaseBatchLineDto readLine(ObjectReader reader, String line) {
+        try {
+            return reader.readValue(line);
+        } catch (IOException e) {
+            return null;
+        }
     }
 
     @PatchMapping("/{purchaseId}/refund")
-    public ResponseEntity<Void> refundPurchase(
-            @PathVariable Long purchaseId
+    public ResponseEntity<RefundResultDto> refundPurchase(
+            @PathVariable Long purchaseId,
+            @RequestBody(required = false) RefundDto dto
+    ) {
+        return ResponseEntity.ok(purchaseService.refundPurchase(purchaseId, dto == null ? null : dto.amount()));
+    }
+
+    @PostMapping("/refunds")
+    public ResponseEntity<List<RefundResultDto>> refundPurchases(
+            @RequestBody List<RefundLineDto> lines
     ) {
-        purchaseService.refundPurchase(purchaseId);
-        return ResponseEntity.ok().build();
+        return ResponseEntity.ok(purchaseService.refundPurchases(lines));
     }
 }
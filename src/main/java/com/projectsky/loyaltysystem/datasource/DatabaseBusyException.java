@@ -0,0 +1,9 @@
+package com.projectsky.loyaltysystem.datasource;
+
+import java.sql.SQLTransientConnectionException;
+
+public class DatabaseBusyException extends SQLTransientConnectionException {
+    public DatabaseBusyException(String message) {
+        super(message);
+    }
+}
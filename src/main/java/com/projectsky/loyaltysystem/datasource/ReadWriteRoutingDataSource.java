@@ -0,0 +1,30 @@
+package com.projectsky.loyaltysystem.datasource;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+// Пул выбирается при получении физического соединения: readOnly-транзакции идут на реплику,
+// кроме запросов, закрепленных за основной базой. Работает только за LazyConnectionDataSourceProxy,
+// иначе соединение берется раньше, чем транзакция отмечена как readOnly
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+
+    enum Route {
+        PRIMARY, REPLICA
+    }
+
+    public ReadWriteRoutingDataSource(DataSource primary, DataSource replica) {
+        setTargetDataSources(Map.of(Route.PRIMARY, primary, Route.REPLICA, replica));
+        setDefaultTargetDataSource(primary);
+        afterPropertiesSet();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return TransactionSynchronizationManager.isCurrentTransactionReadOnly() && !ReadYourWrites.isPinned()
+                ? Route.REPLICA
+                : Route.PRIMARY;
+    }
+}
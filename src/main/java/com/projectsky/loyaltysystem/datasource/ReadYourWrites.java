@@ -0,0 +1,22 @@
+package com.projectsky.loyaltysystem.datasource;
+
+// Признак запроса, которому нужно читать с основной базы: клиент недавно что-то менял, а реплика могла отстать
+public final class ReadYourWrites {
+
+    private static final ThreadLocal<Boolean> PINNED = new ThreadLocal<>();
+
+    private ReadYourWrites() {
+    }
+
+    public static void pin() {
+        PINNED.set(Boolean.TRUE);
+    }
+
+    public static boolean isPinned() {
+        return PINNED.get() != null;
+    }
+
+    public static void clear() {
+        PINNED.remove();
+    }
+}
@@ -1,15 +1,27 @@
 package com.projectsky.loyaltysystem.dto;
 
+import com.projectsky.loyaltysystem.enums.Category;
 import lombok.Builder;
 
+import java.io.Serializable;
 import java.math.BigDecimal;
 
 @Builder
 public record ClientDto(
+        Long id,
         String username,
         String email,
         BigDecimal balance,
         Integer points,
         String category
-) {
+) implements Serializable {
+
+    public ClientDto(Long id,
+                     String username,
+                     String email,
+                     BigDecimal balance,
+                     Integer points,
+                     Category category) {
+        this(id, username, email, balance, points, category.name());
+    }
 }
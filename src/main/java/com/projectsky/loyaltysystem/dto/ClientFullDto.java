@@ -3,11 +3,12 @@ package com.projectsky.loyaltysystem.dto;
 import com.projectsky.loyaltysystem.enums.Category;
 import lombok.Getter;
 
+import java.io.Serializable;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Getter
-public class ClientFullDto {
+public class ClientFullDto implements Serializable {
     private Long id;
     private String username;
     private String email;
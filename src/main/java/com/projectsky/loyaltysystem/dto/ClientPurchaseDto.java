@@ -0,0 +1,16 @@
+package com.projectsky.loyaltysystem.dto;
+
+import com.projectsky.loyaltysystem.enums.PurchaseStatus;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+public record ClientPurchaseDto(
+        Long id,
+        String name,
+        BigDecimal price,
+        LocalDateTime purchaseDate,
+        PurchaseStatus status,
+        BigDecimal refundedAmount
+) {
+}
@@ -0,0 +1,9 @@
+package com.projectsky.loyaltysystem.dto;
+
+import java.math.BigDecimal;
+
+public record ClientSpendDto(
+        Long clientId,
+        BigDecimal spend
+) {
+}
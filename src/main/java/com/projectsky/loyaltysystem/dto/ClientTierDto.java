@@ -0,0 +1,11 @@
+package com.projectsky.loyaltysystem.dto;
+
+import com.projectsky.loyaltysystem.enums.Category;
+
+import java.math.BigDecimal;
+
+public record ClientTierDto(
+        Category category,
+        BigDecimal rollingSpend
+) {
+}
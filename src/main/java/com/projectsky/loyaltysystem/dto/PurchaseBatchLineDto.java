@@ -0,0 +1,13 @@
+package com.projectsky.loyaltysystem.dto;
+
+import lombok.Builder;
+
+import java.math.BigDecimal;
+
+@Builder
+public record PurchaseBatchLineDto(
+        Long clientId,
+        String name,
+        BigDecimal price
+) {
+}
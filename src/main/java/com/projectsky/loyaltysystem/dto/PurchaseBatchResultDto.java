@@ -0,0 +1,10 @@
+package com.projectsky.loyaltysystem.dto;
+
+import com.projectsky.loyaltysystem.enums.BatchLineStatus;
+
+public record PurchaseBatchResultDto(
+        int line,
+        Long purchaseId,
+        BatchLineStatus status
+) {
+}
@@ -1,6 +1,9 @@
 package com.projectsky.loyaltysystem.dto;
 
 import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.PositiveOrZero;
 import lombok.Builder;
 
 import java.math.BigDecimal;
@@ -8,6 +11,7 @@ import java.math.BigDecimal;
 @Builder
 public record PurchaseCreateDto(
         @NotBlank String name,
-        @NotBlank BigDecimal price
+        @NotNull @Positive BigDecimal price,
+        @PositiveOrZero Integer pointsToRedeem
 ) {
 }
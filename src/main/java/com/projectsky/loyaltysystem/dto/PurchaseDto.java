@@ -3,6 +3,7 @@ package com.projectsky.loyaltysystem.dto;
 import com.fasterxml.jackson.annotation.JsonFormat;
 import lombok.Builder;
 
+import java.io.Serializable;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
@@ -15,5 +16,5 @@ public record PurchaseDto(
 
         @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd'T'HH:mm:ss")
         LocalDateTime purchaseDate
-) {
+) implements Serializable {
 }
@@ -0,0 +1,8 @@
+package com.projectsky.loyaltysystem.dto;
+
+import java.math.BigDecimal;
+
+public record RefundDto(
+        BigDecimal amount
+) {
+}
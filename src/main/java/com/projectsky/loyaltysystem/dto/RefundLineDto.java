@@ -0,0 +1,12 @@
+package com.projectsky.loyaltysystem.dto;
+
+import lombok.Builder;
+
+import java.math.BigDecimal;
+
+@Builder
+public record RefundLineDto(
+        Long purchaseId,
+        BigDecimal amount
+) {
+}
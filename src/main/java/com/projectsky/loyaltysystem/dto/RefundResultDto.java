@@ -0,0 +1,13 @@
+package com.projectsky.loyaltysystem.dto;
+
+import com.projectsky.loyaltysystem.enums.RefundLineStatus;
+
+import java.math.BigDecimal;
+
+public record RefundResultDto(
+        int line,
+        Long purchaseId,
+        RefundLineStatus status,
+        BigDecimal refundedAmount
+) {
+}
@@ -0,0 +1,5 @@
+package com.projectsky.loyaltysystem.enums;
+
+public enum BatchLineStatus {
+    CREATED, INVALID, CLIENT_NOT_FOUND, NOT_ENOUGH_BALANCE, FAILED
+}
@@ -0,0 +1,5 @@
+package com.projectsky.loyaltysystem.enums;
+
+public enum NotificationType {
+    WELCOME, PURCHASE_RECEIPT, REFUND, TIER_CHANGE
+}
@@ -0,0 +1,5 @@
+package com.projectsky.loyaltysystem.enums;
+
+public enum OutboxEventType {
+    CLIENT_REGISTERED, BALANCE_TOPPED_UP, POINTS_ACCRUED, POINTS_REDEEMED, PURCHASE_CREATED, PURCHASE_REFUNDED, TIER_CHANGED
+}
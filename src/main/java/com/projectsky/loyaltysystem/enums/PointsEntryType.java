@@ -0,0 +1,5 @@
+package com.projectsky.loyaltysystem.enums;
+
+public enum PointsEntryType {
+    ACCRUAL, REDEMPTION, REVERSAL, REDEMPTION_REVERSAL, EXPIRY
+}
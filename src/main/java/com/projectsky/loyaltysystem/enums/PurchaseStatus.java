@@ -1,5 +1,5 @@
 package com.projectsky.loyaltysystem.enums;
 
 public enum PurchaseStatus {
-    SUCCESSFUL, REFUNDED
+    SUCCESSFUL, PARTIALLY_REFUNDED, REFUNDED
 }
@@ -0,0 +1,5 @@
+package com.projectsky.loyaltysystem.enums;
+
+public enum RefundLineStatus {
+    REFUNDED, PARTIALLY_REFUNDED, INVALID, PURCHASE_NOT_FOUND, ALREADY_REFUNDED, AMOUNT_EXCEEDS_REMAINING
+}
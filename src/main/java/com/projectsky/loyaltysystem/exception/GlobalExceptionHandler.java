@@ -1,11 +1,18 @@
 package com.projectsky.loyaltysystem.exception;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.projectsky.loyaltysystem.dto.ErrorResponse;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.transaction.CannotCreateTransactionException;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.method.annotation.HandlerMethodValidationException;
 
 @ControllerAdvice
 public class GlobalExceptionHandler {
@@ -35,16 +42,79 @@ public class GlobalExceptionHandler {
         return buildResponseEntity(HttpStatus.PAYMENT_REQUIRED, "Not enough balance", e.getMessage());
     }
 
+    @ExceptionHandler(NotEnoughPointsException.class)
+    public ResponseEntity<ErrorResponse> handleNotEnoughPointsException(NotEnoughPointsException e) {
+        return buildResponseEntity(HttpStatus.CONFLICT, "Not enough points", e.getMessage());
+    }
+
+    // Повторы при конфликте версий исчерпаны
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ResponseEntity<ErrorResponse> handleOptimisticLockingFailureException(OptimisticLockingFailureException e) {
+        return buildResponseEntity(HttpStatus.CONFLICT, "Concurrent update",
+                "Данные клиента изменены параллельно, повторите запрос");
+    }
+
+    @ExceptionHandler(InvalidRedemptionException.class)
+    public ResponseEntity<ErrorResponse> handleInvalidRedemptionException(InvalidRedemptionException e) {
+        return buildResponseEntity(HttpStatus.BAD_REQUEST, "Invalid redemption", e.getMessage());
+    }
+
+    @ExceptionHandler(InvalidPointsAmountException.class)
+    public ResponseEntity<ErrorResponse> handleInvalidPointsAmountException(InvalidPointsAmountException e) {
+        return buildResponseEntity(HttpStatus.BAD_REQUEST, "Invalid points amount", e.getMessage());
+    }
+
+    @ExceptionHandler(InvalidRefundAmountException.class)
+    public ResponseEntity<ErrorResponse> handleInvalidRefundAmountException(InvalidRefundAmountException e) {
+        return buildResponseEntity(HttpStatus.BAD_REQUEST, "Invalid refund amount", e.getMessage());
+    }
+
     @ExceptionHandler(UsernameAlreadyExistsException.class)
     public ResponseEntity<ErrorResponse> handleUsernameAlreadyExistsException(UsernameAlreadyExistsException e){
         return buildResponseEntity(HttpStatus.CONFLICT, "Username already exists", e.getMessage());
     }
 
+    @ExceptionHandler(InvalidAccrualRulesException.class)
+    public ResponseEntity<ErrorResponse> handleInvalidAccrualRulesException(InvalidAccrualRulesException e) {
+        return buildResponseEntity(HttpStatus.BAD_REQUEST, "Invalid accrual rules", e.getMessage());
+    }
+
     @ExceptionHandler(MethodArgumentNotValidException.class)
     public ResponseEntity<ErrorResponse> handleMethodArgumentNotValidException(MethodArgumentNotValidException e) {
         return buildResponseEntity(HttpStatus.BAD_REQUEST, "Invalid request", e.getMessage());
     }
 
+    @ExceptionHandler(HandlerMethodValidationException.class)
+    public ResponseEntity<ErrorResponse> handleHandlerMethodValidationException(HandlerMethodValidationException e) {
+        return buildResponseEntity(HttpStatus.BAD_REQUEST, "Invalid request", e.getMessage());
+    }
+
+    @ExceptionHandler({HttpMessageNotReadableException.class, JsonProcessingException.class})
+    public ResponseEntity<ErrorResponse> handleUnreadableBody(Exception e) {
+        return buildResponseEntity(HttpStatus.BAD_REQUEST, "Invalid request", e.getMessage());
+    }
+
+    @ExceptionHandler(BatchTooLargeException.class)
+    public ResponseEntity<ErrorResponse> handleBatchTooLargeException(BatchTooLargeException e) {
+        return buildResponseEntity(HttpStatus.PAYLOAD_TOO_LARGE, "Batch too large", e.getMessage());
+    }
+
+    // Покупка могла быть проведена: повтор только после проверки истории или с тем же Idempotency-Key.
+    // IdempotencyFilter не освобождает ключ по 504, поэтому повтор с ним не проводит покупку второй раз
+    @ExceptionHandler(PurchaseTimeoutException.class)
+    public ResponseEntity<ErrorResponse> handlePurchaseTimeoutException(PurchaseTimeoutException e) {
+        return buildResponseEntity(HttpStatus.GATEWAY_TIMEOUT, "Purchase timeout", e.getMessage());
+    }
+
+    // Сюда попадают отказ шлюза соединений и переполненная очередь записи: клиенту предлагается повторить запрос позже
+    @ExceptionHandler({CannotCreateTransactionException.class, DataAccessResourceFailureException.class, WriteQueueFullException.class})
+    public ResponseEntity<ErrorResponse> handleDatabaseUnavailableException(Exception e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(new ErrorResponse(HttpStatus.SERVICE_UNAVAILABLE.value(), "Service unavailable",
+                        "Сервис временно перегружен, повторите запрос позже"));
+    }
+
     @ExceptionHandler(Exception.class)
     public ResponseEntity<ErrorResponse> handleException(Exception e) {
         return buildResponseEntity(HttpStatus.INTERNAL_SERVER_ERROR, "Internal Server Error", e.getMessage());
@@ -0,0 +1,7 @@
+package com.projectsky.loyaltysystem.exception;
+
+public class InvalidAccrualRulesException extends RuntimeException {
+    public InvalidAccrualRulesException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.projectsky.loyaltysystem.exception;
+
+public class InvalidPointsAmountException extends RuntimeException {
+    public InvalidPointsAmountException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.projectsky.loyaltysystem.exception;
+
+public class InvalidRedemptionException extends RuntimeException {
+    public InvalidRedemptionException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.projectsky.loyaltysystem.exception;
+
+public class InvalidRefundAmountException extends RuntimeException {
+    public InvalidRefundAmountException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.projectsky.loyaltysystem.exception;
+
+public class NotEnoughPointsException extends RuntimeException {
+    public NotEnoughPointsException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.projectsky.loyaltysystem.exception;
+
+public class PurchaseTimeoutException extends RuntimeException {
+    public PurchaseTimeoutException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,203 @@
+package com.projectsky.loyaltysystem.idempotency;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.projectsky.loyaltysystem.dto.ErrorResponse;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.PathContainer;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+import org.springframework.web.util.pattern.PathPattern;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+// Повтор запроса с тем же Idempotency-Key получает сохраненный ответ вместо повторного выполнения.
+// Ключ с другим телом или адресом отклоняется, ключ запроса, который еще выполняется, - тоже.
+// Сохраняются только окончательные ответы: 5xx и временные отказы (409, 429 и подобные) освобождают ключ,
+// и такой запрос можно повторить. Исключение - 504, когда исход неизвестен:
+// ключ не освобождается, пока не истечет резервирование.
+// Пока запрос выполняется, резервирование ключа продлевается: иначе долгий запрос потерял бы ключ
+// через lockTimeout и повтор выполнился бы второй раз
+@Slf4j
+@RequiredArgsConstructor
+public class IdempotencyFilter extends OncePerRequestFilter {
+
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final int MAX_KEY_LENGTH = 255;
+    // 409 отдают и параллельные изменения клиента, исчерпавшие повторы, - через мгновение такой запрос пройдет.
+    // Окончательные 409 (возврат уже выполнен) тоже не сохраняются, но их повтор ничего не меняет
+    private static final Set<Integer> RETRYABLE_STATUSES = Set.of(
+            HttpStatus.REQUEST_TIMEOUT.value(),
+            HttpStatus.CONFLICT.value(),
+            HttpStatus.TOO_EARLY.value(),
+            HttpStatus.TOO_MANY_REQUESTS.value());
+
+    private final IdempotencyStore store;
+    private final ObjectMapper objectMapper;
+    private final List<Endpoint> endpoints;
+    private final int maxBodySize;
+    private final ScheduledExecutorService renewals;
+    private final Duration renewInterval;
+
+    public record Endpoint(String method, PathPattern pattern) {
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        if (request.getHeader(IDEMPOTENCY_KEY_HEADER) == null) {
+            return true;
+        }
+        PathContainer path = PathContainer.parsePath(request.getRequestURI());
+        return endpoints.stream().noneMatch(endpoint ->
+                endpoint.method().equals(request.getMethod()) && endpoint.pattern().matches(path));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain chain) throws ServletException, IOException {
+        String key = request.getHeader(IDEMPOTENCY_KEY_HEADER);
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            writeError(response, HttpStatus.BAD_REQUEST, "Invalid request", "Некорректный Idempotency-Key");
+            return;
+        }
+        byte[] body = request.getInputStream().readNBytes(maxBodySize + 1);
+        if (body.length > maxBodySize) {
+            writeError(response, HttpStatus.PAYLOAD_TOO_LARGE, "Request too large",
+                    "Тело идемпотентного запроса больше " + maxBodySize + " байт");
+            return;
+        }
+        String fingerprint = fingerprint(request, body);
+
+        Optional<IdempotencyRecord> existing = store.find(key);
+        if (existing.isEmpty() && !store.reserve(key, fingerprint)) {
+            existing = store.find(key);
+        }
+        if (existing.isPresent()) {
+            respondToRepeat(key, fingerprint, existing.get(), response);
+            return;
+        }
+
+        ContentCachingResponseWrapper responseWrapper = new ContentCachingResponseWrapper(response);
+        long intervalNanos = renewInterval.toNanos();
+        ScheduledFuture<?> renewal = renewals.scheduleAtFixedRate(
+                () -> renew(key, fingerprint), intervalNanos, intervalNanos, TimeUnit.NANOSECONDS);
+        try {
+            chain.doFilter(new CachedBodyHttpServletRequest(request, body), responseWrapper);
+        } catch (IOException | ServletException | RuntimeException e) {
+            store.release(key);
+            throw e;
+        } finally {
+            renewal.cancel(false);
+        }
+
+        if (responseWrapper.getStatus() == HttpStatus.GATEWAY_TIMEOUT.value()) {
+            // Исход неизвестен: покупка может еще провестись. Ключ остается зарезервированным до lockTimeout,
+            // и повтор с ним получает "еще выполняется", а не второе списание
+            log.warn("Запрос с Idempotency-Key={} завершился без результата, ключ остается зарезервированным", key);
+        } else if (isRetryable(responseWrapper.getStatus())) {
+            store.release(key);
+        } else {
+            store.complete(key, new IdempotencyRecord(
+                    fingerprint,
+                    true,
+                    responseWrapper.getStatus(),
+                    responseWrapper.getContentType(),
+                    responseWrapper.getContentAsByteArray()));
+        }
+        responseWrapper.copyBodyToResponse();
+    }
+
+    // Временный отказ не сохраняется: повтор с тем же ключом должен выполниться заново, а не получить тот же отказ
+    private static boolean isRetryable(int status) {
+        return status >= 500 || RETRYABLE_STATUSES.contains(status);
+    }
+
+    @Override
+    public void destroy() {
+        renewals.shutdownNow();
+    }
+
+    private void renew(String key, String fingerprint) {
+        try {
+            if (!store.extend(key, fingerprint)) {
+                log.warn("Резервирование Idempotency-Key={} истекло до окончания запроса", key);
+            }
+        } catch (RuntimeException e) {
+            // Следующая попытка будет через интервал, резервирование живет lockTimeout
+            log.warn("Не удалось продлить резервирование Idempotency-Key={}", key, e);
+        }
+    }
+
+    private void respondToRepeat(String key,
+                                 String fingerprint,
+                                 IdempotencyRecord record,
+                                 HttpServletResponse response) throws IOException {
+        if (!record.fingerprint().equals(fingerprint)) {
+            log.warn("Idempotency-Key={} повторно использован для другого запроса", key);
+            writeError(response, HttpStatus.UNPROCESSABLE_ENTITY, "Idempotency key reused",
+                    "Ключ уже использован для другого запроса");
+            return;
+        }
+        if (!record.completed()) {
+            writeError(response, HttpStatus.CONFLICT, "Request in progress",
+                    "Запрос с этим ключом еще выполняется");
+            return;
+        }
+        log.debug("Повтор запроса с Idempotency-Key={}, отдаем сохраненный ответ", key);
+        response.setStatus(record.status());
+        if (record.contentType() != null) {
+            response.setContentType(record.contentType());
+        }
+        response.setHeader(REPLAYED_HEADER, "true");
+        if (record.body() != null && record.body().length > 0) {
+            response.setContentLength(record.body().length);
+            response.getOutputStream().write(record.body());
+        }
+    }
+
+    private void writeError(HttpServletResponse response, HttpStatus status, String error, String message) throws IOException {
+        response.setStatus(status.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        objectMapper.writeValue(response.getOutputStream(), new ErrorResponse(status.value(), error, message));
+    }
+
+    private String fingerprint(HttpServletRequest request, byte[] body) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        digest.update(request.getMethod().getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) ' ');
+        digest.update(request.getRequestURI().getBytes(StandardCharsets.UTF_8));
+        if (request.getQueryString() != null) {
+            digest.update((byte) '?');
+            digest.update(request.getQueryString().getBytes(StandardCharsets.UTF_8));
+        }
+        digest.update((byte) '\n');
+        digest.update(body);
+        return HexFormat.of().formatHex(digest.digest());
+    }
+}
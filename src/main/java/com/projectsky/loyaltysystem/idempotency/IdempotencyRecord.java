@@ -0,0 +1,45 @@
+package com.projectsky.loyaltysystem.idempotency;
+
+import com.projectsky.loyaltysystem.cache.BinaryInput;
+import com.projectsky.loyaltysystem.cache.BinaryOutput;
+
+// Отпечаток запроса и сохраненный ответ; completed=false - запрос с этим ключом еще выполняется
+public record IdempotencyRecord(
+        String fingerprint,
+        boolean completed,
+        int status,
+        String contentType,
+        byte[] body
+) {
+
+    private static final int FORMAT_VERSION = 1;
+
+    public static IdempotencyRecord inProgress(String fingerprint) {
+        return new IdempotencyRecord(fingerprint, false, 0, null, null);
+    }
+
+    public byte[] toBytes() {
+        BinaryOutput output = new BinaryOutput(64 + (body == null ? 0 : body.length));
+        output.writeByte(FORMAT_VERSION);
+        output.writeString(fingerprint);
+        output.writeBoolean(completed);
+        output.writeVarLong(status);
+        output.writeString(contentType);
+        output.writeByteArray(body);
+        return output.toByteArray();
+    }
+
+    public static IdempotencyRecord fromBytes(byte[] bytes) {
+        BinaryInput input = new BinaryInput(bytes, 0);
+        int version = input.readByte();
+        if (version != FORMAT_VERSION) {
+            throw new IllegalStateException("Неизвестная версия записи идемпотентности: " + version);
+        }
+        return new IdempotencyRecord(
+                input.readString(),
+                input.readBoolean(),
+                Math.toIntExact(input.readVarLong()),
+                input.readString(),
+                input.readByteArray());
+    }
+}
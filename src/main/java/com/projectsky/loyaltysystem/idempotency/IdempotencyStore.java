@@ -0,0 +1,13 @@
+package com.projectsky.loyaltysystem.idempotency;
+
+import java.util.Optional;
+
+public interface IdempotencyStore {
+
+    Optional<IdempotencyRecord> find(String key);
+    boolean reserve(String key, String fingerprint);
+    // Продлевает резервирование выполняющегося запроса; false - резервирования с этим отпечатком уже нет
+    boolean extend(String key, String fingerprint);
+    void complete(String key, IdempotencyRecord record);
+    void release(String key);
+}
@@ -0,0 +1,51 @@
+package com.projectsky.loyaltysystem.idempotency;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+
+import java.time.Duration;
+import java.util.Optional;
+
+// Ограниченное по размеру хранилище в памяти узла: завершенные записи живут ttl,
+// незавершенные - lockTimeout, чтобы зависший запрос не блокировал ключ надолго
+public class LocalIdempotencyStore implements IdempotencyStore {
+
+    private final Cache<String, IdempotencyRecord> records;
+
+    public LocalIdempotencyStore(long maxEntries, Duration ttl, Duration lockTimeout) {
+        this.records = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfter(Expiry.<String, IdempotencyRecord>writing(
+                        (key, record) -> record.completed() ? ttl : lockTimeout))
+                .build();
+    }
+
+    @Override
+    public Optional<IdempotencyRecord> find(String key) {
+        return Optional.ofNullable(records.getIfPresent(key));
+    }
+
+    @Override
+    public boolean reserve(String key, String fingerprint) {
+        return records.asMap().putIfAbsent(key, IdempotencyRecord.inProgress(fingerprint)) == null;
+    }
+
+    @Override
+    public boolean extend(String key, String fingerprint) {
+        IdempotencyRecord renewed = IdempotencyRecord.inProgress(fingerprint);
+        // Новая запись отсчитывает lockTimeout заново
+        return records.asMap().computeIfPresent(key, (k, record) ->
+                !record.completed() && record.fingerprint().equals(fingerprint) ? renewed : record) == renewed;
+    }
+
+    @Override
+    public void complete(String key, IdempotencyRecord record) {
+        records.put(key, record);
+    }
+
+    @Override
+    public void release(String key) {
+        records.invalidate(key);
+    }
+}
@@ -0,0 +1,79 @@
+package com.projectsky.loyaltysystem.idempotency;
+
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+// Redis - общий источник истины для всех узлов, резервирование ключа через SET NX.
+// Локально держатся только завершенные записи: повтор на тот же узел отвечает без обращения к Redis
+public class TwoLevelIdempotencyStore implements IdempotencyStore {
+
+    private static final String KEY_PREFIX = "loyalty:idempotency:";
+
+    // Продлеваем только свое незавершенное резервирование: завершенная запись уже живет ttl
+    private static final RedisScript<Long> EXTEND_SCRIPT = RedisScript.of(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('PEXPIRE', KEYS[1], ARGV[2]) end return 0",
+            Long.class);
+
+    private final LocalIdempotencyStore local;
+    private final RedisTemplate<String, byte[]> redisTemplate;
+    private final Duration ttl;
+    private final Duration lockTimeout;
+
+    public TwoLevelIdempotencyStore(LocalIdempotencyStore local,
+                                    RedisTemplate<String, byte[]> redisTemplate,
+                                    Duration ttl,
+                                    Duration lockTimeout) {
+        this.local = local;
+        this.redisTemplate = redisTemplate;
+        this.ttl = ttl;
+        this.lockTimeout = lockTimeout;
+    }
+
+    @Override
+    public Optional<IdempotencyRecord> find(String key) {
+        Optional<IdempotencyRecord> cached = local.find(key);
+        if (cached.isPresent()) {
+            return cached;
+        }
+        byte[] bytes = redisTemplate.opsForValue().get(KEY_PREFIX + key);
+        if (bytes == null) {
+            return Optional.empty();
+        }
+        IdempotencyRecord record = IdempotencyRecord.fromBytes(bytes);
+        if (record.completed()) {
+            local.complete(key, record);
+        }
+        return Optional.of(record);
+    }
+
+    @Override
+    public boolean reserve(String key, String fingerprint) {
+        return Boolean.TRUE.equals(redisTemplate.opsForValue()
+                .setIfAbsent(KEY_PREFIX + key, IdempotencyRecord.inProgress(fingerprint).toBytes(), lockTimeout));
+    }
+
+    @Override
+    public boolean extend(String key, String fingerprint) {
+        Long extended = redisTemplate.execute(EXTEND_SCRIPT, List.of(KEY_PREFIX + key),
+                IdempotencyRecord.inProgress(fingerprint).toBytes(),
+                Long.toString(lockTimeout.toMillis()).getBytes(StandardCharsets.US_ASCII));
+        return extended != null && extended == 1;
+    }
+
+    @Override
+    public void complete(String key, IdempotencyRecord record) {
+        redisTemplate.opsForValue().set(KEY_PREFIX + key, record.toBytes(), ttl);
+        local.complete(key, record);
+    }
+
+    @Override
+    public void release(String key) {
+        redisTemplate.delete(KEY_PREFIX + key);
+        local.release(key);
+    }
+}
@@ -0,0 +1,34 @@
+package com.projectsky.loyaltysystem.job;
+
+import com.projectsky.loyaltysystem.service.AccrualRulesService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+// Узел загружает сохраненную версию правил до начала приема запросов и затем периодически сверяет версию:
+// так узел без Redis или пропустивший оповещение расходится с остальными не дольше интервала проверки
+@Component
+@ConditionalOnProperty(name = "loyalty.jobs.accrual-reload.enabled", havingValue = "true", matchIfMissing = true)
+@RequiredArgsConstructor
+@Slf4j
+public class AccrualRulesReloadJob implements SmartInitializingSingleton {
+
+    private final AccrualRulesService accrualRulesService;
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        accrualRulesService.reload();
+    }
+
+    @Scheduled(fixedDelayString = "${loyalty.jobs.accrual-reload.delay-ms:10000}")
+    public void reload() {
+        try {
+            accrualRulesService.reload();
+        } catch (RuntimeException e) {
+            log.warn("Не удалось сверить версию правил начисления", e);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.projectsky.loyaltysystem.job;
+
+import com.projectsky.loyaltysystem.config.CacheNames;
+import com.projectsky.loyaltysystem.repository.ClientRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+
+// Разовое заполнение total_purchases и last_purchase_at для уже существующих клиентов.
+// Запускается при старте с loyalty.jobs.client-summary-backfill.enabled=true, каждый диапазон id в своей транзакции
+@Component
+@ConditionalOnProperty(name = "loyalty.jobs.client-summary-backfill.enabled", havingValue = "true")
+@RequiredArgsConstructor
+@Slf4j
+public class ClientSummaryBackfillJob implements ApplicationRunner {
+
+    private final ClientRepository clientRepository;
+    private final CacheManager cacheManager;
+
+    @Value("${loyalty.jobs.client-summary-backfill.chunk-size:1000}")
+    private int chunkSize;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        backfill();
+    }
+
+    public void backfill() {
+        Optional<Long> minId = clientRepository.findMinId();
+        Optional<Long> maxId = clientRepository.findMaxId();
+        if (minId.isEmpty() || maxId.isEmpty()) {
+            log.info("Нет клиентов для пересчета сводки по покупкам");
+            return;
+        }
+
+        log.info("Пересчет сводки по покупкам для id={}..{}", minId.get(), maxId.get());
+        long updated = 0;
+        for (long fromId = minId.get(); fromId <= maxId.get(); fromId += chunkSize) {
+            long toId = Math.min(fromId + chunkSize - 1, maxId.get());
+            updated += clientRepository.recalculatePurchaseSummary(fromId, toId);
+            log.debug("Сводка пересчитана для id={}..{}", fromId, toId);
+        }
+
+        Optional.ofNullable(cacheManager.getCache(CacheNames.CLIENT_SUMMARY))
+                .ifPresent(cache -> cache.clear());
+        log.info("Пересчет сводки по покупкам завершен, обновлено клиентов={}", updated);
+    }
+}
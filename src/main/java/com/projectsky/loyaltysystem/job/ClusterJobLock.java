@@ -0,0 +1,51 @@
+package com.projectsky.loyaltysystem.job;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+// Плановое задание выполняется на одном узле: на PostgreSQL узел берет advisory-блокировку по имени задания
+// на отдельном соединении и держит ее, пока задание работает. Если узел упадет, блокировка уйдет вместе
+// с соединением. Остальные узлы пропускают запуск. На других базах (тесты на H2) задание выполняется без блокировки
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ClusterJobLock {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public boolean runExclusively(String job, Runnable task) {
+        return Boolean.TRUE.equals(jdbcTemplate.execute((ConnectionCallback<Boolean>) connection -> {
+            if (!"PostgreSQL".equals(connection.getMetaData().getDatabaseProductName())) {
+                task.run();
+                return true;
+            }
+            if (!advisoryLock(connection, "SELECT pg_try_advisory_lock(hashtext(?))", job)) {
+                log.info("Задание {} уже выполняется на другом узле, запуск пропущен", job);
+                return false;
+            }
+            try {
+                task.run();
+                return true;
+            } finally {
+                advisoryLock(connection, "SELECT pg_advisory_unlock(hashtext(?))", job);
+            }
+        }));
+    }
+
+    private boolean advisoryLock(Connection connection, String sql, String job) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setString(1, job);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() && resultSet.getBoolean(1);
+            }
+        }
+    }
+}
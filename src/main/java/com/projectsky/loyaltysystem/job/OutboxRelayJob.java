@@ -0,0 +1,173 @@
+package com.projectsky.loyaltysystem.job;
+
+import com.projectsky.loyaltysystem.model.OutboxEvent;
+import com.projectsky.loyaltysystem.outbox.OutboxSink;
+import com.projectsky.loyaltysystem.repository.OutboxEventRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Ретранслятор исходящих событий: пачка блокируется с SKIP LOCKED, публикуется во все получатели
+// и отмечается в той же транзакции, доставка учитывается по каждому получателю. Узлы работают параллельно,
+// каждый со своими пачками
+@Component
+@ConditionalOnProperty(name = "loyalty.jobs.outbox-relay.enabled", havingValue = "true", matchIfMissing = true)
+@Slf4j
+public class OutboxRelayJob {
+
+    private static final int MAX_ERROR_LENGTH = 1000;
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final List<OutboxSink> sinks;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${loyalty.jobs.outbox-relay.batch-size:500}")
+    private int batchSize;
+
+    @Value("${loyalty.jobs.outbox-relay.retention:7d}")
+    private Duration retention;
+
+    @Value("${loyalty.jobs.outbox-relay.max-attempts:10}")
+    private int maxAttempts;
+
+    @Value("${loyalty.jobs.outbox-relay.retry-backoff:1s}")
+    private Duration retryBackoff;
+
+    @Value("${loyalty.jobs.outbox-relay.max-backoff:10m}")
+    private Duration maxBackoff;
+
+    public OutboxRelayJob(OutboxEventRepository outboxEventRepository,
+                          List<OutboxSink> sinks,
+                          PlatformTransactionManager transactionManager) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.sinks = sinks;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        if (sinks.isEmpty()) {
+            log.warn("Получатели исходящих событий не настроены, события копятся в outbox_events");
+        }
+    }
+
+    // Полные пачки выбираются подряд, пока очередь не опустеет или получатель не откажет
+    @Scheduled(fixedDelayString = "${loyalty.jobs.outbox-relay.delay-ms:500}")
+    public void relay() {
+        if (sinks.isEmpty()) {
+            return;
+        }
+        int relayed;
+        do {
+            relayed = transactionTemplate.execute(status -> relayBatch());
+        } while (relayed == batchSize);
+    }
+
+    @Scheduled(cron = "${loyalty.jobs.outbox-relay.purge-cron:0 30 3 * * *}")
+    public void purge() {
+        int deleted = transactionTemplate.execute(status ->
+                outboxEventRepository.deletePublishedBefore(LocalDateTime.now().minus(retention)));
+        log.info("Удалено опубликованных событий={}", deleted);
+    }
+
+    // Каждый получатель получает только то, что еще не доставлено ему самому. Событие публикуется,
+    // когда дошло до всех получателей, а непроходящее уходит в отложенный повтор и после max-attempts
+    // в dead letter, не задерживая очередь за собой
+    private int relayBatch() {
+        LocalDateTime now = LocalDateTime.now();
+        List<OutboxEvent> batch = outboxEventRepository.lockUnpublished(now, Limit.of(batchSize));
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        List<Long> ids = batch.stream().map(OutboxEvent::getId).toList();
+        Map<Long, Integer> deliveredTo = new HashMap<>();
+        Map<OutboxEvent, String> failures = new LinkedHashMap<>();
+        for (OutboxSink sink : sinks) {
+            Set<Long> delivered = new HashSet<>(outboxEventRepository.findDelivered(sink.name(), ids));
+            List<OutboxEvent> pending = batch.stream()
+                    .filter(event -> !delivered.contains(event.getId()))
+                    .toList();
+            List<Long> done = new ArrayList<>(delivered);
+            if (!pending.isEmpty()) {
+                List<OutboxEvent> published = publish(sink, pending, failures);
+                if (!published.isEmpty()) {
+                    List<Long> publishedIds = published.stream().map(OutboxEvent::getId).toList();
+                    outboxEventRepository.markDelivered(sink.name(), publishedIds, now);
+                    done.addAll(publishedIds);
+                }
+            }
+            done.forEach(id -> deliveredTo.merge(id, 1, Integer::sum));
+        }
+
+        List<Long> completed = ids.stream()
+                .filter(id -> deliveredTo.getOrDefault(id, 0) == sinks.size())
+                .toList();
+        if (!completed.isEmpty()) {
+            outboxEventRepository.markPublished(completed, now);
+            outboxEventRepository.deleteDeliveries(completed);
+        }
+        failures.forEach((event, error) -> markFailed(event, error, now));
+        log.debug("Опубликовано событий={}, id={}..{}, отказов={}", completed.size(), ids.get(0), ids.get(ids.size() - 1), failures.size());
+        return failures.isEmpty() ? batch.size() : 0;
+    }
+
+    // При отказе на пачке события отправляются по одному до первого отказа: доставленные отмечаются,
+    // отказ засчитывается только событию, на котором он случился, остальные уйдут следующим запуском
+    private List<OutboxEvent> publish(OutboxSink sink, List<OutboxEvent> events, Map<OutboxEvent, String> failures) {
+        try {
+            sink.publish(events);
+            return events;
+        } catch (RuntimeException e) {
+            if (events.size() == 1) {
+                fail(sink, events.get(0), e, failures);
+                return List.of();
+            }
+            log.warn("Получатель {} отказал на пачке id={}..{}, события отправляются по одному: {}",
+                    sink.name(), events.get(0).getId(), events.get(events.size() - 1).getId(), e.toString());
+        }
+        List<OutboxEvent> published = new ArrayList<>();
+        for (OutboxEvent event : events) {
+            try {
+                sink.publish(List.of(event));
+            } catch (RuntimeException e) {
+                fail(sink, event, e, failures);
+                break;
+            }
+            published.add(event);
+        }
+        return published;
+    }
+
+    private void fail(OutboxSink sink, OutboxEvent event, RuntimeException e, Map<OutboxEvent, String> failures) {
+        log.warn("Получатель {} не принял событие id={}: {}", sink.name(), event.getId(), e.toString());
+        failures.merge(event, sink.name() + ": " + e, (first, second) -> first + "; " + second);
+    }
+
+    private void markFailed(OutboxEvent event, String error, LocalDateTime now) {
+        int attempts = event.getAttempts() + 1;
+        String lastError = error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error;
+        if (attempts >= maxAttempts) {
+            log.error("Событие id={} не доставлено за {} попыток и отложено в dead letter: {}", event.getId(), attempts, lastError);
+            outboxEventRepository.markFailed(event.getId(), lastError, null, now);
+            return;
+        }
+        outboxEventRepository.markFailed(event.getId(), lastError, now.plus(backoff(attempts)), null);
+    }
+
+    // Пауза удваивается с каждой попыткой и ограничена max-backoff
+    private Duration backoff(int attempts) {
+        Duration delay = retryBackoff.multipliedBy(1L << Math.min(attempts - 1, 20));
+        return delay.compareTo(maxBackoff) > 0 ? maxBackoff : delay;
+    }
+}
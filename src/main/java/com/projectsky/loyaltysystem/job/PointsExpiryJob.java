@@ -0,0 +1,48 @@
+package com.projectsky.loyaltysystem.job;
+
+import com.projectsky.loyaltysystem.config.CacheNames;
+import com.projectsky.loyaltysystem.service.PointsLedgerService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+// Ночное сгорание баллов: клиенты со сгоревшими партиями обрабатываются пачками по возрастанию id,
+// каждая пачка - одна транзакция с пакетными обновлениями, а не транзакция на клиента
+@Component
+@ConditionalOnProperty(name = "loyalty.jobs.points-expiry.enabled", havingValue = "true", matchIfMissing = true)
+@RequiredArgsConstructor
+@Slf4j
+public class PointsExpiryJob {
+
+    private final PointsLedgerService pointsLedgerService;
+    private final CacheManager cacheManager;
+
+    @Value("${loyalty.jobs.points-expiry.chunk-size:1000}")
+    private int chunkSize;
+
+    @Scheduled(cron = "${loyalty.jobs.points-expiry.cron:0 0 3 * * *}")
+    public void expire() {
+        LocalDateTime now = LocalDateTime.now();
+        Optional<Cache> summaries = Optional.ofNullable(cacheManager.getCache(CacheNames.CLIENT_SUMMARY));
+        log.info("Сгорание баллов на момент {}", now);
+
+        long after = 0L;
+        int clients = 0;
+        List<Long> chunk;
+        while (!(chunk = pointsLedgerService.expireLots(after, now, chunkSize)).isEmpty()) {
+            chunk.forEach(id -> summaries.ifPresent(cache -> cache.evict(id)));
+            clients += chunk.size();
+            after = chunk.get(chunk.size() - 1);
+        }
+        log.info("Сгорание баллов завершено, затронуто клиентов={}", clients);
+    }
+}
@@ -0,0 +1,253 @@
+package com.projectsky.loyaltysystem.job;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Обслуживание помесячных секций purchases: заранее создает секции на ближайшие месяцы,
+// чтобы новые покупки не попадали в purchases_default, разносит историю из purchases_before_* по месяцам
+// и отсоединяет секции старше срока хранения в схему архива. Работает только на PostgreSQL, где таблица
+// секционирована миграцией 008, и только на одном узле кластера
+@Component
+@ConditionalOnProperty(name = "loyalty.jobs.purchase-partitions.enabled", havingValue = "true", matchIfMissing = true)
+@Slf4j
+public class PurchasePartitionJob {
+
+    private static final Pattern PARTITION_NAME = Pattern.compile("purchases_(\\d{4})_(\\d{2})");
+    // Исходная таблица, присоединенная миграцией 008: покрывает все месяцы до указанного
+    private static final Pattern LEGACY_PARTITION_NAME = Pattern.compile("purchases_before_(\\d{4})_(\\d{2})");
+    // Имя без кавычек в PostgreSQL: строчные латинские буквы, цифры и _, не длиннее 63 символов
+    private static final Pattern IDENTIFIER = Pattern.compile("[a-z_][a-z0-9_]{0,62}");
+    private static final DateTimeFormatter NAME_FORMAT = DateTimeFormatter.ofPattern("yyyy_MM");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ClusterJobLock clusterJobLock;
+    private final int monthsAhead;
+    // 0 - история из purchases_before_* не разносится
+    private final int legacyMonthsPerRun;
+    // 0 - секции не отсоединяются
+    private final int retentionMonths;
+    private final String archiveSchema;
+
+    public PurchasePartitionJob(JdbcTemplate jdbcTemplate,
+                                PlatformTransactionManager transactionManager,
+                                ClusterJobLock clusterJobLock,
+                                @Value("${loyalty.jobs.purchase-partitions.months-ahead:3}") int monthsAhead,
+                                @Value("${loyalty.jobs.purchase-partitions.legacy-months-per-run:3}") int legacyMonthsPerRun,
+                                @Value("${loyalty.jobs.purchase-partitions.retention-months:0}") int retentionMonths,
+                                @Value("${loyalty.jobs.purchase-partitions.archive-schema:archive}") String archiveSchema) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.clusterJobLock = clusterJobLock;
+        this.monthsAhead = monthsAhead;
+        this.legacyMonthsPerRun = legacyMonthsPerRun;
+        this.retentionMonths = retentionMonths;
+        this.archiveSchema = quote(archiveSchema);
+    }
+
+    @Scheduled(cron = "${loyalty.jobs.purchase-partitions.cron:0 15 3 * * *}")
+    public void maintain() {
+        clusterJobLock.runExclusively("purchase-partitions", this::maintainPartitions);
+    }
+
+    private void maintainPartitions() {
+        if (!isPartitioned()) {
+            log.debug("Таблица purchases не секционирована, обслуживание секций пропущено");
+            return;
+        }
+        int split = legacyMonthsPerRun > 0 ? splitLegacy(partitions()) : 0;
+        List<String> partitions = partitions();
+        YearMonth current = YearMonth.now();
+        YearMonth first = legacyBoundary(partitions)
+                .filter(boundary -> boundary.isAfter(current))
+                .orElse(current);
+        int created = 0;
+        for (YearMonth month = first; !month.isAfter(current.plusMonths(monthsAhead)); month = month.plusMonths(1)) {
+            if (!partitions.contains(partitionName(month))) {
+                created += createPartition(month) ? 1 : 0;
+            }
+        }
+        int detached = retentionMonths > 0 ? detachBefore(partitions, current.minusMonths(retentionMonths)) : 0;
+        log.info("Обслуживание секций purchases завершено, разнесено месяцев истории={}, создано={}, отсоединено={}",
+                split, created, detached);
+    }
+
+    private boolean isPartitioned() {
+        String product = jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+                connection.getMetaData().getDatabaseProductName());
+        return "PostgreSQL".equals(product) && Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM pg_partitioned_table WHERE partrelid = to_regclass('purchases'))",
+                Boolean.class));
+    }
+
+    private List<String> partitions() {
+        return jdbcTemplate.queryForList("""
+                SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid
+                WHERE i.inhparent = to_regclass('purchases')
+                ORDER BY c.relname
+                """, String.class);
+    }
+
+    private Optional<YearMonth> legacyBoundary(List<String> partitions) {
+        return partitions.stream()
+                .map(LEGACY_PARTITION_NAME::matcher)
+                .filter(Matcher::matches)
+                .map(PurchasePartitionJob::month)
+                .max(YearMonth::compareTo);
+    }
+
+    // Строки месяца, уже попавшие в default, не дают создать секцию напрямую. Поэтому секция создается
+    // отдельной таблицей, строки переносятся в нее из default и только затем она присоединяется - все в одной
+    // транзакции под блокировкой default, чтобы новые строки месяца не проскочили между переносом и присоединением
+    private boolean createPartition(YearMonth month) {
+        String name = partitionName(month);
+        String table = quote(name);
+        LocalDate from = month.atDay(1);
+        LocalDate to = month.plusMonths(1).atDay(1);
+        try {
+            Integer moved = transactionTemplate.execute(status -> {
+                jdbcTemplate.execute("LOCK TABLE purchases_default IN ACCESS EXCLUSIVE MODE");
+                jdbcTemplate.execute("CREATE TABLE " + table + " (LIKE purchases INCLUDING DEFAULTS)");
+                int rows = jdbcTemplate.update("WITH moved AS (DELETE FROM purchases_default"
+                        + " WHERE purchase_date >= ? AND purchase_date < ? RETURNING *)"
+                        + " INSERT INTO " + table + " SELECT * FROM moved", from, to);
+                jdbcTemplate.execute("ALTER TABLE purchases ATTACH PARTITION " + table
+                        + " FOR VALUES FROM ('" + from + "') TO ('" + to + "')");
+                return rows;
+            });
+            log.info("Создана секция {}, перенесено строк из default={}", name, moved);
+            return true;
+        } catch (RuntimeException e) {
+            log.error("Не удалось создать секцию {}", name, e);
+            return false;
+        }
+    }
+
+    // История из purchases_before_* разносится по месяцу за шаг, начиная с самого старого: строки месяца
+    // переносятся в его секцию, а исходная секция присоединяется заново с сдвинутой нижней границей.
+    // Дальше эти секции обслуживаются как обычные, в том числе отсоединяются по сроку хранения
+    private int splitLegacy(List<String> partitions) {
+        Optional<String> legacy = partitions.stream()
+                .filter(name -> LEGACY_PARTITION_NAME.matcher(name).matches())
+                .findFirst();
+        if (legacy.isEmpty()) {
+            return 0;
+        }
+        String name = legacy.get();
+        Matcher matcher = LEGACY_PARTITION_NAME.matcher(name);
+        matcher.matches();
+        YearMonth boundary = month(matcher);
+        // Таблица не удаляется: от нее могут зависеть последовательности и умолчания остальных секций
+        jdbcTemplate.execute("CREATE SCHEMA IF NOT EXISTS " + archiveSchema);
+
+        int split = 0;
+        while (split < legacyMonthsPerRun) {
+            LocalDateTime oldest = jdbcTemplate.queryForObject("SELECT min(purchase_date) FROM " + quote(name),
+                    LocalDateTime.class);
+            if (oldest == null) {
+                // Пустая исходная секция больше не нужна: ее месяцы покроют обычные секции и default
+                detachToArchive(name);
+                return split;
+            }
+            YearMonth month = YearMonth.from(oldest);
+            if (!splitLegacyMonth(name, month, boundary)) {
+                return split;
+            }
+            split++;
+            if (month.plusMonths(1).equals(boundary)) {
+                return split;
+            }
+        }
+        return split;
+    }
+
+    // Границу секции нельзя сдвинуть на месте, поэтому исходная секция отсоединяется и присоединяется заново.
+    // Отсоединение берет исключительную блокировку purchases до конца транзакции, а повторное присоединение
+    // проверяет границу проходом по секции, поэтому за запуск разносится не больше legacy-months-per-run месяцев
+    private boolean splitLegacyMonth(String legacy, YearMonth month, YearMonth boundary) {
+        String name = partitionName(month);
+        String table = quote(name);
+        LocalDate from = month.atDay(1);
+        LocalDate to = month.plusMonths(1).atDay(1);
+        try {
+            Integer moved = transactionTemplate.execute(status -> {
+                jdbcTemplate.execute("ALTER TABLE purchases DETACH PARTITION " + quote(legacy));
+                jdbcTemplate.execute("CREATE TABLE " + table + " (LIKE purchases INCLUDING DEFAULTS)");
+                int rows = jdbcTemplate.update("WITH moved AS (DELETE FROM " + quote(legacy)
+                        + " WHERE purchase_date < ? RETURNING *)"
+                        + " INSERT INTO " + table + " SELECT * FROM moved", to);
+                jdbcTemplate.execute("ALTER TABLE purchases ATTACH PARTITION " + table
+                        + " FOR VALUES FROM ('" + from + "') TO ('" + to + "')");
+                if (month.plusMonths(1).equals(boundary)) {
+                    jdbcTemplate.execute("ALTER TABLE " + quote(legacy) + " SET SCHEMA " + archiveSchema);
+                } else {
+                    jdbcTemplate.execute("ALTER TABLE purchases ATTACH PARTITION " + quote(legacy)
+                            + " FOR VALUES FROM ('" + to + "') TO ('" + boundary.atDay(1) + "')");
+                }
+                return rows;
+            });
+            log.info("Из секции {} выделена секция {}, перенесено строк={}", legacy, name, moved);
+            return true;
+        } catch (RuntimeException e) {
+            log.error("Не удалось выделить секцию {} из {}", name, legacy, e);
+            return false;
+        }
+    }
+
+    private int detachBefore(List<String> partitions, YearMonth cutoff) {
+        jdbcTemplate.execute("CREATE SCHEMA IF NOT EXISTS " + archiveSchema);
+
+        int detached = 0;
+        for (String name : partitions) {
+            Matcher matcher = PARTITION_NAME.matcher(name);
+            if (!matcher.matches() || !month(matcher).isBefore(cutoff)) {
+                continue;
+            }
+            detachToArchive(name);
+            detached++;
+        }
+        return detached;
+    }
+
+    // При наличии default-секции CONCURRENTLY недоступен: отсоединение берет короткую исключительную блокировку
+    private void detachToArchive(String name) {
+        String table = quote(name);
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.execute("ALTER TABLE purchases DETACH PARTITION " + table);
+            jdbcTemplate.execute("ALTER TABLE " + table + " SET SCHEMA " + archiveSchema);
+        });
+        log.info("Секция {} отсоединена и перенесена в схему {}", name, archiveSchema);
+    }
+
+    private String partitionName(YearMonth month) {
+        return "purchases_" + month.format(NAME_FORMAT);
+    }
+
+    private static YearMonth month(Matcher matcher) {
+        return YearMonth.of(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2)));
+    }
+
+    // Имена из настроек и каталога попадают в DDL только проверенными и в кавычках
+    static String quote(String identifier) {
+        if (identifier == null || !IDENTIFIER.matcher(identifier).matches()) {
+            throw new IllegalArgumentException("Недопустимое имя в DDL секций purchases: " + identifier);
+        }
+        return "\"" + identifier + "\"";
+    }
+}
@@ -0,0 +1,27 @@
+package com.projectsky.loyaltysystem.job;
+
+import com.projectsky.loyaltysystem.cache.TwoLevelCacheManager;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+// Удаление, не дошедшее до Redis, повторяется, а не ждет remote-ttl: до повтора остальные узлы
+// могли бы прочитать из Redis устаревшую сводку
+@Component
+@ConditionalOnProperty(name = "loyalty.cache.mode", havingValue = "two-level")
+@RequiredArgsConstructor
+@Slf4j
+public class RemoteCacheRepairJob {
+
+    private final TwoLevelCacheManager cacheManager;
+
+    @Scheduled(fixedDelayString = "${loyalty.jobs.cache-repair.delay-ms:1000}")
+    public void repair() {
+        int pending = cacheManager.repairRemote();
+        if (pending > 0) {
+            log.warn("Удаленный кэш недоступен, ожидают повтора удалений: {}", pending);
+        }
+    }
+}
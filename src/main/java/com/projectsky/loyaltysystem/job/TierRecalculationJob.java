@@ -0,0 +1,77 @@
+package com.projectsky.loyaltysystem.job;
+
+import com.projectsky.loyaltysystem.config.CacheNames;
+import com.projectsky.loyaltysystem.config.TierProperties;
+import com.projectsky.loyaltysystem.repository.ClientRepository;
+import com.projectsky.loyaltysystem.repository.ClientSpendBucketRepository;
+import com.projectsky.loyaltysystem.service.TierService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cache.CacheManager;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Ночной пересчет уровней: убирает из скользящей суммы корзины, выпавшие из окна.
+// Диапазоны id обрабатываются параллельно, каждый в своей транзакции, и переписываются только разошедшиеся строки.
+// Запуск выполняет один узел кластера
+@Component
+@ConditionalOnProperty(name = "loyalty.jobs.tier-recalculation.enabled", havingValue = "true", matchIfMissing = true)
+@RequiredArgsConstructor
+@Slf4j
+public class TierRecalculationJob {
+
+    private final ClientRepository clientRepository;
+    private final ClientSpendBucketRepository bucketRepository;
+    private final TierService tierService;
+    private final TierProperties tierProperties;
+    private final CacheManager cacheManager;
+    private final ClusterJobLock clusterJobLock;
+
+    @Value("${loyalty.jobs.tier-recalculation.chunk-size:5000}")
+    private int chunkSize;
+
+    @Value("${loyalty.jobs.tier-recalculation.parallelism:4}")
+    private int parallelism;
+
+    @Scheduled(cron = "${loyalty.jobs.tier-recalculation.cron:0 30 3 * * *}")
+    public void recalculate() {
+        clusterJobLock.runExclusively("tier-recalculation", this::recalculateAll);
+    }
+
+    private void recalculateAll() {
+        Optional<Long> minId = clientRepository.findMinId();
+        Optional<Long> maxId = clientRepository.findMaxId();
+        if (minId.isEmpty() || maxId.isEmpty()) {
+            log.info("Нет клиентов для пересчета уровней");
+            return;
+        }
+
+        LocalDate windowStart = tierProperties.windowStart(LocalDate.now());
+        log.info("Пересчет уровней для id={}..{}, окно с {}", minId.get(), maxId.get(), windowStart);
+
+        List<CompletableFuture<Integer>> ranges = new ArrayList<>();
+        try (ExecutorService executor = Executors.newFixedThreadPool(parallelism)) {
+            for (long fromId = minId.get(); fromId <= maxId.get(); fromId += chunkSize) {
+                long from = fromId;
+                long to = Math.min(fromId + chunkSize - 1, maxId.get());
+                ranges.add(CompletableFuture.supplyAsync(() -> tierService.recalculateTiers(from, to, windowStart), executor));
+            }
+        }
+        int updated = ranges.stream().mapToInt(CompletableFuture::join).sum();
+
+        int expired = bucketRepository.deleteExpired(windowStart);
+        Optional.ofNullable(cacheManager.getCache(CacheNames.CLIENT_SUMMARY))
+                .ifPresent(cache -> cache.clear());
+        log.info("Пересчет уровней завершен, изменено клиентов={}, удалено корзин={}", updated, expired);
+    }
+}
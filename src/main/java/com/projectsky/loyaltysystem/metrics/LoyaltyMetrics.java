@@ -0,0 +1,85 @@
+package com.projectsky.loyaltysystem.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+
+// Бизнес-счетчики меняются только после коммита: откаченные покупки и возвраты не попадают в метрики
+@Component
+public class LoyaltyMetrics {
+
+    private final Counter pointsAccrued;
+    private final Counter pointsRedeemed;
+    private final Counter fullRefunds;
+    private final Counter partialRefunds;
+    private final Counter fullRefundsAmount;
+    private final Counter partialRefundsAmount;
+
+    public LoyaltyMetrics(ObjectProvider<MeterRegistry> meterRegistry) {
+        MeterRegistry registry = meterRegistry.getIfAvailable(() -> Metrics.globalRegistry);
+        this.pointsAccrued = Counter.builder("loyalty.points.accrued")
+                .baseUnit("points")
+                .description("Bonus points accrued to clients")
+                .register(registry);
+        this.pointsRedeemed = Counter.builder("loyalty.points.redeemed")
+                .baseUnit("points")
+                .description("Bonus points redeemed by clients")
+                .register(registry);
+        this.fullRefunds = refunds(registry, "full");
+        this.partialRefunds = refunds(registry, "partial");
+        this.fullRefundsAmount = refundsAmount(registry, "full");
+        this.partialRefundsAmount = refundsAmount(registry, "partial");
+    }
+
+    public void pointsAccrued(int points) {
+        if (points > 0) {
+            afterCommit(() -> pointsAccrued.increment(points));
+        }
+    }
+
+    public void pointsRedeemed(int points) {
+        if (points > 0) {
+            afterCommit(() -> pointsRedeemed.increment(points));
+        }
+    }
+
+    public void refunded(boolean full, BigDecimal amount) {
+        afterCommit(() -> {
+            (full ? fullRefunds : partialRefunds).increment();
+            (full ? fullRefundsAmount : partialRefundsAmount).increment(amount.doubleValue());
+        });
+    }
+
+    private void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private static Counter refunds(MeterRegistry registry, String type) {
+        return Counter.builder("loyalty.refunds")
+                .tag("type", type)
+                .description("Refunded purchases")
+                .register(registry);
+    }
+
+    private static Counter refundsAmount(MeterRegistry registry, String type) {
+        return Counter.builder("loyalty.refunds.amount")
+                .tag("type", type)
+                .description("Money returned by refunds")
+                .register(registry);
+    }
+}
@@ -0,0 +1,58 @@
+package com.projectsky.loyaltysystem.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.util.ClassUtils;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+// Таймер успешного вызова ищется по методу без сборки тегов: на горячем пути только чтение карты и запись в гистограмму.
+// Таймеры ошибок создаются через реестр на каждом вызове, это редкий путь
+public class ServiceTimingInterceptor implements MethodInterceptor {
+
+    public static final String METRIC = "loyalty.service";
+
+    private static final String NO_EXCEPTION = "none";
+
+    private final Supplier<MeterRegistry> meterRegistry;
+    private final Map<Method, Timer> timers = new ConcurrentHashMap<>();
+
+    public ServiceTimingInterceptor(Supplier<MeterRegistry> meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        long start = System.nanoTime();
+        try {
+            Object result = invocation.proceed();
+            successTimer(invocation).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return result;
+        } catch (Throwable e) {
+            timer(invocation, e.getClass().getSimpleName()).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            throw e;
+        }
+    }
+
+    private Timer successTimer(MethodInvocation invocation) {
+        Timer timer = timers.get(invocation.getMethod());
+        if (timer == null) {
+            timer = timers.computeIfAbsent(invocation.getMethod(), method -> timer(invocation, NO_EXCEPTION));
+        }
+        return timer;
+    }
+
+    private Timer timer(MethodInvocation invocation, String exception) {
+        return Timer.builder(METRIC)
+                .tag("class", ClassUtils.getUserClass(invocation.getThis().getClass()).getSimpleName())
+                .tag("method", invocation.getMethod().getName())
+                .tag("exception", exception)
+                .register(meterRegistry.get());
+    }
+}
@@ -0,0 +1,29 @@
+package com.projectsky.loyaltysystem.metrics;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+// Считает подготовленные Hibernate запросы в потоке, где счетчик открыт фильтром запроса.
+// JDBC-пачка готовится один раз и считается одним запросом; работа в фоновых потоках не учитывается
+public class StatementCountingInspector implements StatementInspector {
+
+    private static final ThreadLocal<int[]> COUNTER = new ThreadLocal<>();
+
+    @Override
+    public String inspect(String sql) {
+        int[] counter = COUNTER.get();
+        if (counter != null) {
+            counter[0]++;
+        }
+        return sql;
+    }
+
+    static void open() {
+        COUNTER.set(new int[1]);
+    }
+
+    static int close() {
+        int[] counter = COUNTER.get();
+        COUNTER.remove();
+        return counter == null ? 0 : counter[0];
+    }
+}
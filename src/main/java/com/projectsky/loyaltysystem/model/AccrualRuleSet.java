@@ -0,0 +1,30 @@
+package com.projectsky.loyaltysystem.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// Версия правил начисления баллов; строки не меняются, новая версия добавляется новой строкой
+@Entity
+@Table(name = "accrual_rule_sets")
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+public class AccrualRuleSet {
+
+    @Id
+    private Long version;
+
+    // JSON AccrualProperties
+    @Column(nullable = false, length = 100000)
+    private String rules;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+}
@@ -5,6 +5,7 @@ import jakarta.persistence.*;
 import lombok.*;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Entity
@@ -17,7 +18,8 @@ import java.util.List;
 public class Client {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "clients_seq")
+    @SequenceGenerator(name = "clients_seq", sequenceName = "clients_seq", allocationSize = 50)
     private Long id;
 
     @Column(unique = true, nullable = false)
@@ -35,6 +37,21 @@ public class Client {
     @Enumerated(EnumType.STRING)
     private Category category;
 
+    // Сводка по покупкам поддерживается инкрементально при каждой покупке
+    @Column(nullable = false)
+    private Integer totalPurchases;
+
+    private LocalDateTime lastPurchaseAt;
+
+    // Сумма покупок за скользящее окно, источник истины - помесячные корзины ClientSpendBucket
+    @Column(nullable = false)
+    private BigDecimal rollingSpend;
+
+    // Атомарные UPDATE баланса и баллов версию не меняют: профиль правится отдельным UPDATE своих колонок,
+    // а сущность целиком сохраняют только пакетные пути, читающие строку под блокировкой
+    @Version
+    private Long version;
+
     @OneToMany(mappedBy = "client", cascade = CascadeType.ALL, orphanRemoval = true)
     private List<Purchase> purchases;
 }
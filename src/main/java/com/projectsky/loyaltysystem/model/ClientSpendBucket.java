@@ -0,0 +1,28 @@
+package com.projectsky.loyaltysystem.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.EmbeddedId;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+
+// Сумма покупок клиента за календарный месяц за вычетом возвратов
+@Entity
+@Table(name = "client_spend_buckets")
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+public class ClientSpendBucket {
+
+    @EmbeddedId
+    private ClientSpendBucketId id;
+
+    @Column(nullable = false)
+    private BigDecimal amount;
+}
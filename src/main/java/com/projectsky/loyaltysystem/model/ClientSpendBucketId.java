@@ -0,0 +1,25 @@
+package com.projectsky.loyaltysystem.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+@Embeddable
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@EqualsAndHashCode
+public class ClientSpendBucketId implements Serializable {
+
+    @Column(name = "client_id")
+    private Long clientId;
+
+    // Первый день месяца
+    private LocalDate period;
+}
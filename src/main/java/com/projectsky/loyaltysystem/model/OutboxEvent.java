@@ -0,0 +1,51 @@
+package com.projectsky.loyaltysystem.model;
+
+import com.projectsky.loyaltysystem.enums.OutboxEventType;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+// Доставка "хотя бы один раз": получатели отбрасывают повторы по id события
+@Entity
+@Table(name = "outbox_events")
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Getter
+@Setter
+public class OutboxEvent {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "outbox_events_seq")
+    @SequenceGenerator(name = "outbox_events_seq", sequenceName = "outbox_events_seq", allocationSize = 50)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private OutboxEventType type;
+
+    @Column(nullable = false)
+    private Long clientId;
+
+    // JSON одной из записей пакета outbox
+    @Column(nullable = false, length = 4000)
+    private String payload;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    private LocalDateTime publishedAt;
+
+    @Column(nullable = false)
+    private Integer attempts;
+
+    @Column(length = 1000)
+    private String lastError;
+
+    // Раньше этого момента повтор после отказа не выполняется
+    private LocalDateTime nextAttemptAt;
+
+    // Попытки исчерпаны: событие больше не ретранслируется и ждет разбора
+    private LocalDateTime deadLetteredAt;
+}
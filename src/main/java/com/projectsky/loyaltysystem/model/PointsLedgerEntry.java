@@ -0,0 +1,41 @@
+package com.projectsky.loyaltysystem.model;
+
+import com.projectsky.loyaltysystem.enums.PointsEntryType;
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.Immutable;
+
+import java.time.LocalDateTime;
+
+// Журнал только дописывается: points со знаком, сумма по клиенту равна Client.bonusPoints
+@Entity
+@Immutable
+@Table(name = "points_ledger")
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Getter
+public class PointsLedgerEntry {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "points_ledger_seq")
+    @SequenceGenerator(name = "points_ledger_seq", sequenceName = "points_ledger_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long clientId;
+
+    private Long lotId;
+
+    private Long purchaseId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private PointsEntryType type;
+
+    @Column(nullable = false)
+    private Integer points;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,39 @@
+package com.projectsky.loyaltysystem.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+// Партия баллов с собственным сроком жизни; списания уменьшают remaining, сама партия не удаляется
+@Entity
+@Table(name = "points_lots")
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Getter
+@Setter
+public class PointsLot {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "points_lots_seq")
+    @SequenceGenerator(name = "points_lots_seq", sequenceName = "points_lots_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long clientId;
+
+    private Long purchaseId;
+
+    @Column(nullable = false)
+    private Integer points;
+
+    @Column(nullable = false)
+    private Integer remaining;
+
+    @Column(nullable = false)
+    private LocalDateTime earnedAt;
+
+    @Column(nullable = false)
+    private LocalDateTime expiresAt;
+}
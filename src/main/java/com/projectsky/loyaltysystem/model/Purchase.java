@@ -16,20 +16,39 @@ import java.time.LocalDateTime;
 @Setter
 public class Purchase {
 
+    // Пул идентификаторов из последовательности позволяет Hibernate отправлять вставки пачками
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "purchases_seq")
+    @SequenceGenerator(name = "purchases_seq", sequenceName = "purchases_seq", allocationSize = 50)
     private Long id;
 
     private String name;
 
     private BigDecimal price;
 
+    // Ключ помесячного секционирования таблицы в PostgreSQL, после вставки не меняется
+    @Column(nullable = false)
     private LocalDateTime purchaseDate;
 
     @Enumerated(EnumType.STRING)
     private PurchaseStatus status;
 
-    @ManyToOne
+    // Баллы, фактически начисленные по действовавшим правилам; при возврате списываются именно они
+    @Column(nullable = false)
+    private Integer pointsAccrued;
+
+    // Оплата разделена между баллами и балансом; при возврате каждая часть возвращается своим путем
+    @Column(nullable = false)
+    private Integer pointsRedeemed;
+
+    @Column(nullable = false)
+    private BigDecimal balancePaid;
+
+    // Сумма уже возвращенных частей; доли баланса и баллов считаются от нее нарастающим итогом
+    @Column(nullable = false)
+    private BigDecimal refundedAmount;
+
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "client_id")
     private Client client;
 }
@@ -0,0 +1,71 @@
+package com.projectsky.loyaltysystem.notification;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+// Шаблон разбирается один раз при загрузке: первая строка - тема, после пустой строки - текст.
+// Подстановки {name}; при отправке остается только склеить готовые фрагменты
+public final class MailTemplate {
+
+    private final String[] subject;
+    private final String[] body;
+
+    private MailTemplate(String[] subject, String[] body) {
+        this.subject = subject;
+        this.body = body;
+    }
+
+    public static MailTemplate compile(String name, String source) {
+        String text = source.replace("\r\n", "\n");
+        int separator = text.indexOf("\n\n");
+        if (separator < 0) {
+            throw new IllegalArgumentException("Шаблон " + name + ": тема и текст должны разделяться пустой строкой");
+        }
+        return new MailTemplate(
+                parse(name, text.substring(0, separator).strip()),
+                parse(name, text.substring(separator + 2).stripTrailing()));
+    }
+
+    public String subject(Map<String, ?> values) {
+        return render(subject, values);
+    }
+
+    public String body(Map<String, ?> values) {
+        return render(body, values);
+    }
+
+    // Четные элементы - текст, нечетные - имена подстановок
+    private static String[] parse(String name, String text) {
+        List<String> fragments = new ArrayList<>();
+        int from = 0;
+        int open;
+        while ((open = text.indexOf('{', from)) >= 0) {
+            int close = text.indexOf('}', open);
+            if (close < 0) {
+                throw new IllegalArgumentException("Шаблон " + name + ": незакрытая подстановка в позиции " + open);
+            }
+            fragments.add(text.substring(from, open));
+            fragments.add(text.substring(open + 1, close));
+            from = close + 1;
+        }
+        fragments.add(text.substring(from));
+        return fragments.toArray(String[]::new);
+    }
+
+    private static String render(String[] fragments, Map<String, ?> values) {
+        StringBuilder result = new StringBuilder(256);
+        for (int i = 0; i < fragments.length; i++) {
+            if (i % 2 == 0) {
+                result.append(fragments[i]);
+            } else {
+                Object value = values.get(fragments[i]);
+                if (value == null) {
+                    throw new IllegalArgumentException("Нет значения для подстановки {" + fragments[i] + "}");
+                }
+                result.append(value);
+            }
+        }
+        return result.toString();
+    }
+}
@@ -0,0 +1,14 @@
+package com.projectsky.loyaltysystem.notification;
+
+import com.projectsky.loyaltysystem.enums.NotificationType;
+
+import java.util.Map;
+
+// values - подстановки шаблона типа; username нужен обертке письма и дайджесту
+public record Notification(
+        String recipient,
+        String username,
+        NotificationType type,
+        Map<String, Object> values
+) {
+}
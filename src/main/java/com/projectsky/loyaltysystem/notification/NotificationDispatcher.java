@@ -0,0 +1,154 @@
+package com.projectsky.loyaltysystem.notification;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSender;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+// Очередь писем с одним потоком отправки. Поток копит уведомления в течение окна, склеивает уведомления
+// одного получателя в дайджест и отправляет окно одним вызовом JavaMailSender - одним SMTP-соединением.
+// Постановка в очередь не блокирует: ретранслятор событий зовет ее внутри своей транзакции
+@Slf4j
+public class NotificationDispatcher {
+
+    private static final long POLL_MILLIS = 200;
+
+    private final JavaMailSender mailSender;
+    private final NotificationTemplates templates;
+    private final String from;
+    private final long coalesceWindowNanos;
+    private final int maxBatch;
+    private final BlockingQueue<Notification> queue;
+    private final Thread worker;
+
+    private volatile boolean running = true;
+
+    public NotificationDispatcher(JavaMailSender mailSender,
+                                  NotificationTemplates templates,
+                                  String from,
+                                  int queueCapacity,
+                                  Duration coalesceWindow,
+                                  int maxBatch) {
+        this.mailSender = mailSender;
+        this.templates = templates;
+        this.from = from;
+        this.coalesceWindowNanos = coalesceWindow.toNanos();
+        this.maxBatch = maxBatch;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.worker = Thread.ofPlatform().name("notification-dispatcher").daemon().unstarted(this::run);
+    }
+
+    @PostConstruct
+    public void start() {
+        worker.start();
+    }
+
+    // Оставшиеся в очереди письма отправляются без ожидания окна
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        worker.join(Duration.ofSeconds(10));
+    }
+
+    public boolean enqueue(Notification notification) {
+        if (queue.offer(notification)) {
+            return true;
+        }
+        log.warn("Очередь писем переполнена, уведомление {} для {} отброшено", notification.type(), notification.recipient());
+        return false;
+    }
+
+    // Пачка встает в очередь целиком или не встает вовсе: места проверяются один раз, без ожидания.
+    // Очередь наполняет только ретранслятор, поток отправки лишь освобождает места
+    public boolean enqueueAll(List<Notification> notifications) {
+        if (queue.remainingCapacity() < notifications.size()) {
+            return false;
+        }
+        notifications.forEach(this::enqueue);
+        return true;
+    }
+
+    public int queued() {
+        return queue.size();
+    }
+
+    private void run() {
+        while (running || !queue.isEmpty()) {
+            try {
+                List<Notification> batch = nextBatch();
+                if (!batch.isEmpty()) {
+                    send(batch);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.error("Ошибка отправки писем", e);
+            }
+        }
+    }
+
+    private List<Notification> nextBatch() throws InterruptedException {
+        List<Notification> batch = new ArrayList<>();
+        Notification first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+        if (first == null) {
+            return batch;
+        }
+        batch.add(first);
+        long deadline = System.nanoTime() + coalesceWindowNanos;
+        while (batch.size() < maxBatch) {
+            long wait = running ? deadline - System.nanoTime() : 0;
+            Notification next = wait > 0 ? queue.poll(wait, TimeUnit.NANOSECONDS) : queue.poll();
+            if (next == null) {
+                break;
+            }
+            batch.add(next);
+        }
+        return batch;
+    }
+
+    void send(List<Notification> batch) {
+        Map<String, List<Notification>> byRecipient = new LinkedHashMap<>();
+        for (Notification notification : batch) {
+            byRecipient.computeIfAbsent(notification.recipient(), recipient -> new ArrayList<>()).add(notification);
+        }
+
+        SimpleMailMessage[] messages = new SimpleMailMessage[byRecipient.size()];
+        int i = 0;
+        for (Map.Entry<String, List<Notification>> entry : byRecipient.entrySet()) {
+            List<Notification> notifications = entry.getValue();
+            SimpleMailMessage message = new SimpleMailMessage();
+            message.setFrom(from);
+            message.setTo(entry.getKey());
+            if (notifications.size() == 1) {
+                message.setSubject(templates.subject(notifications.get(0)));
+                message.setText(templates.body(notifications.get(0)));
+            } else {
+                message.setSubject(templates.digestSubject(notifications));
+                message.setText(templates.digestBody(notifications));
+            }
+            messages[i++] = message;
+        }
+
+        try {
+            mailSender.send(messages);
+            log.debug("Отправлено писем={} по уведомлениям={}", messages.length, batch.size());
+        } catch (MailSendException e) {
+            log.warn("Не отправлено писем={} из {}: {}", e.getFailedMessages().size(), messages.length, e.getMessage());
+        } catch (MailException e) {
+            log.warn("Не удалось отправить письма={}: {}", messages.length, e.getMessage());
+        }
+    }
+}
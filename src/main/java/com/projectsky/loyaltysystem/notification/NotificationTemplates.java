@@ -0,0 +1,65 @@
+package com.projectsky.loyaltysystem.notification;
+
+import com.projectsky.loyaltysystem.enums.NotificationType;
+import org.springframework.core.io.ClassPathResource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+// Все шаблоны компилируются при старте: ошибка в шаблоне не дает подняться узлу, а не всплывает на первом письме
+public class NotificationTemplates {
+
+    private static final String LOCATION = "mail/";
+
+    private final Map<NotificationType, MailTemplate> templates = new EnumMap<>(NotificationType.class);
+    private final MailTemplate single;
+    private final MailTemplate digest;
+
+    public NotificationTemplates() {
+        for (NotificationType type : NotificationType.values()) {
+            templates.put(type, load(type.name().toLowerCase().replace('_', '-')));
+        }
+        single = load("single");
+        digest = load("digest");
+    }
+
+    public String subject(Notification notification) {
+        return templates.get(notification.type()).subject(notification.values());
+    }
+
+    public String body(Notification notification) {
+        return single.body(Map.of(
+                "username", notification.username(),
+                "content", templates.get(notification.type()).body(notification.values())));
+    }
+
+    // Дайджест: несколько уведомлений одному получателю одним письмом, в порядке поступления
+    public String digestSubject(List<Notification> notifications) {
+        return digest.subject(Map.of("count", notifications.size()));
+    }
+
+    public String digestBody(List<Notification> notifications) {
+        Map<String, Object> values = new HashMap<>();
+        values.put("username", notifications.get(notifications.size() - 1).username());
+        values.put("count", notifications.size());
+        values.put("content", notifications.stream()
+                .map(notification -> subject(notification) + "\n" + templates.get(notification.type()).body(notification.values()))
+                .collect(Collectors.joining("\n\n")));
+        return digest.body(values);
+    }
+
+    private static MailTemplate load(String name) {
+        try {
+            String source = new ClassPathResource(LOCATION + name + ".txt").getContentAsString(StandardCharsets.UTF_8);
+            return MailTemplate.compile(name, source);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не найден шаблон письма " + name, e);
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.projectsky.loyaltysystem.outbox;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+public record BalanceToppedUpEvent(
+        Long clientId,
+        BigDecimal amount,
+        BigDecimal balance,
+        LocalDateTime toppedUpAt
+) {
+}
@@ -0,0 +1,10 @@
+package com.projectsky.loyaltysystem.outbox;
+
+import java.time.LocalDateTime;
+
+public record ClientRegisteredEvent(
+        Long clientId,
+        String username,
+        LocalDateTime registeredAt
+) {
+}
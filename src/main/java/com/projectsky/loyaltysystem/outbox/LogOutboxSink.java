@@ -0,0 +1,27 @@
+package com.projectsky.loyaltysystem.outbox;
+
+import com.projectsky.loyaltysystem.model.OutboxEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+@Component
+@ConditionalOnProperty(name = "loyalty.outbox.sinks.log.enabled", havingValue = "true")
+@Slf4j
+public class LogOutboxSink implements OutboxSink {
+
+    @Override
+    public String name() {
+        return "log";
+    }
+
+    @Override
+    public void publish(List<OutboxEvent> events) {
+        for (OutboxEvent event : events) {
+            log.info("Событие id={}, type={}, clientId={}, payload={}",
+                    event.getId(), event.getType(), event.getClientId(), event.getPayload());
+        }
+    }
+}
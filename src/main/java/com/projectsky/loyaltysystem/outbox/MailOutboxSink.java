@@ -0,0 +1,114 @@
+package com.projectsky.loyaltysystem.outbox;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.projectsky.loyaltysystem.enums.NotificationType;
+import com.projectsky.loyaltysystem.model.Client;
+import com.projectsky.loyaltysystem.model.OutboxEvent;
+import com.projectsky.loyaltysystem.notification.Notification;
+import com.projectsky.loyaltysystem.notification.NotificationDispatcher;
+import com.projectsky.loyaltysystem.repository.ClientRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+// Письма клиентам по событиям: пачка превращается в уведомления и уходит в очередь рассылки,
+// SMTP не держит ни запрос, ни транзакцию ретранслятора
+@Component
+@ConditionalOnProperty(prefix = "spring.mail", name = "host")
+@RequiredArgsConstructor
+@Slf4j
+public class MailOutboxSink implements OutboxSink {
+
+    private final NotificationDispatcher dispatcher;
+    private final ClientRepository clientRepository;
+    private final ObjectMapper objectMapper;
+
+    @Override
+    public String name() {
+        return "mail";
+    }
+
+    @Override
+    public void publish(List<OutboxEvent> events) {
+        List<OutboxEvent> mailed = events.stream()
+                .filter(event -> notificationType(event) != null)
+                .toList();
+        if (mailed.isEmpty()) {
+            return;
+        }
+        // Адреса читаются одним запросом на пачку
+        Map<Long, Client> clients = clientRepository.findAllById(mailed.stream().map(OutboxEvent::getClientId).distinct().toList())
+                .stream()
+                .collect(Collectors.toMap(Client::getId, Function.identity()));
+        // Уведомления собираются целиком до постановки в очередь: непрочитанное событие отклоняет пачку,
+        // ничего не отправив, и ретранслятор повторит ее по одному событию без повторных писем
+        List<Notification> notifications = new ArrayList<>();
+        for (OutboxEvent event : mailed) {
+            Client client = clients.get(event.getClientId());
+            if (client == null) {
+                log.debug("Клиент id={} удален, письмо по событию id={} не отправляется", event.getClientId(), event.getId());
+                continue;
+            }
+            notifications.add(new Notification(client.getEmail(), client.getUsername(), notificationType(event), values(event)));
+        }
+        // Заполненная очередь не задерживает транзакцию ретранслятора: пачка откладывается, а повтор
+        // по одному событию поставит в очередь то, что помещается, остальное уйдет после паузы
+        if (!dispatcher.enqueueAll(notifications)) {
+            throw new IllegalStateException("Очередь писем заполнена, отправка " + notifications.size() + " уведомлений отложена");
+        }
+    }
+
+    private NotificationType notificationType(OutboxEvent event) {
+        return switch (event.getType()) {
+            case CLIENT_REGISTERED -> NotificationType.WELCOME;
+            case PURCHASE_CREATED -> NotificationType.PURCHASE_RECEIPT;
+            case PURCHASE_REFUNDED -> NotificationType.REFUND;
+            case TIER_CHANGED -> NotificationType.TIER_CHANGE;
+            default -> null;
+        };
+    }
+
+    private Map<String, Object> values(OutboxEvent event) {
+        return switch (event.getType()) {
+            case PURCHASE_CREATED -> {
+                PurchaseCreatedEvent purchase = read(event, PurchaseCreatedEvent.class);
+                yield Map.of(
+                        "name", purchase.name(),
+                        "price", purchase.price(),
+                        "balancePaid", purchase.balancePaid(),
+                        "pointsRedeemed", purchase.pointsRedeemed(),
+                        "pointsAccrued", purchase.pointsAccrued());
+            }
+            case PURCHASE_REFUNDED -> {
+                PurchaseRefundedEvent refund = read(event, PurchaseRefundedEvent.class);
+                yield Map.of(
+                        "purchaseId", refund.purchaseId(),
+                        "amount", refund.amount(),
+                        "balanceReturned", refund.balanceReturned(),
+                        "pointsRestored", refund.pointsRestored(),
+                        "pointsReversed", refund.pointsReversed());
+            }
+            case TIER_CHANGED -> {
+                TierChangedEvent tier = read(event, TierChangedEvent.class);
+                yield Map.of("from", tier.from(), "to", tier.to());
+            }
+            default -> Map.of();
+        };
+    }
+
+    private <T> T read(OutboxEvent event, Class<T> type) {
+        try {
+            return objectMapper.readValue(event.getPayload(), type);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Не удалось прочитать событие id=" + event.getId(), e);
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.projectsky.loyaltysystem.outbox;
+
+import com.projectsky.loyaltysystem.model.OutboxEvent;
+
+import java.util.List;
+
+// Получатель исходящих событий. Вызывается ретранслятором в его транзакции, пачка упорядочена по id.
+// Доставка отмечается по имени получателя: после отказа повтор придет только в этот получатель,
+// а при отказе на пачке ретранслятор повторяет ее по одному событию, чтобы найти непроходящее
+public interface OutboxSink {
+
+    void publish(List<OutboxEvent> events);
+
+    // Имя хранится в outbox_deliveries и не должно меняться между версиями
+    default String name() {
+        return getClass().getName();
+    }
+}
@@ -0,0 +1,11 @@
+package com.projectsky.loyaltysystem.outbox;
+
+import java.time.LocalDateTime;
+
+// Ручное начисление или списание баллов; баллы по покупкам и возвратам приходят в их событиях
+public record PointsChangedEvent(
+        Long clientId,
+        int points,
+        LocalDateTime changedAt
+) {
+}
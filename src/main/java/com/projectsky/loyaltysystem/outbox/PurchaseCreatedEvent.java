@@ -0,0 +1,30 @@
+package com.projectsky.loyaltysystem.outbox;
+
+import com.projectsky.loyaltysystem.model.Purchase;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+public record PurchaseCreatedEvent(
+        Long purchaseId,
+        Long clientId,
+        String name,
+        BigDecimal price,
+        BigDecimal balancePaid,
+        int pointsRedeemed,
+        int pointsAccrued,
+        LocalDateTime purchaseDate
+) {
+
+    public static PurchaseCreatedEvent of(Purchase purchase) {
+        return new PurchaseCreatedEvent(
+                purchase.getId(),
+                purchase.getClient().getId(),
+                purchase.getName(),
+                purchase.getPrice(),
+                purchase.getBalancePaid(),
+                purchase.getPointsRedeemed(),
+                purchase.getPointsAccrued(),
+                purchase.getPurchaseDate());
+    }
+}
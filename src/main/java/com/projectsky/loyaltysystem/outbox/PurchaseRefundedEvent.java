@@ -0,0 +1,20 @@
+package com.projectsky.loyaltysystem.outbox;
+
+import com.projectsky.loyaltysystem.enums.PurchaseStatus;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// amount - сумма этого возврата, refundedAmount - итог возвратов по покупке после него
+public record PurchaseRefundedEvent(
+        Long purchaseId,
+        Long clientId,
+        BigDecimal amount,
+        BigDecimal refundedAmount,
+        PurchaseStatus status,
+        BigDecimal balanceReturned,
+        int pointsRestored,
+        int pointsReversed,
+        LocalDateTime refundedAt
+) {
+}
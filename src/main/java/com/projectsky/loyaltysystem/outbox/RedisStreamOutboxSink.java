@@ -0,0 +1,62 @@
+package com.projectsky.loyaltysystem.outbox;
+
+import com.projectsky.loyaltysystem.model.OutboxEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.connection.RedisStreamCommands.XAddOptions;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Пачка уходит в поток Redis одним конвейером XADD; длина потока ограничивается приблизительно (MAXLEN ~)
+@Component
+@ConditionalOnProperty(name = "loyalty.outbox.sinks.redis.enabled", havingValue = "true")
+public class RedisStreamOutboxSink implements OutboxSink {
+
+    private final StringRedisTemplate redisTemplate;
+    private final byte[] streamKey;
+    private final XAddOptions options;
+
+    public RedisStreamOutboxSink(StringRedisTemplate redisTemplate,
+                                 @Value("${loyalty.outbox.sinks.redis.stream:loyalty:events}") String stream,
+                                 @Value("${loyalty.outbox.sinks.redis.max-length:1000000}") long maxLength) {
+        this.redisTemplate = redisTemplate;
+        this.streamKey = stream.getBytes(StandardCharsets.UTF_8);
+        this.options = XAddOptions.maxlen(maxLength).approximateTrimming(true);
+    }
+
+    @Override
+    public String name() {
+        return "redis-stream";
+    }
+
+    @Override
+    public void publish(List<OutboxEvent> events) {
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (OutboxEvent event : events) {
+                connection.streamCommands().xAdd(StreamRecords.rawBytes(fields(event)).withStreamKey(streamKey), options);
+            }
+            return null;
+        });
+    }
+
+    private Map<byte[], byte[]> fields(OutboxEvent event) {
+        Map<byte[], byte[]> fields = new LinkedHashMap<>();
+        fields.put(bytes("id"), bytes(event.getId().toString()));
+        fields.put(bytes("type"), bytes(event.getType().name()));
+        fields.put(bytes("clientId"), bytes(event.getClientId().toString()));
+        fields.put(bytes("createdAt"), bytes(event.getCreatedAt().toString()));
+        fields.put(bytes("payload"), bytes(event.getPayload()));
+        return fields;
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,13 @@
+package com.projectsky.loyaltysystem.outbox;
+
+import com.projectsky.loyaltysystem.enums.Category;
+
+import java.time.LocalDateTime;
+
+public record TierChangedEvent(
+        Long clientId,
+        Category from,
+        Category to,
+        LocalDateTime changedAt
+) {
+}
@@ -0,0 +1,15 @@
+package com.projectsky.loyaltysystem.repository;
+
+import com.projectsky.loyaltysystem.model.AccrualRuleSet;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.Optional;
+
+public interface AccrualRuleSetRepository extends JpaRepository<AccrualRuleSet, Long> {
+
+    Optional<AccrualRuleSet> findFirstByOrderByVersionDesc();
+
+    @Query("SELECT max(r.version) FROM AccrualRuleSet r")
+    Optional<Long> findLatestVersion();
+}
@@ -0,0 +1,21 @@
+package com.projectsky.loyaltysystem.repository;
+
+import com.projectsky.loyaltysystem.dto.ClientTierDto;
+import com.projectsky.loyaltysystem.enums.Category;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Optional;
+
+public interface ClientChargeRepository {
+
+    Optional<ClientTierDto> chargeForPurchase(Long id,
+                                              BigDecimal price,
+                                              BigDecimal balancePart,
+                                              int redeemedPoints,
+                                              Map<Category, Integer> pointsByCategory,
+                                              LocalDateTime purchasedAt,
+                                              BigDecimal silverThreshold,
+                                              BigDecimal goldThreshold);
+}
@@ -0,0 +1,80 @@
+package com.projectsky.loyaltysystem.repository;
+
+import com.projectsky.loyaltysystem.dto.ClientTierDto;
+import com.projectsky.loyaltysystem.enums.Category;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Optional;
+
+// Списание с начислением одним UPDATE без предварительного чтения: баллы выбираются по уровню, который пороги
+// дают сумме окна до покупки (с ним совпадает c.category), новый уровень считается по сумме после нее.
+// Измененные колонки возвращает тот же запрос (RETURNING на PostgreSQL), по ним вызывающий восстанавливает
+// уровень до покупки и начисленные баллы. Ни одной строки - не хватило баланса или баллов
+@RequiredArgsConstructor
+public class ClientChargeRepositoryImpl implements ClientChargeRepository {
+
+    private static final String CHARGE_SQL = """
+    UPDATE clients
+    SET balance = balance - :balancePart,
+        bonus_points = bonus_points - :redeemedPoints + CASE
+            WHEN rolling_spend >= :goldThreshold THEN :goldPoints
+            WHEN rolling_spend >= :silverThreshold THEN :silverPoints
+            ELSE :basicPoints
+        END,
+        total_purchases = total_purchases + 1,
+        last_purchase_at = CASE
+            WHEN last_purchase_at IS NULL OR last_purchase_at < :purchasedAt THEN :purchasedAt
+            ELSE last_purchase_at
+        END,
+        rolling_spend = rolling_spend + :price,
+        category = CASE
+            WHEN rolling_spend + :price >= :goldThreshold THEN 'GOLD'
+            WHEN rolling_spend + :price >= :silverThreshold THEN 'SILVER'
+            ELSE 'BASIC'
+        END
+    WHERE id = :id
+      AND balance >= :balancePart
+      AND bonus_points >= :redeemedPoints
+    """;
+
+    private static final String[] RETURNED_COLUMNS = {"rolling_spend", "category"};
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Override
+    public Optional<ClientTierDto> chargeForPurchase(Long id,
+                                                     BigDecimal price,
+                                                     BigDecimal balancePart,
+                                                     int redeemedPoints,
+                                                     Map<Category, Integer> pointsByCategory,
+                                                     LocalDateTime purchasedAt,
+                                                     BigDecimal silverThreshold,
+                                                     BigDecimal goldThreshold) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("id", id)
+                .addValue("price", price)
+                .addValue("balancePart", balancePart)
+                .addValue("redeemedPoints", redeemedPoints)
+                .addValue("basicPoints", pointsByCategory.get(Category.BASIC))
+                .addValue("silverPoints", pointsByCategory.get(Category.SILVER))
+                .addValue("goldPoints", pointsByCategory.get(Category.GOLD))
+                .addValue("purchasedAt", purchasedAt)
+                .addValue("silverThreshold", silverThreshold)
+                .addValue("goldThreshold", goldThreshold);
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        if(jdbcTemplate.update(CHARGE_SQL, params, keyHolder, RETURNED_COLUMNS) == 0){
+            return Optional.empty();
+        }
+        Map<String, Object> row = keyHolder.getKeys();
+        return Optional.of(new ClientTierDto(
+                Category.valueOf((String) row.get("category")),
+                (BigDecimal) row.get("rolling_spend")));
+    }
+}
@@ -1,31 +1,146 @@
 package com.projectsky.loyaltysystem.repository;
 
+import com.projectsky.loyaltysystem.dto.ClientDto;
 import com.projectsky.loyaltysystem.dto.ClientFullDto;
+import com.projectsky.loyaltysystem.enums.Category;
 import com.projectsky.loyaltysystem.model.Client;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
-public interface ClientRepository extends JpaRepository<Client, Long> {
+public interface ClientRepository extends JpaRepository<Client, Long>, ClientChargeRepository {
     boolean existsByUsername(String username);
 
+    List<Client> findByIdGreaterThanOrderByIdAsc(Long id, Limit limit);
+
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT c FROM Client c ORDER BY c.id")
+    Stream<Client> streamAll();
+
+    // Блокировка в порядке id, чтобы параллельные пакеты не взаимоблокировались
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM Client c WHERE c.id IN :ids ORDER BY c.id")
+    List<Client> findAllByIdForUpdate(@Param("ids") Collection<Long> ids);
+
     @Query("""
-    SELECT
+    SELECT new com.projectsky.loyaltysystem.dto.ClientDto(
+         c.id,
+         c.username,
+         c.email,
+         c.balance,
+         c.bonusPoints,
+         c.category)
+    FROM Client c
+    WHERE c.id = :id
+    """)
+    Optional<ClientDto> findClientDtoById(@Param("id") Long id);
+
+    boolean existsByUsernameAndIdNot(String username, Long id);
+
+    // Правка профиля пишет только свои колонки и не зависит от параллельных изменений баланса и баллов;
+    // null оставляет поле без изменений
+    @Transactional
+    @Modifying
+    @Query("""
+    UPDATE Client c
+    SET c.username = COALESCE(:username, c.username),
+        c.email = COALESCE(:email, c.email),
+        c.version = c.version + 1
+    WHERE c.id = :id
+    """)
+    int updateProfile(@Param("id") Long id, @Param("username") String username, @Param("email") String email);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE Client c SET c.balance = c.balance + :amount WHERE c.id = :id")
+    int addBalance(@Param("id") Long id, @Param("amount") BigDecimal amount);
+
+    // Отрицательная дельта (отмена начисления) не уводит остаток ниже нуля
+    @Transactional
+    @Modifying
+    @Query("UPDATE Client c SET c.bonusPoints = c.bonusPoints + :points WHERE c.id = :id AND c.bonusPoints + :points >= 0")
+    int addBonusPoints(@Param("id") Long id, @Param("points") Integer points);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE Client c SET c.bonusPoints = c.bonusPoints - :points WHERE c.id = :id AND c.bonusPoints >= :points")
+    int subtractBonusPoints(@Param("id") Long id, @Param("points") Integer points);
+
+    @Query("""
+    SELECT new com.projectsky.loyaltysystem.dto.ClientFullDto(
          c.id,
          c.username,
          c.email,
          c.balance,
          c.bonusPoints,
          c.category,
-         MAX (p.purchaseDate),
-         count(p)
-    FROM Client c 
-    LEFT JOIN Purchase p
-        ON c.id = p.client.id
+         c.lastPurchaseAt,
+         c.totalPurchases)
+    FROM Client c
     WHERE c.id = :id
-    GROUP BY c.id, c.bonusPoints, c.category, c.username, c.balance, c.username, c.email
     """)
     Optional<ClientFullDto> findClientSummaryById(@Param("id") Long id);
+
+    @Query("SELECT min(c.id) FROM Client c")
+    Optional<Long> findMinId();
+
+    @Query("SELECT max(c.id) FROM Client c")
+    Optional<Long> findMaxId();
+
+    // Пересчет сводки по истории покупок для диапазона id, используется разовой миграцией данных
+    @Transactional
+    @Modifying
+    @Query("""
+    UPDATE Client c
+    SET c.totalPurchases = (SELECT CAST(count(p) AS Integer) FROM Purchase p WHERE p.client.id = c.id),
+        c.lastPurchaseAt = (SELECT max(p.purchaseDate) FROM Purchase p WHERE p.client.id = c.id)
+    WHERE c.id BETWEEN :fromId AND :toId
+    """)
+    int recalculatePurchaseSummary(@Param("fromId") Long fromId, @Param("toId") Long toId);
+
+    // Клиенты диапазона id, у которых скользящая сумма или уровень разошлись с корзинами окна: остальные строки
+    // пересчет не трогает. Корзины диапазона читаются одним проходом, блокировок запрос не берет
+    @Query(nativeQuery = true, value = """
+    SELECT c.id
+    FROM clients c
+    LEFT JOIN (
+        SELECT b.client_id, SUM(b.amount) AS spend
+        FROM client_spend_buckets b
+        WHERE b.client_id BETWEEN :fromId AND :toId AND b.period >= :windowStart
+        GROUP BY b.client_id
+    ) s ON s.client_id = c.id
+    WHERE c.id BETWEEN :fromId AND :toId
+      AND (c.rolling_spend <> COALESCE(s.spend, 0)
+           OR c.category IS NULL
+           OR c.category <> CASE
+                  WHEN COALESCE(s.spend, 0) >= :goldThreshold THEN 'GOLD'
+                  WHEN COALESCE(s.spend, 0) >= :silverThreshold THEN 'SILVER'
+                  ELSE 'BASIC'
+              END)
+    ORDER BY c.id
+    """)
+    List<Long> findTierDrift(@Param("fromId") Long fromId,
+                             @Param("toId") Long toId,
+                             @Param("windowStart") LocalDate windowStart,
+                             @Param("silverThreshold") BigDecimal silverThreshold,
+                             @Param("goldThreshold") BigDecimal goldThreshold);
 }
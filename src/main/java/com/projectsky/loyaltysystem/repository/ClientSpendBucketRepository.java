@@ -0,0 +1,47 @@
+package com.projectsky.loyaltysystem.repository;
+
+import com.projectsky.loyaltysystem.dto.ClientSpendDto;
+import com.projectsky.loyaltysystem.model.ClientSpendBucket;
+import com.projectsky.loyaltysystem.model.ClientSpendBucketId;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+public interface ClientSpendBucketRepository extends JpaRepository<ClientSpendBucket, ClientSpendBucketId> {
+
+    @Transactional
+    @Modifying
+    @Query("""
+    UPDATE ClientSpendBucket b
+    SET b.amount = b.amount + :amount
+    WHERE b.id.clientId = :clientId AND b.id.period = :period
+    """)
+    int addToBucket(@Param("clientId") Long clientId,
+                    @Param("period") LocalDate period,
+                    @Param("amount") BigDecimal amount);
+
+    @Query("SELECT b FROM ClientSpendBucket b WHERE b.id.clientId IN :clientIds AND b.id.period = :period")
+    List<ClientSpendBucket> findAllForPeriod(@Param("clientIds") Collection<Long> clientIds,
+                                             @Param("period") LocalDate period);
+
+    @Query("""
+    SELECT new com.projectsky.loyaltysystem.dto.ClientSpendDto(b.id.clientId, SUM(b.amount))
+    FROM ClientSpendBucket b
+    WHERE b.id.clientId IN :clientIds AND b.id.period >= :windowStart
+    GROUP BY b.id.clientId
+    """)
+    List<ClientSpendDto> sumSpendSince(@Param("clientIds") Collection<Long> clientIds,
+                                       @Param("windowStart") LocalDate windowStart);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM ClientSpendBucket b WHERE b.id.period < :windowStart")
+    int deleteExpired(@Param("windowStart") LocalDate windowStart);
+}
@@ -0,0 +1,72 @@
+package com.projectsky.loyaltysystem.repository;
+
+import com.projectsky.loyaltysystem.model.OutboxEvent;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+
+    // Таймаут блокировки -2 - это SKIP LOCKED: несколько узлов разбирают очередь, не дожидаясь чужих пачек
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints({
+            @QueryHint(name = AvailableSettings.JAKARTA_LOCK_TIMEOUT, value = "-2"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("""
+    SELECT e FROM OutboxEvent e
+    WHERE e.publishedAt IS NULL AND e.deadLetteredAt IS NULL
+      AND (e.nextAttemptAt IS NULL OR e.nextAttemptAt <= :now)
+    ORDER BY e.id
+    """)
+    List<OutboxEvent> lockUnpublished(@Param("now") LocalDateTime now, Limit limit);
+
+    @Query(value = "SELECT event_id FROM outbox_deliveries WHERE sink = :sink AND event_id IN :ids", nativeQuery = true)
+    List<Long> findDelivered(@Param("sink") String sink, @Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query(value = """
+    INSERT INTO outbox_deliveries (event_id, sink, delivered_at)
+    SELECT e.id, :sink, :deliveredAt FROM outbox_events e WHERE e.id IN :ids
+    """, nativeQuery = true)
+    int markDelivered(@Param("sink") String sink,
+                      @Param("ids") Collection<Long> ids,
+                      @Param("deliveredAt") LocalDateTime deliveredAt);
+
+    // Отметки получателей нужны только до публикации события во все получатели
+    @Modifying
+    @Query(value = "DELETE FROM outbox_deliveries WHERE event_id IN :ids", nativeQuery = true)
+    int deleteDeliveries(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query("UPDATE OutboxEvent e SET e.publishedAt = :publishedAt WHERE e.id IN :ids")
+    int markPublished(@Param("ids") Collection<Long> ids, @Param("publishedAt") LocalDateTime publishedAt);
+
+    @Modifying
+    @Query("""
+    UPDATE OutboxEvent e
+    SET e.attempts = e.attempts + 1, e.lastError = :error,
+        e.nextAttemptAt = :nextAttemptAt, e.deadLetteredAt = :deadLetteredAt
+    WHERE e.id = :id
+    """)
+    int markFailed(@Param("id") Long id,
+                   @Param("error") String error,
+                   @Param("nextAttemptAt") LocalDateTime nextAttemptAt,
+                   @Param("deadLetteredAt") LocalDateTime deadLetteredAt);
+
+    @Modifying
+    @Query("DELETE FROM OutboxEvent e WHERE e.publishedAt < :before")
+    int deletePublishedBefore(@Param("before") LocalDateTime before);
+}
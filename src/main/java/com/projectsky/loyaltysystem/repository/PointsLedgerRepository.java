@@ -0,0 +1,10 @@
+package com.projectsky.loyaltysystem.repository;
+
+import com.projectsky.loyaltysystem.model.PointsLedgerEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+
+public interface PointsLedgerRepository extends JpaRepository<PointsLedgerEntry, Long> {
+    List<PointsLedgerEntry> findByClientIdOrderByIdAsc(Long clientId);
+}
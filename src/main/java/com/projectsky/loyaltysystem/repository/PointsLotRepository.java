@@ -0,0 +1,46 @@
+package com.projectsky.loyaltysystem.repository;
+
+import com.projectsky.loyaltysystem.model.PointsLot;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+public interface PointsLotRepository extends JpaRepository<PointsLot, Long> {
+
+    // Порядок FIFO: первыми расходуются партии, которые раньше сгорят
+    @Query("""
+    SELECT l FROM PointsLot l
+    WHERE l.clientId = :clientId AND l.remaining > 0
+    ORDER BY l.expiresAt, l.id
+    """)
+    List<PointsLot> findAvailable(@Param("clientId") Long clientId);
+
+    @Query("""
+    SELECT l FROM PointsLot l
+    WHERE l.clientId IN :clientIds AND l.remaining > 0
+    ORDER BY l.clientId, l.expiresAt, l.id
+    """)
+    List<PointsLot> findAvailableForClients(@Param("clientIds") Collection<Long> clientIds);
+
+    @Query("""
+    SELECT DISTINCT l.clientId FROM PointsLot l
+    WHERE l.clientId > :after AND l.remaining > 0 AND l.expiresAt <= :now
+    ORDER BY l.clientId
+    """)
+    List<Long> findClientIdsWithExpiredLots(@Param("after") Long after,
+                                            @Param("now") LocalDateTime now,
+                                            Limit limit);
+
+    @Query("""
+    SELECT l FROM PointsLot l
+    WHERE l.clientId IN :clientIds AND l.remaining > 0 AND l.expiresAt <= :now
+    ORDER BY l.clientId, l.id
+    """)
+    List<PointsLot> findExpired(@Param("clientIds") Collection<Long> clientIds,
+                                @Param("now") LocalDateTime now);
+}
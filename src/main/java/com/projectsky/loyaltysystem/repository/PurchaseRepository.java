@@ -1,7 +1,93 @@
 package com.projectsky.loyaltysystem.repository;
 
+import com.projectsky.loyaltysystem.dto.ClientPurchaseDto;
+import com.projectsky.loyaltysystem.dto.PurchaseDto;
+import com.projectsky.loyaltysystem.enums.PurchaseStatus;
 import com.projectsky.loyaltysystem.model.Purchase;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface PurchaseRepository extends JpaRepository<Purchase, Long> {
+
+    // Возвраты блокируют покупки раньше клиентов и всегда в порядке id
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT p FROM Purchase p WHERE p.id IN :ids ORDER BY p.id")
+    List<Purchase> findAllByIdForUpdate(@Param("ids") Collection<Long> ids);
+
+    @Query("""
+    SELECT new com.projectsky.loyaltysystem.dto.PurchaseDto(
+         p.id,
+         p.client.id,
+         p.name,
+         p.price,
+         p.purchaseDate)
+    FROM Purchase p
+    WHERE p.id = :id
+    """)
+    Optional<PurchaseDto> findPurchaseDtoById(@Param("id") Long id);
+
+    @Query("""
+    SELECT new com.projectsky.loyaltysystem.dto.PurchaseDto(
+         p.id,
+         p.client.id,
+         p.name,
+         p.price,
+         p.purchaseDate)
+    FROM Purchase p
+    WHERE p.id > :after
+    ORDER BY p.id
+    """)
+    List<PurchaseDto> findPurchaseDtoPage(@Param("after") Long after, Limit limit);
+
+    // Все колонки есть в idx_purchases_client_history: фильтр и страница читаются из индекса.
+    // Курсор (before, beforeId) - последняя строка предыдущей страницы. Избыточное p.purchaseDate <= :before
+    // дает планировщику верхнюю границу диапазона по индексу: OR в условии курсора сам ее не задает
+    @Query("""
+    SELECT new com.projectsky.loyaltysystem.dto.ClientPurchaseDto(
+         p.id,
+         p.name,
+         p.price,
+         p.purchaseDate,
+         p.status,
+         p.refundedAmount)
+    FROM Purchase p
+    WHERE p.client.id = :clientId
+      AND p.purchaseDate >= :from
+      AND p.purchaseDate <= :before
+      AND (p.purchaseDate < :before OR (p.purchaseDate = :before AND p.id < :beforeId))
+      AND p.status IN :statuses
+    ORDER BY p.purchaseDate DESC, p.id DESC
+    """)
+    List<ClientPurchaseDto> findClientPurchasePage(@Param("clientId") Long clientId,
+                                                   @Param("from") LocalDateTime from,
+                                                   @Param("before") LocalDateTime before,
+                                                   @Param("beforeId") Long beforeId,
+                                                   @Param("statuses") Collection<PurchaseStatus> statuses,
+                                                   Limit limit);
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("""
+    SELECT new com.projectsky.loyaltysystem.dto.PurchaseDto(
+         p.id,
+         p.client.id,
+         p.name,
+         p.price,
+         p.purchaseDate)
+    FROM Purchase p
+    ORDER BY p.id
+    """)
+    Stream<PurchaseDto> streamAllPurchaseDtos();
 }
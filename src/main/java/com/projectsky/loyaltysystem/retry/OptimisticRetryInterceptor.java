@@ -0,0 +1,75 @@
+package com.projectsky.loyaltysystem.retry;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.ProxyMethodInvocation;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.ClassUtils;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+@Slf4j
+public class OptimisticRetryInterceptor implements MethodInterceptor {
+
+    static final String RETRIES_METRIC = "loyalty.optimistic.retries";
+    static final String EXHAUSTED_METRIC = "loyalty.optimistic.exhausted";
+
+    private final int maxAttempts;
+    private final long initialBackoffNanos;
+    private final long maxBackoffNanos;
+    private final Supplier<MeterRegistry> meterRegistry;
+
+    public OptimisticRetryInterceptor(int maxAttempts,
+                                      Duration initialBackoff,
+                                      Duration maxBackoff,
+                                      Supplier<MeterRegistry> meterRegistry) {
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffNanos = initialBackoff.toNanos();
+        this.maxBackoffNanos = maxBackoff.toNanos();
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        // Внутри внешней транзакции повтор бесполезен: конфликт откатит ее целиком, повторять должен владелец
+        if (TransactionSynchronizationManager.isActualTransactionActive()
+                || !(invocation instanceof ProxyMethodInvocation proxyInvocation)) {
+            return invocation.proceed();
+        }
+
+        String method = ClassUtils.getUserClass(invocation.getThis().getClass()).getSimpleName()
+                + "." + invocation.getMethod().getName();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return proxyInvocation.invocableClone().proceed();
+            } catch (OptimisticLockingFailureException e) {
+                if (attempt >= maxAttempts) {
+                    counter(EXHAUSTED_METRIC, method).increment();
+                    log.warn("Конфликт версий в {} не разрешился за {} попыток", method, attempt);
+                    throw e;
+                }
+                counter(RETRIES_METRIC, method).increment();
+                log.debug("Конфликт версий в {}, попытка={}", method, attempt);
+                Thread.sleep(backoff(attempt));
+            }
+        }
+    }
+
+    // Полный джиттер: пауза случайна в пределах растущего окна, чтобы столкнувшиеся запросы не повторялись синхронно
+    private Duration backoff(int attempt) {
+        long window = Math.min(maxBackoffNanos, initialBackoffNanos << Math.min(attempt - 1, 20));
+        return Duration.ofNanos(ThreadLocalRandom.current().nextLong(window + 1));
+    }
+
+    private Counter counter(String name, String method) {
+        return Counter.builder(name)
+                .tag("method", method)
+                .register(meterRegistry.get());
+    }
+}
@@ -0,0 +1,12 @@
+package com.projectsky.loyaltysystem.retry;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+// Метод целиком повторяется в новой транзакции, если при записи обнаружен конфликт версий
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface RetryOnConflict {
+}
@@ -0,0 +1,10 @@
+package com.projectsky.loyaltysystem.service;
+
+import com.projectsky.loyaltysystem.config.AccrualProperties;
+
+public interface AccrualRulesService {
+
+    AccrualProperties currentRules();
+    AccrualProperties replaceRules(AccrualProperties rules);
+    boolean reload();
+}
@@ -0,0 +1,86 @@
+package com.projectsky.loyaltysystem.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.projectsky.loyaltysystem.accrual.AccrualRuleEngine;
+import com.projectsky.loyaltysystem.accrual.AccrualRules;
+import com.projectsky.loyaltysystem.accrual.AccrualRulesReloadPublisher;
+import com.projectsky.loyaltysystem.config.AccrualProperties;
+import com.projectsky.loyaltysystem.model.AccrualRuleSet;
+import com.projectsky.loyaltysystem.repository.AccrualRuleSetRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+
+// Источник истины - последняя версия в accrual_rule_sets, без нее действуют правила из конфигурации.
+// Узел, принявший новые правила, применяет их после коммита и оповещает остальные узлы;
+// пропустившие оповещение подхватят версию при периодической проверке
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class AccrualRulesServiceImpl implements AccrualRulesService {
+
+    private final AccrualRuleSetRepository accrualRuleSetRepository;
+    private final AccrualRuleEngine accrualRuleEngine;
+    private final ObjectMapper objectMapper;
+    private final ObjectProvider<AccrualRulesReloadPublisher> reloadPublisher;
+
+    @Override
+    public AccrualProperties currentRules() {
+        return accrualRuleEngine.currentRules();
+    }
+
+    @Override
+    @Transactional
+    public AccrualProperties replaceRules(AccrualProperties rules) {
+        long version = accrualRuleSetRepository.findLatestVersion().orElse(0L) + 1;
+        // Компиляция до записи: некорректные правила не сохраняются
+        AccrualRules.compile(rules, version);
+        accrualRuleSetRepository.saveAndFlush(new AccrualRuleSet(version, toJson(rules), LocalDateTime.now()));
+        log.info("Сохранена версия {} правил начисления баллов", version);
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                accrualRuleEngine.replaceRules(rules, version);
+                reloadPublisher.ifAvailable(publisher -> publisher.publish(version));
+            }
+        });
+        return rules;
+    }
+
+    // С основной базы: оповещение приходит сразу после коммита, и реплика могла еще не получить новую версию
+    @Override
+    @Transactional
+    public boolean reload() {
+        long current = accrualRuleEngine.currentVersion();
+        if(accrualRuleSetRepository.findLatestVersion().orElse(0L) <= current){
+            return false;
+        }
+        return accrualRuleSetRepository.findFirstByOrderByVersionDesc()
+                .map(ruleSet -> accrualRuleEngine.replaceRules(fromJson(ruleSet), ruleSet.getVersion()))
+                .orElse(false);
+    }
+
+    private String toJson(AccrualProperties rules) {
+        try {
+            return objectMapper.writeValueAsString(rules);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Не удалось сериализовать правила начисления", e);
+        }
+    }
+
+    private AccrualProperties fromJson(AccrualRuleSet ruleSet) {
+        try {
+            return objectMapper.readValue(ruleSet.getRules(), AccrualProperties.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Не удалось прочитать версию " + ruleSet.getVersion() + " правил начисления", e);
+        }
+    }
+}
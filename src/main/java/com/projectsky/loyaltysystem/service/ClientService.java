@@ -3,13 +3,15 @@ package com.projectsky.loyaltysystem.service;
 import com.projectsky.loyaltysystem.dto.*;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface ClientService {
 
     IdDto addClient(ClientCreateDto dto);
     ClientDto topUpBalance(BalanceDto dto, Long id);
     ClientFullDto getClientById(Long id);
-    List<ClientDto> getAllClients();
+    List<ClientDto> getAllClients(Long after, int limit);
+    void streamAllClients(Consumer<ClientDto> consumer);
     ClientFullDto updateClient(ClientUpdateDto dto, Long id);
     void deleteClientById(Long id);
 
@@ -1,22 +1,35 @@
 package com.projectsky.loyaltysystem.service;
 
+import com.projectsky.loyaltysystem.config.CacheNames;
 import com.projectsky.loyaltysystem.dto.*;
 import com.projectsky.loyaltysystem.enums.Category;
+import com.projectsky.loyaltysystem.enums.OutboxEventType;
 import com.projectsky.loyaltysystem.exception.ClientAlreadyExistsException;
 import com.projectsky.loyaltysystem.exception.ClientNotFoundException;
+import com.projectsky.loyaltysystem.exception.InvalidPointsAmountException;
+import com.projectsky.loyaltysystem.exception.NotEnoughPointsException;
 import com.projectsky.loyaltysystem.exception.UsernameAlreadyExistsException;
 import com.projectsky.loyaltysystem.model.Client;
+import com.projectsky.loyaltysystem.outbox.BalanceToppedUpEvent;
+import com.projectsky.loyaltysystem.outbox.ClientRegisteredEvent;
+import com.projectsky.loyaltysystem.outbox.PointsChangedEvent;
 import com.projectsky.loyaltysystem.repository.ClientRepository;
+import com.projectsky.loyaltysystem.retry.RetryOnConflict;
+import jakarta.persistence.EntityManager;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.cache.annotation.CacheEvict;
-import org.springframework.cache.annotation.CachePut;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
@@ -24,6 +37,9 @@ import java.util.List;
 public class ClientServiceImpl implements ClientService {
 
     private final ClientRepository clientRepository;
+    private final PointsLedgerService pointsLedgerService;
+    private final OutboxService outboxService;
+    private final EntityManager entityManager;
 
     @Override
     @Transactional
@@ -39,10 +55,14 @@ public class ClientServiceImpl implements ClientService {
                 .balance(BigDecimal.ZERO)
                 .category(Category.BASIC)
                 .bonusPoints(0)
+                .totalPurchases(0)
+                .rollingSpend(BigDecimal.ZERO)
                 .build();
 
         Client saved = clientRepository.save(client);
         Long id = saved.getId();
+        outboxService.record(OutboxEventType.CLIENT_REGISTERED, id,
+                new ClientRegisteredEvent(id, dto.username(), LocalDateTime.now()));
 
         log.info("Добавлен пользователь id={}, username={}", id, dto.username());
 
@@ -51,60 +71,71 @@ public class ClientServiceImpl implements ClientService {
 
     @Override
     @Transactional
-    @CachePut(value = "client", key = "#id")
+    @CacheEvict(value = CacheNames.CLIENT_SUMMARY, key = "#id")
     public ClientDto topUpBalance(BalanceDto dto, Long id) {
-        Client client = clientRepository.findById(id)
-                .orElseThrow(() -> {
-                    log.warn("Клиент с id={} не найден", id);
-                    return new ClientNotFoundException("Пользователь не найден");
-                });
+        if(clientRepository.addBalance(id, dto.balance()) == 0){
+            log.warn("Клиент с id={} не найден", id);
+            throw new ClientNotFoundException("Пользователь не найден");
+        }
 
-        BigDecimal newBalance = client.getBalance().add(dto.balance());
-        client.setBalance(newBalance);
+        ClientDto client = clientRepository.findClientDtoById(id)
+                .orElseThrow(() -> new ClientNotFoundException("Пользователь не найден"));
+        outboxService.record(OutboxEventType.BALANCE_TOPPED_UP, id,
+                new BalanceToppedUpEvent(id, dto.balance(), client.balance(), LocalDateTime.now()));
 
-        clientRepository.save(client);
-        return buildClientDto(client);
+        return client;
     }
 
+    // Значение попадает в общий кэш на remote-ttl, поэтому читается с основной базы: с отставшей реплики
+    // в кэш вернулась бы строка, которую только что вытеснила запись
     @Override
-    @Cacheable(value = "client", key = "#id")
+    @Transactional
+    @Cacheable(value = CacheNames.CLIENT_SUMMARY, key = "#id")
     public ClientFullDto getClientById(Long id) {
         return clientRepository.findClientSummaryById(id)
                 .orElseThrow(() -> new ClientNotFoundException("Клиент не найден"));
     }
 
     @Override
-    public List<ClientDto> getAllClients() {
-        return clientRepository.findAll().stream()
+    @Transactional(readOnly = true)
+    public List<ClientDto> getAllClients(Long after, int limit) {
+        return clientRepository.findByIdGreaterThanOrderByIdAsc(after == null ? 0L : after, Limit.of(limit))
+                .stream()
                 .map(this::buildClientDto)
                 .toList();
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public void streamAllClients(Consumer<ClientDto> consumer) {
+        try (Stream<Client> clients = clientRepository.streamAll()) {
+            // Отсоединяем каждую сущность, чтобы контекст персистентности не рос вместе с таблицей
+            clients.forEach(client -> {
+                consumer.accept(buildClientDto(client));
+                entityManager.detach(client);
+            });
+        }
+    }
+
+    // Профиль меняется одним UPDATE своих колонок: пополнения и покупки идут параллельно и не вызывают конфликтов
     @Override
     @Transactional
-    @CachePut(value = "client", key = "#id")
+    @CacheEvict(value = CacheNames.CLIENT_SUMMARY, key = "#id")
     public ClientFullDto updateClient(ClientUpdateDto dto, Long id) {
         log.debug("Попытка обновить информацию о пользователе с id={}", id);
-        Client client = clientRepository.findById(id)
-                .orElseThrow(() -> {
-                    log.warn("Клиент с id={} не найден", id);
-                    return new ClientNotFoundException("Пользователь не найден");
-                });
 
         // Проверка на то, что username не пустой, и на то, что новый username не занят
-        if(dto.username() != null && !dto.username().isBlank()){
-            if(!client.getUsername().equals(dto.username())
-                    && clientRepository.existsByUsername(dto.username())){
-                log.warn("Попытка использовать занятый username={}", dto.username());
-                throw new UsernameAlreadyExistsException("Имя уже занято");
-            }
-            client.setUsername(dto.username());
-        }
-        if(dto.email() != null && !dto.email().isBlank()){
-            client.setEmail(dto.email());
+        String username = dto.username() != null && !dto.username().isBlank() ? dto.username() : null;
+        String email = dto.email() != null && !dto.email().isBlank() ? dto.email() : null;
+        if(username != null && clientRepository.existsByUsernameAndIdNot(username, id)){
+            log.warn("Попытка использовать занятый username={}", username);
+            throw new UsernameAlreadyExistsException("Имя уже занято");
         }
 
-        clientRepository.save(client);
+        if(clientRepository.updateProfile(id, username, email) == 0){
+            log.warn("Клиент с id={} не найден", id);
+            throw new ClientNotFoundException("Пользователь не найден");
+        }
 
         log.debug("Обновление информации о пользователе с id={} успешно, новый username={}", id, dto.username());
 
@@ -113,8 +144,13 @@ public class ClientServiceImpl implements ClientService {
     }
 
     @Override
+    @RetryOnConflict
     @Transactional
-    @CacheEvict(value = "client", key = "#id")
+    @Caching(evict = {
+            @CacheEvict(value = CacheNames.CLIENT_SUMMARY, key = "#id"),
+            // Покупки клиента удаляются каскадно, их записи в кэше нельзя адресовать по ключу
+            @CacheEvict(value = CacheNames.PURCHASE, allEntries = true)
+    })
     public void deleteClientById(Long id) {
         log.debug("Попытка удалить пользователя с id={}", id);
         Client client = clientRepository.findById(id)
@@ -129,20 +165,18 @@ public class ClientServiceImpl implements ClientService {
 
     @Override
     @Transactional
-    @CachePut(value = "client", key = "#id")
+    @CacheEvict(value = CacheNames.CLIENT_SUMMARY, key = "#id")
     public Integer addPoints(Long id, Integer points) {
         log.debug("Попытка начислить баллы={} пользователю с id={}", points, id);
-        Client client = clientRepository.findById(id)
-                .orElseThrow(() -> {
-                    log.warn("Пользователь с id={} не найден", id);
-                    return new ClientNotFoundException("Пользователь не найден");
-                });
-
-        Integer bonusPoints = client.getBonusPoints();
-        bonusPoints += points;
-        client.setBonusPoints(bonusPoints);
+        requirePositive(points);
+        if(clientRepository.addBonusPoints(id, points) == 0){
+            log.warn("Пользователь с id={} не найден", id);
+            throw new ClientNotFoundException("Пользователь не найден");
+        }
+        LocalDateTime now = LocalDateTime.now();
+        pointsLedgerService.recordAccrual(id, points, null, now);
+        outboxService.record(OutboxEventType.POINTS_ACCRUED, id, new PointsChangedEvent(id, points, now));
 
-        clientRepository.save(client);
         log.info("Баллы={} успешно начислены пользователю с id={}", points, id);
 
         return points;
@@ -150,27 +184,38 @@ public class ClientServiceImpl implements ClientService {
 
     @Override
     @Transactional
-    @CachePut(value = "client", key = "#id")
+    @CacheEvict(value = CacheNames.CLIENT_SUMMARY, key = "#id")
     public Integer takePoints(Long id, Integer points) {
         log.debug("Попытка списать баллы={} у пользователя с id={}", points, id);
-        Client client = clientRepository.findById(id)
-                .orElseThrow(() -> {
-                    log.warn("Пользователь с id={} не найден", id);
-                    return new ClientNotFoundException("Пользователь не найден");
-                });
-
-        Integer bonusPoints = client.getBonusPoints();
-        bonusPoints -= points;
-        client.setBonusPoints(bonusPoints);
+        requirePositive(points);
+        if(clientRepository.subtractBonusPoints(id, points) == 0){
+            if(!clientRepository.existsById(id)){
+                log.warn("Пользователь с id={} не найден", id);
+                throw new ClientNotFoundException("Пользователь не найден");
+            }
+            log.warn("У пользователя с id={} не хватает баллов", id);
+            throw new NotEnoughPointsException("Не хватает баллов для списания");
+        }
+        LocalDateTime now = LocalDateTime.now();
+        pointsLedgerService.recordRedemption(id, points, null, now);
+        outboxService.record(OutboxEventType.POINTS_REDEEMED, id, new PointsChangedEvent(id, points, now));
 
-        clientRepository.save(client);
         log.info("Баллы={} успешно списаны у пользователя с id={}", points, id);
 
         return points;
     }
 
+    // Журнал пропускает нулевые и отрицательные операции, поэтому они не должны менять остаток
+    private void requirePositive(Integer points) {
+        if(points == null || points <= 0){
+            log.warn("Некорректное число баллов={}", points);
+            throw new InvalidPointsAmountException("Число баллов должно быть положительным");
+        }
+    }
+
     private ClientDto buildClientDto(Client client) {
         return ClientDto.builder()
+                .id(client.getId())
                 .username(client.getUsername())
                 .email(client.getEmail())
                 .balance(client.getBalance())
@@ -0,0 +1,8 @@
+package com.projectsky.loyaltysystem.service;
+
+import com.projectsky.loyaltysystem.enums.OutboxEventType;
+
+public interface OutboxService {
+
+    void record(OutboxEventType type, Long clientId, Object payload);
+}
@@ -0,0 +1,42 @@
+package com.projectsky.loyaltysystem.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.projectsky.loyaltysystem.enums.OutboxEventType;
+import com.projectsky.loyaltysystem.model.OutboxEvent;
+import com.projectsky.loyaltysystem.repository.OutboxEventRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+@Service
+@RequiredArgsConstructor
+public class OutboxServiceImpl implements OutboxService {
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final ObjectMapper objectMapper;
+
+    // Событие живет и откатывается вместе с изменением; вставки уходят JDBC-пачками при сбросе контекста
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void record(OutboxEventType type, Long clientId, Object payload) {
+        outboxEventRepository.save(OutboxEvent.builder()
+                .type(type)
+                .clientId(clientId)
+                .payload(toJson(type, payload))
+                .createdAt(LocalDateTime.now())
+                .attempts(0)
+                .build());
+    }
+
+    private String toJson(OutboxEventType type, Object payload) {
+        try {
+            return objectMapper.writeValueAsString(payload);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Не удалось сериализовать событие " + type, e);
+        }
+    }
+}
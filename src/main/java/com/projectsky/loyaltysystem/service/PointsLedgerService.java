@@ -0,0 +1,19 @@
+package com.projectsky.loyaltysystem.service;
+
+import com.projectsky.loyaltysystem.model.Purchase;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+public interface PointsLedgerService {
+
+    void recordAccrual(Long clientId, Integer points, Long purchaseId, LocalDateTime earnedAt);
+    void recordAccruals(List<Purchase> purchases);
+    void recordRedemption(Long clientId, Integer points, Long purchaseId, LocalDateTime redeemedAt);
+    Map<Long, Integer> recordRefunds(List<PointsRefund> refunds, LocalDateTime refundedAt);
+    List<Long> expireLots(Long afterClientId, LocalDateTime now, int limit);
+
+    record PointsRefund(Long clientId, Long purchaseId, int reversedPoints, int restoredPoints) {
+    }
+}
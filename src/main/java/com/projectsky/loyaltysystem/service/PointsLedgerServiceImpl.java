@@ -0,0 +1,207 @@
+package com.projectsky.loyaltysystem.service;
+
+import com.projectsky.loyaltysystem.enums.PointsEntryType;
+import com.projectsky.loyaltysystem.metrics.LoyaltyMetrics;
+import com.projectsky.loyaltysystem.model.Client;
+import com.projectsky.loyaltysystem.model.PointsLedgerEntry;
+import com.projectsky.loyaltysystem.model.PointsLot;
+import com.projectsky.loyaltysystem.model.Purchase;
+import com.projectsky.loyaltysystem.repository.ClientRepository;
+import com.projectsky.loyaltysystem.repository.PointsLedgerRepository;
+import com.projectsky.loyaltysystem.repository.PointsLotRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+// Client.bonusPoints остается кэшированным остатком и всегда меняется первым в транзакции:
+// блокировка строки клиента упорядочивает работу с его партиями, отдельные блокировки партий не нужны.
+// методы record* только пишут партии и журнал - строку клиента обновляет вызывающий
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class PointsLedgerServiceImpl implements PointsLedgerService {
+
+    private final ClientRepository clientRepository;
+    private final PointsLotRepository lotRepository;
+    private final PointsLedgerRepository ledgerRepository;
+    private final LoyaltyMetrics loyaltyMetrics;
+
+    @Value("${loyalty.points.lifetime:365d}")
+    private Duration lifetime;
+
+    @Override
+    @Transactional
+    public void recordAccrual(Long clientId, Integer points, Long purchaseId, LocalDateTime earnedAt) {
+        if(points <= 0){
+            return;
+        }
+        PointsLot lot = lotRepository.save(buildLot(clientId, points, purchaseId, earnedAt));
+        ledgerRepository.save(buildEntry(lot, PointsEntryType.ACCRUAL, points, earnedAt));
+        loyaltyMetrics.pointsAccrued(points);
+    }
+
+    @Override
+    @Transactional
+    public void recordAccruals(List<Purchase> purchases) {
+        List<PointsLot> lots = purchases.stream()
+                .filter(purchase -> purchase.getPointsAccrued() > 0)
+                .map(purchase -> buildLot(purchase.getClient().getId(), purchase.getPointsAccrued(),
+                        purchase.getId(), purchase.getPurchaseDate()))
+                .toList();
+        lotRepository.saveAll(lots);
+        ledgerRepository.saveAll(lots.stream()
+                .map(lot -> buildEntry(lot, PointsEntryType.ACCRUAL, lot.getPoints(), lot.getEarnedAt()))
+                .toList());
+        loyaltyMetrics.pointsAccrued(lots.stream().mapToInt(PointsLot::getPoints).sum());
+    }
+
+    @Override
+    @Transactional
+    public void recordRedemption(Long clientId, Integer points, Long purchaseId, LocalDateTime redeemedAt) {
+        if(points <= 0){
+            return;
+        }
+        int left = consume(lotRepository.findAvailable(clientId), points, PointsEntryType.REDEMPTION, purchaseId, redeemedAt);
+        // Остаток клиента уже уменьшен вызывающим: откат транзакции не дает журналу разойтись с ним
+        if(left > 0){
+            log.error("У пользователя id={} не хватило партий баллов для списания, не покрыто={}", clientId, left);
+            throw new IllegalStateException("Журнал баллов клиента id=" + clientId + " не покрывает списание");
+        }
+        loyaltyMetrics.pointsRedeemed(points);
+    }
+
+    // Строки клиентов уже заблокированы вызывающим. Отмена начисления забирает не больше, чем осталось:
+    // часть баллов могла быть потрачена или сгореть. Потраченные на покупку баллы возвращаются новой партией,
+    // исходные партии могли уже сгореть. Возвращается итоговое изменение остатка по каждому клиенту
+    @Override
+    @Transactional
+    public Map<Long, Integer> recordRefunds(List<PointsRefund> refunds, LocalDateTime refundedAt) {
+        List<Long> clientIds = refunds.stream()
+                .filter(refund -> refund.reversedPoints() > 0 || refund.restoredPoints() > 0)
+                .map(PointsRefund::clientId)
+                .distinct()
+                .toList();
+        if(clientIds.isEmpty()){
+            return Map.of();
+        }
+
+        Map<Long, List<PointsLot>> lotsByClient = lotRepository.findAvailableForClients(clientIds).stream()
+                .collect(Collectors.groupingBy(PointsLot::getClientId, Collectors.toCollection(ArrayList::new)));
+        Map<Long, Integer> delta = new HashMap<>();
+        List<PointsLedgerEntry> restored = new ArrayList<>();
+
+        for(PointsRefund refund : refunds){
+            List<PointsLot> lots = lotsByClient.computeIfAbsent(refund.clientId(), id -> new ArrayList<>());
+            if(refund.reversedPoints() > 0){
+                // Сначала забираем из партии самой покупки, остаток - по общему порядку FIFO
+                List<PointsLot> ordered = new ArrayList<>(lots);
+                ordered.sort(Comparator.comparing((PointsLot lot) -> !refund.purchaseId().equals(lot.getPurchaseId())));
+                int left = consume(ordered, refund.reversedPoints(), PointsEntryType.REVERSAL, refund.purchaseId(), refundedAt);
+                if(left > 0){
+                    log.info("Отмена начисления по покупке id={} ограничена остатком, отменено={} из {}",
+                            refund.purchaseId(), refund.reversedPoints() - left, refund.reversedPoints());
+                }
+                delta.merge(refund.clientId(), left - refund.reversedPoints(), Integer::sum);
+            }
+            if(refund.restoredPoints() > 0){
+                PointsLot lot = lotRepository.save(buildLot(refund.clientId(), refund.restoredPoints(), refund.purchaseId(), refundedAt));
+                lots.add(lot);
+                restored.add(buildEntry(lot, PointsEntryType.REDEMPTION_REVERSAL, refund.restoredPoints(), refundedAt));
+                delta.merge(refund.clientId(), refund.restoredPoints(), Integer::sum);
+            }
+        }
+        ledgerRepository.saveAll(restored);
+        return delta;
+    }
+
+    @Override
+    @Transactional
+    public List<Long> expireLots(Long afterClientId, LocalDateTime now, int limit) {
+        List<Long> clientIds = lotRepository.findClientIdsWithExpiredLots(afterClientId, now, Limit.of(limit));
+        if(clientIds.isEmpty()){
+            return clientIds;
+        }
+
+        // Клиенты блокируются в порядке id до чтения партий, как и при пакетной загрузке покупок
+        Map<Long, Client> clients = clientRepository.findAllByIdForUpdate(clientIds).stream()
+                .collect(Collectors.toMap(Client::getId, Function.identity()));
+
+        List<PointsLedgerEntry> entries = new ArrayList<>();
+        for(PointsLot lot : lotRepository.findExpired(clientIds, now)){
+            Client client = clients.get(lot.getClientId());
+            if(client == null){
+                continue;
+            }
+            int expired = lot.getRemaining();
+            client.setBonusPoints(client.getBonusPoints() - expired);
+            lot.setRemaining(0);
+            entries.add(buildEntry(lot, PointsEntryType.EXPIRY, -expired, now));
+        }
+        ledgerRepository.saveAll(entries);
+
+        log.debug("Сгорели партии баллов у клиентов id={}..{}, записей={}",
+                clientIds.get(0), clientIds.get(clientIds.size() - 1), entries.size());
+        return clientIds;
+    }
+
+    private int consume(List<PointsLot> lots, int points, PointsEntryType type, Long purchaseId, LocalDateTime at) {
+        int left = points;
+        List<PointsLedgerEntry> entries = new ArrayList<>();
+        for(PointsLot lot : lots){
+            if(left == 0){
+                break;
+            }
+            int taken = Math.min(left, lot.getRemaining());
+            if(taken == 0){
+                continue;
+            }
+            lot.setRemaining(lot.getRemaining() - taken);
+            left -= taken;
+            entries.add(PointsLedgerEntry.builder()
+                    .clientId(lot.getClientId())
+                    .lotId(lot.getId())
+                    .purchaseId(purchaseId)
+                    .type(type)
+                    .points(-taken)
+                    .createdAt(at)
+                    .build());
+        }
+        ledgerRepository.saveAll(entries);
+        return left;
+    }
+
+    private PointsLot buildLot(Long clientId, Integer points, Long purchaseId, LocalDateTime earnedAt) {
+        return PointsLot.builder()
+                .clientId(clientId)
+                .purchaseId(purchaseId)
+                .points(points)
+                .remaining(points)
+                .earnedAt(earnedAt)
+                .expiresAt(earnedAt.plus(lifetime))
+                .build();
+    }
+
+    private PointsLedgerEntry buildEntry(PointsLot lot, PointsEntryType type, Integer points, LocalDateTime at) {
+        return PointsLedgerEntry.builder()
+                .clientId(lot.getClientId())
+                .lotId(lot.getId())
+                .purchaseId(lot.getPurchaseId())
+                .type(type)
+                .points(points)
+                .createdAt(at)
+                .build();
+    }
+}
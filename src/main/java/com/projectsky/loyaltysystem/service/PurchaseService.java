@@ -1,16 +1,34 @@
 package com.projectsky.loyaltysystem.service;
 
+import com.projectsky.loyaltysystem.dto.ClientPurchaseDto;
 import com.projectsky.loyaltysystem.dto.IdDto;
+import com.projectsky.loyaltysystem.dto.PurchaseBatchLineDto;
+import com.projectsky.loyaltysystem.dto.PurchaseBatchResultDto;
 import com.projectsky.loyaltysystem.dto.PurchaseCreateDto;
 import com.projectsky.loyaltysystem.dto.PurchaseDto;
+import com.projectsky.loyaltysystem.dto.RefundLineDto;
+import com.projectsky.loyaltysystem.dto.RefundResultDto;
+import com.projectsky.loyaltysystem.enums.PurchaseStatus;
 
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
 
 public interface PurchaseService {
 
     IdDto addPurchase(PurchaseCreateDto dto, Long clientId);
+    List<PurchaseBatchResultDto> addPurchases(List<PurchaseBatchLineDto> lines);
+    List<PurchaseBatchResultDto> addPurchases(Iterator<PurchaseBatchLineDto> lines);
     PurchaseDto getPurchaseById(Long id);
-    List<PurchaseDto> getAllPurchases();
+    List<PurchaseDto> getAllPurchases(Long after, int limit);
+    List<ClientPurchaseDto> getClientPurchases(Long clientId, LocalDate from, LocalDate to, Set<PurchaseStatus> statuses,
+                                               LocalDateTime beforeDate, Long beforeId, int limit);
+    void streamAllPurchases(Consumer<PurchaseDto> consumer);
 
-    void refundPurchase(Long id);
+    RefundResultDto refundPurchase(Long id, BigDecimal amount);
+    List<RefundResultDto> refundPurchases(List<RefundLineDto> lines);
 }
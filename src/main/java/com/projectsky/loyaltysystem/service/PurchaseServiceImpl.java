@@ -1,29 +1,71 @@
 package com.projectsky.loyaltysystem.service;
 
-import com.projectsky.loyaltysystem.dto.BalanceDto;
+import com.projectsky.loyaltysystem.accrual.AccrualRuleEngine;
+import com.projectsky.loyaltysystem.config.CacheNames;
+import com.projectsky.loyaltysystem.config.TierProperties;
+import com.projectsky.loyaltysystem.dto.ClientDto;
+import com.projectsky.loyaltysystem.dto.ClientPurchaseDto;
+import com.projectsky.loyaltysystem.dto.ClientTierDto;
 import com.projectsky.loyaltysystem.dto.IdDto;
+import com.projectsky.loyaltysystem.dto.PurchaseBatchLineDto;
+import com.projectsky.loyaltysystem.dto.PurchaseBatchResultDto;
 import com.projectsky.loyaltysystem.dto.PurchaseCreateDto;
 import com.projectsky.loyaltysystem.dto.PurchaseDto;
+import com.projectsky.loyaltysystem.dto.RefundLineDto;
+import com.projectsky.loyaltysystem.dto.RefundResultDto;
+import com.projectsky.loyaltysystem.enums.BatchLineStatus;
+import com.projectsky.loyaltysystem.enums.Category;
+import com.projectsky.loyaltysystem.enums.OutboxEventType;
 import com.projectsky.loyaltysystem.enums.PurchaseStatus;
+import com.projectsky.loyaltysystem.enums.RefundLineStatus;
+import com.projectsky.loyaltysystem.exception.BatchTooLargeException;
 import com.projectsky.loyaltysystem.exception.ClientNotFoundException;
+import com.projectsky.loyaltysystem.exception.InvalidRedemptionException;
+import com.projectsky.loyaltysystem.exception.InvalidRefundAmountException;
 import com.projectsky.loyaltysystem.exception.NotEnoughBalanceException;
+import com.projectsky.loyaltysystem.exception.NotEnoughPointsException;
 import com.projectsky.loyaltysystem.exception.PurchaseAlreadyRefundedException;
 import com.projectsky.loyaltysystem.exception.PurchaseNotFoundException;
+import com.projectsky.loyaltysystem.metrics.LoyaltyMetrics;
 import com.projectsky.loyaltysystem.model.Client;
+import com.projectsky.loyaltysystem.model.ClientSpendBucketId;
 import com.projectsky.loyaltysystem.model.Purchase;
+import com.projectsky.loyaltysystem.outbox.PurchaseCreatedEvent;
+import com.projectsky.loyaltysystem.outbox.PurchaseRefundedEvent;
+import com.projectsky.loyaltysystem.outbox.TierChangedEvent;
 import com.projectsky.loyaltysystem.repository.ClientRepository;
 import com.projectsky.loyaltysystem.repository.PurchaseRepository;
+import com.projectsky.loyaltysystem.service.PointsLedgerService.PointsRefund;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.CacheManager;
-import org.springframework.cache.annotation.CachePut;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
@@ -32,109 +74,458 @@ public class PurchaseServiceImpl implements PurchaseService {
 
     private final PurchaseRepository purchaseRepository;
     private final ClientRepository clientRepository;
-    private final ClientService clientService;
+    private final TierService tierService;
+    private final TierProperties tierProperties;
+    private final AccrualRuleEngine accrualRuleEngine;
+    private final PointsLedgerService pointsLedgerService;
+    private final OutboxService outboxService;
+    private final LoyaltyMetrics loyaltyMetrics;
     private final CacheManager cacheManager;
+    private final TransactionTemplate transactionTemplate;
+
+    private static final int MAX_BATCH_SIZE = 100_000;
+    private static final int CLIENT_CHUNK_SIZE = 1_000;
+    private static final int LINE_WINDOW_SIZE = 10_000;
+    private static final int MAX_REFUND_BATCH_SIZE = 10_000;
+
+    // Границы истории по умолчанию: запрос остается одним и тем же и всегда идет по индексу
+    private static final LocalDateTime HISTORY_START = LocalDateTime.of(1970, 1, 1, 0, 0);
+    private static final LocalDateTime HISTORY_END = LocalDateTime.of(9999, 12, 31, 0, 0);
+
+    @Value("${loyalty.points.value:1.00}")
+    private BigDecimal pointValue;
 
     @Override
     @Transactional
+    @CacheEvict(value = CacheNames.CLIENT_SUMMARY, key = "#clientId")
     public IdDto addPurchase(PurchaseCreateDto dto, Long clientId) {
         log.debug("Попытка совершить покупку пользователем id={}", clientId);
-        Client client = clientRepository.findById(clientId)
-                .orElseThrow(() ->{
-                    log.warn("Пользователь с id={} не найден", clientId);
-                    return new ClientNotFoundException("Пользователь не найден");
-                });
-
-        if(client.getBalance().compareTo(dto.price()) < 0){
-            log.warn("У пользователя с id={} не хватает средств", clientId);
-            throw new NotEnoughBalanceException("Не хватает средств для совершения покупки");
-        }
-
         BigDecimal price = dto.price();
-
-        client.setBalance(client.getBalance().subtract(price));
+        int redeemedPoints = dto.pointsToRedeem() == null ? 0 : dto.pointsToRedeem();
+        // Отрицательное списание начислило бы баллы мимо журнала и увеличило бы оплату с баланса
+        if(redeemedPoints < 0){
+            log.warn("Пользователь id={} передал отрицательное число баллов={} для оплаты", clientId, redeemedPoints);
+            throw new InvalidRedemptionException("Число баллов для оплаты не может быть отрицательным");
+        }
+        BigDecimal balancePart = price.subtract(pointValue.multiply(BigDecimal.valueOf(redeemedPoints)));
+        if(balancePart.signum() < 0){
+            log.warn("Пользователь id={} пытается оплатить баллами={} больше стоимости покупки", clientId, redeemedPoints);
+            throw new InvalidRedemptionException("Баллами нельзя оплатить больше стоимости покупки");
+        }
+        LocalDateTime purchaseDate = LocalDateTime.now();
+        Charge charge = charge(clientId, price, balancePart, redeemedPoints, purchaseDate);
+        Integer points = charge.points();
+        tierService.recordSpend(clientId, price, purchaseDate);
 
         Purchase purchase = Purchase.builder()
                 .name(dto.name())
-                .client(client)
-                .purchaseDate(LocalDateTime.now())
+                .client(clientRepository.getReferenceById(clientId))
+                .purchaseDate(purchaseDate)
                 .price(price)
                 .status(PurchaseStatus.SUCCESSFUL)
+                .pointsAccrued(points)
+                .pointsRedeemed(redeemedPoints)
+                .balancePaid(balancePart)
+                .refundedAmount(BigDecimal.ZERO)
                 .build();
 
         Purchase saved = purchaseRepository.save(purchase);
+        // Списание идет раньше начисления, чтобы не тратить только что начисленную партию
+        pointsLedgerService.recordRedemption(clientId, redeemedPoints, saved.getId(), purchaseDate);
+        pointsLedgerService.recordAccrual(clientId, points, saved.getId(), purchaseDate);
+        outboxService.record(OutboxEventType.PURCHASE_CREATED, clientId, PurchaseCreatedEvent.of(saved));
+        recordTierChange(clientId, charge.category(), charge.newCategory(), purchaseDate);
         log.info("Покупка товара={} пользователем id={} прошла успешно", dto.name(), saved.getId());
 
-        Integer points = calculatePoints(price);
+        return new IdDto(saved.getId());
+    }
+
+    @Override
+    public List<PurchaseBatchResultDto> addPurchases(List<PurchaseBatchLineDto> lines) {
+        if(lines.size() > MAX_BATCH_SIZE){
+            log.warn("Отклонен пакет покупок из {} строк", lines.size());
+            throw new BatchTooLargeException("Слишком много покупок в одном пакете, максимум " + MAX_BATCH_SIZE);
+        }
+        return addPurchases(lines.iterator());
+    }
 
-        clientService.addPoints(clientId, points);
+    // Строки читаются окнами по LINE_WINDOW_SIZE, и каждая порция клиентов окна проводится своей транзакцией:
+    // блокировки клиентов и контекст персистентности живут не дольше порции. Строки клиента из разных окон
+    // применяются по порядку. Порция, упавшая с ошибкой, откатывается целиком, ее строки получают FAILED
+    @Override
+    public List<PurchaseBatchResultDto> addPurchases(Iterator<PurchaseBatchLineDto> lines) {
+        List<PurchaseBatchResultDto> results = new ArrayList<>();
+        LocalDateTime purchaseDate = LocalDateTime.now();
+        int created = 0;
 
-        return new IdDto(saved.getId());
+        while(lines.hasNext()){
+            int offset = results.size();
+            List<PurchaseBatchLineDto> window = new ArrayList<>();
+            while(lines.hasNext() && window.size() < LINE_WINDOW_SIZE){
+                window.add(lines.next());
+            }
+
+            PurchaseBatchResultDto[] windowResults = new PurchaseBatchResultDto[window.size()];
+            // TreeMap задает порядок блокировки клиентов по id
+            Map<Long, List<Integer>> linesByClient = new TreeMap<>();
+            for(int i = 0; i < window.size(); i++){
+                if(isValid(window.get(i))){
+                    linesByClient.computeIfAbsent(window.get(i).clientId(), id -> new ArrayList<>()).add(i);
+                } else {
+                    windowResults[i] = new PurchaseBatchResultDto(offset + i, null, BatchLineStatus.INVALID);
+                }
+            }
+
+            List<Long> clientIds = new ArrayList<>(linesByClient.keySet());
+            for(int from = 0; from < clientIds.size(); from += CLIENT_CHUNK_SIZE){
+                List<Long> chunk = clientIds.subList(from, Math.min(from + CLIENT_CHUNK_SIZE, clientIds.size()));
+                try {
+                    created += transactionTemplate.execute(status ->
+                            addPurchaseChunk(chunk, linesByClient, window, offset, windowResults, purchaseDate));
+                } catch (RuntimeException e) {
+                    log.error("Порция пакета из {} клиентов не проведена и откатана", chunk.size(), e);
+                    chunk.forEach(clientId -> linesByClient.get(clientId).forEach(i ->
+                            windowResults[i] = new PurchaseBatchResultDto(offset + i, null, BatchLineStatus.FAILED)));
+                }
+            }
+            results.addAll(Arrays.asList(windowResults));
+        }
+
+        log.info("Пакетная загрузка завершена, строк={}, создано покупок={}", results.size(), created);
+        return results;
+    }
+
+    private int addPurchaseChunk(List<Long> chunk,
+                                 Map<Long, List<Integer>> linesByClient,
+                                 List<PurchaseBatchLineDto> lines,
+                                 int offset,
+                                 PurchaseBatchResultDto[] results,
+                                 LocalDateTime purchaseDate) {
+        Map<Long, Client> clients = clientRepository.findAllByIdForUpdate(chunk).stream()
+                .collect(Collectors.toMap(Client::getId, Function.identity()));
+
+        List<Purchase> purchases = new ArrayList<>();
+        List<Integer> purchaseLines = new ArrayList<>();
+        Map<Long, BigDecimal> spendByClient = new HashMap<>();
+        for(Long clientId : chunk){
+            Client client = clients.get(clientId);
+            List<Integer> clientLines = linesByClient.get(clientId);
+            if(client == null){
+                clientLines.forEach(i -> results[i] = new PurchaseBatchResultDto(offset + i, null, BatchLineStatus.CLIENT_NOT_FOUND));
+                continue;
+            }
+
+            // Строки клиента применяются по порядку, пока хватает баланса; изменения клиента копятся в одной сущности.
+            // Уровень для начисления пересчитывается после каждой строки, как при последовательных одиночных покупках
+            BigDecimal balance = client.getBalance();
+            BigDecimal rollingSpend = client.getRollingSpend();
+            Category category = client.getCategory();
+            int points = 0;
+            int accepted = 0;
+            for(Integer i : clientLines){
+                PurchaseBatchLineDto line = lines.get(i);
+                if(balance.compareTo(line.price()) < 0){
+                    results[i] = new PurchaseBatchResultDto(offset + i, null, BatchLineStatus.NOT_ENOUGH_BALANCE);
+                    continue;
+                }
+                int linePoints = accrualRuleEngine.calculatePoints(category, line.price(), purchaseDate);
+                balance = balance.subtract(line.price());
+                rollingSpend = rollingSpend.add(line.price());
+                category = tierProperties.categoryFor(rollingSpend);
+                points += linePoints;
+                accepted++;
+                purchases.add(Purchase.builder()
+                        .name(line.name())
+                        .client(client)
+                        .purchaseDate(purchaseDate)
+                        .price(line.price())
+                        .status(PurchaseStatus.SUCCESSFUL)
+                        .pointsAccrued(linePoints)
+                        .pointsRedeemed(0)
+                        .balancePaid(line.price())
+                        .refundedAmount(BigDecimal.ZERO)
+                        .build());
+                purchaseLines.add(i);
+            }
+
+            if(accepted > 0){
+                recordTierChange(clientId, client.getCategory(), category, purchaseDate);
+                spendByClient.put(clientId, client.getBalance().subtract(balance));
+                client.setRollingSpend(rollingSpend);
+                client.setCategory(category);
+                client.setBalance(balance);
+                client.setBonusPoints(client.getBonusPoints() + points);
+                client.setTotalPurchases(client.getTotalPurchases() + accepted);
+                if(client.getLastPurchaseAt() == null || client.getLastPurchaseAt().isBefore(purchaseDate)){
+                    client.setLastPurchaseAt(purchaseDate);
+                }
+                Optional.ofNullable(cacheManager.getCache(CacheNames.CLIENT_SUMMARY))
+                        .ifPresent(cache -> cache.evict(clientId));
+            }
+        }
+
+        purchaseRepository.saveAll(purchases);
+        tierService.recordSpend(spendByClient, purchaseDate);
+        pointsLedgerService.recordAccruals(purchases);
+        purchases.forEach(purchase -> outboxService.record(OutboxEventType.PURCHASE_CREATED,
+                purchase.getClient().getId(), PurchaseCreatedEvent.of(purchase)));
+        for(int j = 0; j < purchases.size(); j++){
+            int i = purchaseLines.get(j);
+            results[i] = new PurchaseBatchResultDto(offset + i, purchases.get(j).getId(), BatchLineStatus.CREATED);
+        }
+        return purchases.size();
     }
 
+    // Значение попадает в общий кэш на remote-ttl, поэтому читается с основной базы: с отставшей реплики
+    // в кэш вернулась бы строка, которую только что вытеснила запись
     @Override
+    @Transactional
+    @Cacheable(value = CacheNames.PURCHASE, key = "#id")
     public PurchaseDto getPurchaseById(Long id) {
-        Purchase purchase = purchaseRepository.findById(id)
+        return purchaseRepository.findPurchaseDtoById(id)
                 .orElseThrow(() -> new PurchaseNotFoundException("Операция не найдена"));
+    }
 
-        return buildDto(purchase);
+    @Override
+    @Transactional(readOnly = true)
+    public List<PurchaseDto> getAllPurchases(Long after, int limit) {
+        return purchaseRepository.findPurchaseDtoPage(after == null ? 0L : after, Limit.of(limit));
     }
 
     @Override
-    public List<PurchaseDto> getAllPurchases() {
-        return purchaseRepository.findAll()
-                .stream()
-                .map(this::buildDto)
-                .toList();
+    @Transactional(readOnly = true)
+    public List<ClientPurchaseDto> getClientPurchases(Long clientId, LocalDate from, LocalDate to, Set<PurchaseStatus> statuses,
+                                                      LocalDateTime beforeDate, Long beforeId, int limit) {
+        // Верхняя граница - конец периода (не включая) или курсор, если он раньше
+        LocalDateTime before = to == null ? HISTORY_END : to.plusDays(1).atStartOfDay();
+        long beforeIdBound = Long.MAX_VALUE;
+        if(beforeDate != null && beforeDate.isBefore(before)){
+            before = beforeDate;
+            beforeIdBound = beforeId == null ? Long.MAX_VALUE : beforeId;
+        }
+
+        List<ClientPurchaseDto> page = purchaseRepository.findClientPurchasePage(
+                clientId,
+                from == null ? HISTORY_START : from.atStartOfDay(),
+                before,
+                beforeIdBound,
+                statuses == null || statuses.isEmpty() ? EnumSet.allOf(PurchaseStatus.class) : statuses,
+                Limit.of(limit));
+        // Отсутствие клиента проверяется только для пустой страницы
+        if(page.isEmpty() && !clientRepository.existsById(clientId)){
+            log.warn("Пользователь с id={} не найден", clientId);
+            throw new ClientNotFoundException("Пользователь не найден");
+        }
+        return page;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void streamAllPurchases(Consumer<PurchaseDto> consumer) {
+        try (Stream<PurchaseDto> purchases = purchaseRepository.streamAllPurchaseDtos()) {
+            purchases.forEach(consumer);
+        }
     }
 
     @Override
     @Transactional
-    public void refundPurchase(Long id) {
-        log.debug("Попытка вернуть средства за покупку id={}", id);
-        Purchase purchase = purchaseRepository.findById(id)
-                .orElseThrow(() -> {
-                    log.warn("Операция с id={} не найдена", id);
-                    return new PurchaseNotFoundException("Операция не найдена");
-                });
+    @CacheEvict(value = CacheNames.PURCHASE, key = "#id")
+    public RefundResultDto refundPurchase(Long id, BigDecimal amount) {
+        log.debug("Попытка вернуть средства за покупку id={}, сумма={}", id, amount);
+        RefundResultDto result = applyRefunds(List.of(new RefundLineDto(id, amount))).get(0);
+        switch(result.status()){
+            case PURCHASE_NOT_FOUND -> {
+                log.warn("Операция с id={} не найдена", id);
+                throw new PurchaseNotFoundException("Операция не найдена");
+            }
+            case ALREADY_REFUNDED -> {
+                log.warn("Произошел возврат уже отмененной операции id={}", id);
+                throw new PurchaseAlreadyRefundedException("Операция уже отменена");
+            }
+            case INVALID, AMOUNT_EXCEEDS_REMAINING -> {
+                log.warn("Некорректная сумма возврата={} по покупке id={}", amount, id);
+                throw new InvalidRefundAmountException("Сумма возврата должна быть положительной и не больше невозвращенной части покупки");
+            }
+            default -> log.info("Возврат средств за покупку id={} прошел успешно, сумма={}", id, result.refundedAmount());
+        }
+        return result;
+    }
+
+    @Override
+    @Transactional
+    public List<RefundResultDto> refundPurchases(List<RefundLineDto> lines) {
+        if(lines.size() > MAX_REFUND_BATCH_SIZE){
+            log.warn("Отклонен пакет возвратов из {} строк", lines.size());
+            throw new BatchTooLargeException("Слишком много возвратов в одном пакете, максимум " + MAX_REFUND_BATCH_SIZE);
+        }
+        log.debug("Пакетный возврат покупок, строк={}", lines.size());
+        List<RefundResultDto> results = applyRefunds(lines);
+        log.info("Пакетный возврат завершен, строк={}, проведено={}", lines.size(), results.stream()
+                .filter(result -> result.status() == RefundLineStatus.REFUNDED
+                        || result.status() == RefundLineStatus.PARTIALLY_REFUNDED)
+                .count());
+        return results;
+    }
 
-        if(purchase.getStatus() != PurchaseStatus.SUCCESSFUL){
-            log.warn("Произошел возврат уже отмененной операции id={}", id);
-            throw new PurchaseAlreadyRefundedException("Операция уже отменена");
+    // Покупки блокируются в порядке id до клиентов; изменения копятся в сущностях и уходят JDBC-пачками при коммите.
+    // Строки одной покупки применяются по порядку, как последовательные одиночные возвраты
+    private List<RefundResultDto> applyRefunds(List<RefundLineDto> lines) {
+        RefundResultDto[] results = new RefundResultDto[lines.size()];
+        List<Long> purchaseIds = lines.stream()
+                .filter(this::isValidRefund)
+                .map(RefundLineDto::purchaseId)
+                .distinct()
+                .sorted()
+                .toList();
+        Map<Long, Purchase> purchases = new HashMap<>();
+        for(int from = 0; from < purchaseIds.size(); from += CLIENT_CHUNK_SIZE){
+            purchaseRepository.findAllByIdForUpdate(purchaseIds.subList(from, Math.min(from + CLIENT_CHUNK_SIZE, purchaseIds.size())))
+                    .forEach(purchase -> purchases.put(purchase.getId(), purchase));
         }
 
-        Long clientId = purchase.getClient().getId();
+        LocalDateTime refundedAt = LocalDateTime.now();
+        // TreeMap задает порядок блокировки клиентов по id
+        Map<Long, BigDecimal> balanceByClient = new TreeMap<>();
+        Map<Long, BigDecimal> spendByClient = new HashMap<>();
+        Map<ClientSpendBucketId, BigDecimal> spendByBucket = new HashMap<>();
+        List<PointsRefund> pointsRefunds = new ArrayList<>();
+
+        for(int i = 0; i < lines.size(); i++){
+            RefundLineDto line = lines.get(i);
+            if(!isValidRefund(line)){
+                results[i] = new RefundResultDto(i, line == null ? null : line.purchaseId(), RefundLineStatus.INVALID, null);
+                continue;
+            }
+            Purchase purchase = purchases.get(line.purchaseId());
+            if(purchase == null){
+                results[i] = new RefundResultDto(i, line.purchaseId(), RefundLineStatus.PURCHASE_NOT_FOUND, null);
+                continue;
+            }
+            BigDecimal price = purchase.getPrice();
+            BigDecimal before = purchase.getRefundedAmount();
+            BigDecimal remaining = price.subtract(before);
+            if(remaining.signum() <= 0){
+                results[i] = new RefundResultDto(i, line.purchaseId(), RefundLineStatus.ALREADY_REFUNDED, null);
+                continue;
+            }
+            BigDecimal amount = line.amount() == null ? remaining : line.amount();
+            if(amount.compareTo(remaining) > 0){
+                results[i] = new RefundResultDto(i, line.purchaseId(), RefundLineStatus.AMOUNT_EXCEEDS_REMAINING, null);
+                continue;
+            }
 
-        clientService.topUpBalance(new BalanceDto(
-                purchase.getPrice()),
-                clientId
-        );
-        log.debug("Возврат средств за покупку с id = {} прошел успешно", id);
+            // Доли считаются от нарастающего итога: несколько частичных возвратов в сумме дают ровно полный
+            BigDecimal after = before.add(amount);
+            Long clientId = purchase.getClient().getId();
+            BigDecimal balance = balanceShare(purchase, after).subtract(balanceShare(purchase, before));
+            int restored = pointsShare(purchase.getPointsRedeemed(), after, price, RoundingMode.FLOOR)
+                    - pointsShare(purchase.getPointsRedeemed(), before, price, RoundingMode.FLOOR);
+            int reversed = pointsShare(purchase.getPointsAccrued(), after, price, RoundingMode.CEILING)
+                    - pointsShare(purchase.getPointsAccrued(), before, price, RoundingMode.CEILING);
 
-        Integer points = calculatePoints(purchase.getPrice());
+            boolean full = after.compareTo(price) >= 0;
+            purchase.setRefundedAmount(after);
+            purchase.setStatus(full ? PurchaseStatus.REFUNDED : PurchaseStatus.PARTIALLY_REFUNDED);
+            outboxService.record(OutboxEventType.PURCHASE_REFUNDED, clientId, new PurchaseRefundedEvent(
+                    purchase.getId(), clientId, amount, after, purchase.getStatus(), balance, restored, reversed, refundedAt));
+            loyaltyMetrics.refunded(full, amount);
+            balanceByClient.merge(clientId, balance, BigDecimal::add);
+            pointsRefunds.add(new PointsRefund(clientId, purchase.getId(), reversed, restored));
+            if(tierProperties.inWindow(purchase.getPurchaseDate(), refundedAt.toLocalDate())){
+                spendByClient.merge(clientId, amount, BigDecimal::add);
+                spendByBucket.merge(new ClientSpendBucketId(clientId, tierProperties.periodOf(purchase.getPurchaseDate())),
+                        amount, BigDecimal::add);
+            }
+            results[i] = new RefundResultDto(i, purchase.getId(),
+                    full ? RefundLineStatus.REFUNDED : RefundLineStatus.PARTIALLY_REFUNDED, amount);
+        }
 
-        clientService.takePoints(clientId, points);
-        log.debug("Баллы за покупку id={} успешно списаны", id);
+        List<Long> clientIds = new ArrayList<>(balanceByClient.keySet());
+        Map<Long, Client> clients = new HashMap<>();
+        for(int from = 0; from < clientIds.size(); from += CLIENT_CHUNK_SIZE){
+            clientRepository.findAllByIdForUpdate(clientIds.subList(from, Math.min(from + CLIENT_CHUNK_SIZE, clientIds.size())))
+                    .forEach(client -> clients.put(client.getId(), client));
+        }
 
-        purchase.setStatus(PurchaseStatus.REFUNDED);
+        Map<Long, Integer> pointsByClient = pointsLedgerService.recordRefunds(pointsRefunds, refundedAt);
+        for(Client client : clients.values()){
+            Long clientId = client.getId();
+            client.setBalance(client.getBalance().add(balanceByClient.get(clientId)));
+            client.setBonusPoints(client.getBonusPoints() + pointsByClient.getOrDefault(clientId, 0));
+            BigDecimal spend = spendByClient.get(clientId);
+            // Покупка вне окна уже не входит в скользящую сумму
+            if(spend != null){
+                Category category = tierProperties.categoryFor(client.getRollingSpend().subtract(spend));
+                recordTierChange(clientId, client.getCategory(), category, refundedAt);
+                client.setRollingSpend(client.getRollingSpend().subtract(spend));
+                client.setCategory(category);
+            }
+            Optional.ofNullable(cacheManager.getCache(CacheNames.CLIENT_SUMMARY))
+                    .ifPresent(cache -> cache.evict(clientId));
+        }
+        tierService.recordRefunds(spendByBucket);
 
-        purchaseRepository.save(purchase);
-        Optional.ofNullable(cacheManager.getCache("client"))
-                        .ifPresent(cache -> cache.evict(clientId));
-        log.info("Возврат средств за покупку id={} прошел успешно", id);
+        return Arrays.asList(results);
     }
 
-    private PurchaseDto buildDto(Purchase purchase) {
-        return PurchaseDto.builder()
-                .id(purchase.getId())
-                .clientId(purchase.getClient().getId())
-                .name(purchase.getName())
-                .purchaseDate(purchase.getPurchaseDate())
-                .price(purchase.getPrice())
-                .build();
+    private BigDecimal balanceShare(Purchase purchase, BigDecimal refunded) {
+        return purchase.getBalancePaid().multiply(refunded).divide(purchase.getPrice(), 2, RoundingMode.HALF_UP);
+    }
+
+    private int pointsShare(Integer points, BigDecimal refunded, BigDecimal price, RoundingMode mode) {
+        return BigDecimal.valueOf(points).multiply(refunded).divide(price, 0, mode).intValueExact();
+    }
+
+    // Одно условное списание без предварительного чтения и повторов: баллы за каждый уровень передаются в запрос,
+    // он сам выбирает нужные и пересчитывает уровень. По возвращенной сумме окна восстанавливается уровень
+    // до покупки, а по нему - начисленные баллы
+    private Charge charge(Long clientId, BigDecimal price, BigDecimal balancePart, int redeemedPoints, LocalDateTime purchaseDate) {
+        Map<Category, Integer> pointsByCategory = new EnumMap<>(Category.class);
+        for(Category category : Category.values()){
+            pointsByCategory.put(category, accrualRuleEngine.calculatePoints(category, balancePart, purchaseDate));
+        }
+
+        Optional<ClientTierDto> charged = clientRepository.chargeForPurchase(clientId, price, balancePart, redeemedPoints,
+                pointsByCategory, purchaseDate, tierProperties.silverThreshold(), tierProperties.goldThreshold());
+        if(charged.isPresent()){
+            Category category = tierProperties.categoryFor(charged.get().rollingSpend().subtract(price));
+            return new Charge(pointsByCategory.get(category), category, charged.get().category());
+        }
+
+        // Запрос не изменил строку: выясняем причину только на пути ошибки
+        ClientDto current = clientRepository.findClientDtoById(clientId)
+                .orElseThrow(() -> {
+                    log.warn("Пользователь с id={} не найден", clientId);
+                    return new ClientNotFoundException("Пользователь не найден");
+                });
+        if(current.points() < redeemedPoints){
+            log.warn("У пользователя с id={} не хватает баллов", clientId);
+            throw new NotEnoughPointsException("Не хватает баллов для оплаты покупки");
+        }
+        log.warn("У пользователя с id={} не хватает средств", clientId);
+        throw new NotEnoughBalanceException("Не хватает средств для совершения покупки");
+    }
+
+    private void recordTierChange(Long clientId, Category from, Category to, LocalDateTime changedAt) {
+        if(from != to){
+            outboxService.record(OutboxEventType.TIER_CHANGED, clientId, new TierChangedEvent(clientId, from, to, changedAt));
+        }
+    }
+
+    private boolean isValid(PurchaseBatchLineDto line) {
+        return line != null
+                && line.clientId() != null
+                && line.name() != null && !line.name().isBlank()
+                && line.price() != null && line.price().signum() > 0;
+    }
+
+    private boolean isValidRefund(RefundLineDto line) {
+        return line != null
+                && line.purchaseId() != null
+                && (line.amount() == null
+                    || line.amount().signum() > 0 && line.amount().stripTrailingZeros().scale() <= 2);
     }
 
-    private Integer calculatePoints(BigDecimal price) {
-        return (int) Math.ceil(price.doubleValue() * 0.05);
+    private record Charge(Integer points, Category category, Category newCategory) {
     }
 }
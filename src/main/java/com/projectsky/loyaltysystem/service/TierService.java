@@ -0,0 +1,16 @@
+package com.projectsky.loyaltysystem.service;
+
+import com.projectsky.loyaltysystem.model.ClientSpendBucketId;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Map;
+
+public interface TierService {
+
+    void recordSpend(Long clientId, BigDecimal amount, LocalDateTime purchasedAt);
+    void recordSpend(Map<Long, BigDecimal> amountByClient, LocalDateTime purchasedAt);
+    void recordRefunds(Map<ClientSpendBucketId, BigDecimal> amountByBucket);
+    int recalculateTiers(Long fromId, Long toId, LocalDate windowStart);
+}
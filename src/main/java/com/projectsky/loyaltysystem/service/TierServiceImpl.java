@@ -0,0 +1,114 @@
+package com.projectsky.loyaltysystem.service;
+
+import com.projectsky.loyaltysystem.config.TierProperties;
+import com.projectsky.loyaltysystem.dto.ClientSpendDto;
+import com.projectsky.loyaltysystem.enums.Category;
+import com.projectsky.loyaltysystem.enums.OutboxEventType;
+import com.projectsky.loyaltysystem.model.Client;
+import com.projectsky.loyaltysystem.model.ClientSpendBucket;
+import com.projectsky.loyaltysystem.model.ClientSpendBucketId;
+import com.projectsky.loyaltysystem.outbox.TierChangedEvent;
+import com.projectsky.loyaltysystem.repository.ClientRepository;
+import com.projectsky.loyaltysystem.repository.ClientSpendBucketRepository;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+// Корзины меняются только после обновления строки клиента в той же транзакции:
+// блокировка строки клиента упорядочивает конкурентные вставки корзины одного месяца
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class TierServiceImpl implements TierService {
+
+    private final ClientRepository clientRepository;
+    private final ClientSpendBucketRepository bucketRepository;
+    private final TierProperties tierProperties;
+    private final OutboxService outboxService;
+    private final EntityManager entityManager;
+
+    @Override
+    @Transactional
+    public void recordSpend(Long clientId, BigDecimal amount, LocalDateTime purchasedAt) {
+        LocalDate period = tierProperties.periodOf(purchasedAt);
+        if(bucketRepository.addToBucket(clientId, period, amount) == 0){
+            entityManager.persist(new ClientSpendBucket(new ClientSpendBucketId(clientId, period), amount));
+        }
+    }
+
+    @Override
+    @Transactional
+    public void recordSpend(Map<Long, BigDecimal> amountByClient, LocalDateTime purchasedAt) {
+        if(amountByClient.isEmpty()){
+            return;
+        }
+        LocalDate period = tierProperties.periodOf(purchasedAt);
+        Map<Long, ClientSpendBucket> buckets = bucketRepository.findAllForPeriod(amountByClient.keySet(), period).stream()
+                .collect(Collectors.toMap(bucket -> bucket.getId().getClientId(), Function.identity()));
+
+        amountByClient.forEach((clientId, amount) -> {
+            ClientSpendBucket bucket = buckets.get(clientId);
+            if(bucket == null){
+                entityManager.persist(new ClientSpendBucket(new ClientSpendBucketId(clientId, period), amount));
+            } else {
+                bucket.setAmount(bucket.getAmount().add(amount));
+            }
+        });
+    }
+
+    // Скользящую сумму клиента уменьшает вызывающий; сюда попадают только корзины внутри окна,
+    // корзины вне окна уже удалены или будут удалены пересчетом
+    @Override
+    @Transactional
+    public void recordRefunds(Map<ClientSpendBucketId, BigDecimal> amountByBucket) {
+        if(amountByBucket.isEmpty()){
+            return;
+        }
+        bucketRepository.findAllById(amountByBucket.keySet())
+                .forEach(bucket -> bucket.setAmount(bucket.getAmount().subtract(amountByBucket.get(bucket.getId()))));
+    }
+
+    // Строки блокируются до чтения корзин: покупка, успевшая обновить клиента, к этому моменту зафиксирована
+    // вместе со своей корзиной, а ждущая блокировку прибавит себя к уже пересчитанной сумме.
+    // Смена уровня, в том числе понижение, уходит событием TIER_CHANGED
+    @Override
+    @Transactional
+    public int recalculateTiers(Long fromId, Long toId, LocalDate windowStart) {
+        List<Long> drifted = clientRepository.findTierDrift(fromId, toId, windowStart,
+                tierProperties.silverThreshold(), tierProperties.goldThreshold());
+        if(drifted.isEmpty()){
+            return 0;
+        }
+        List<Client> clients = clientRepository.findAllByIdForUpdate(drifted);
+        Map<Long, BigDecimal> spendByClient = bucketRepository.sumSpendSince(drifted, windowStart).stream()
+                .collect(Collectors.toMap(ClientSpendDto::clientId, ClientSpendDto::spend));
+
+        LocalDateTime changedAt = LocalDateTime.now();
+        int updated = 0;
+        for(Client client : clients){
+            BigDecimal spend = spendByClient.getOrDefault(client.getId(), BigDecimal.ZERO);
+            Category category = tierProperties.categoryFor(spend);
+            if(client.getRollingSpend().compareTo(spend) == 0 && client.getCategory() == category){
+                continue;
+            }
+            if(client.getCategory() != category){
+                outboxService.record(OutboxEventType.TIER_CHANGED, client.getId(),
+                        new TierChangedEvent(client.getId(), client.getCategory(), category, changedAt));
+            }
+            client.setRollingSpend(spend);
+            client.setCategory(category);
+            updated++;
+        }
+        return updated;
+    }
+}
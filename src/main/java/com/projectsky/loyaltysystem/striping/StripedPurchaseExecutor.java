@@ -0,0 +1,224 @@
+package com.projectsky.loyaltysystem.striping;
+
+import com.projectsky.loyaltysystem.dto.IdDto;
+import com.projectsky.loyaltysystem.dto.PurchaseBatchLineDto;
+import com.projectsky.loyaltysystem.dto.PurchaseBatchResultDto;
+import com.projectsky.loyaltysystem.dto.PurchaseCreateDto;
+import com.projectsky.loyaltysystem.exception.ClientNotFoundException;
+import com.projectsky.loyaltysystem.exception.NotEnoughBalanceException;
+import com.projectsky.loyaltysystem.exception.PurchaseTimeoutException;
+import com.projectsky.loyaltysystem.exception.WriteQueueFullException;
+import com.projectsky.loyaltysystem.service.PurchaseService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Покупки клиента идут через полосу clientId % stripes: у полосы одна очередь и один поток записи.
+// Поток забирает все, что накопилось, пока шла предыдущая пачка, и проводит это пакетным путем addPurchases -
+// одна транзакция и один UPDATE строки клиента на пачку вместо транзакции и ожидания блокировки на каждую покупку.
+// Ожидание пачки искусственно не создается: при низкой нагрузке пачка состоит из одной покупки.
+// Покупку забирает либо поток полосы, либо вызывающий по таймауту (флаг claimed): забранная вызывающим не проводится
+@Slf4j
+public class StripedPurchaseExecutor {
+
+    private static final long POLL_MILLIS = 200;
+
+    private final PurchaseService purchaseService;
+    private final List<BlockingQueue<PendingPurchase>> stripes;
+    private final List<Thread> workers;
+    private final int maxBatch;
+    private final Duration enqueueTimeout;
+    private final Duration resultTimeout;
+
+    private volatile boolean running = true;
+
+    public StripedPurchaseExecutor(PurchaseService purchaseService,
+                                   int stripes,
+                                   int queueCapacity,
+                                   int maxBatch,
+                                   Duration enqueueTimeout,
+                                   Duration resultTimeout) {
+        this.purchaseService = purchaseService;
+        this.maxBatch = maxBatch;
+        this.enqueueTimeout = enqueueTimeout;
+        this.resultTimeout = resultTimeout;
+        this.stripes = new ArrayList<>(stripes);
+        this.workers = new ArrayList<>(stripes);
+        for (int i = 0; i < stripes; i++) {
+            BlockingQueue<PendingPurchase> queue = new ArrayBlockingQueue<>(queueCapacity);
+            this.stripes.add(queue);
+            this.workers.add(Thread.ofVirtual().name("purchase-stripe-" + i).unstarted(() -> run(queue)));
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        workers.forEach(Thread::start);
+    }
+
+    // Новые покупки не принимаются, принятые проводятся до остановки; не успевшие - отклоняются
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        for (Thread worker : workers) {
+            worker.join(Duration.ofSeconds(10));
+        }
+        stripes.forEach(this::rejectQueued);
+    }
+
+    // Оплата баллами и некорректные покупки идут обычным путем: пакетный путь их не проводит
+    public IdDto addPurchase(PurchaseCreateDto dto, Long clientId) {
+        if (!isStripable(dto, clientId)) {
+            return purchaseService.addPurchase(dto, clientId);
+        }
+        if (!running) {
+            throw new WriteQueueFullException("Сервис останавливается, повторите запрос позже");
+        }
+        PendingPurchase pending = new PendingPurchase(new PurchaseBatchLineDto(clientId, dto.name(), dto.price()),
+                new CompletableFuture<>(), new AtomicBoolean());
+        BlockingQueue<PendingPurchase> stripe = stripes.get((int) Math.floorMod(clientId, (long) stripes.size()));
+        try {
+            if (!stripe.offer(pending, enqueueTimeout.toNanos(), TimeUnit.NANOSECONDS)) {
+                log.warn("Очередь записи для клиента id={} переполнена", clientId);
+                throw new WriteQueueFullException("Слишком много одновременных покупок, повторите запрос позже");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new WriteQueueFullException("Покупка не принята, повторите запрос позже");
+        }
+        // Остановка могла начаться после проверки: поток полосы уже мог выйти, и покупку никто не заберет
+        if (!running && pending.claimed().compareAndSet(false, true)) {
+            stripe.remove(pending);
+            throw new WriteQueueFullException("Сервис останавливается, повторите запрос позже");
+        }
+        return await(pending, stripe);
+    }
+
+    private IdDto await(PendingPurchase pending, BlockingQueue<PendingPurchase> stripe) {
+        try {
+            return pending.result().get(resultTimeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException("Покупка не проведена", e.getCause());
+        } catch (TimeoutException | InterruptedException e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            // Если поток полосы еще не забрал покупку, она точно не проведена и повтор безопасен
+            if (pending.claimed().compareAndSet(false, true)) {
+                stripe.remove(pending);
+                log.warn("Покупка клиента id={} не дождалась очереди за {}", pending.line().clientId(), resultTimeout);
+                throw new WriteQueueFullException("Очередь записи перегружена, повторите запрос позже");
+            }
+            log.error("Покупка клиента id={} проводится дольше {}, результат неизвестен", pending.line().clientId(), resultTimeout);
+            throw new PurchaseTimeoutException("Покупка не подтверждена вовремя, проверьте историю покупок перед повтором");
+        }
+    }
+
+    private void run(BlockingQueue<PendingPurchase> queue) {
+        List<PendingPurchase> drained = new ArrayList<>(maxBatch);
+        List<PendingPurchase> batch = new ArrayList<>(maxBatch);
+        try {
+            while (running || !queue.isEmpty()) {
+                PendingPurchase first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                drained.add(first);
+                queue.drainTo(drained, maxBatch - 1);
+                for (PendingPurchase pending : drained) {
+                    if (pending.claimed().compareAndSet(false, true)) {
+                        batch.add(pending);
+                    }
+                }
+                try {
+                    if (!batch.isEmpty()) {
+                        apply(batch);
+                    }
+                } catch (Throwable e) {
+                    // Ни одна принятая покупка не должна остаться без ответа, поток полосы продолжает работу
+                    log.error("Сбой потока полосы на пачке из {} покупок", batch.size(), e);
+                    batch.forEach(pending -> pending.result().completeExceptionally(e));
+                } finally {
+                    drained.clear();
+                    batch.clear();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            rejectQueued(queue);
+        }
+    }
+
+    private void rejectQueued(BlockingQueue<PendingPurchase> queue) {
+        List<PendingPurchase> rejected = new ArrayList<>();
+        queue.drainTo(rejected);
+        for (PendingPurchase pending : rejected) {
+            if (pending.claimed().compareAndSet(false, true)) {
+                pending.result().completeExceptionally(
+                        new WriteQueueFullException("Сервис останавливается, повторите запрос позже"));
+            }
+        }
+    }
+
+    private void apply(List<PendingPurchase> batch) {
+        List<PurchaseBatchResultDto> results;
+        try {
+            results = purchaseService.addPurchases(batch.stream().map(PendingPurchase::line).toList());
+        } catch (RuntimeException e) {
+            if (batch.size() == 1) {
+                batch.get(0).result().completeExceptionally(e);
+                return;
+            }
+            // Ошибка пачки не должна задевать соседей: покупки проводятся по одной
+            log.warn("Пачка покупок из {} не проведена, покупки проводятся по одной: {}", batch.size(), e.getMessage());
+            batch.forEach(pending -> apply(List.of(pending)));
+            return;
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            PendingPurchase pending = batch.get(i);
+            PurchaseBatchResultDto result = results.get(i);
+            switch (result.status()) {
+                case CREATED -> pending.result().complete(new IdDto(result.purchaseId()));
+                case NOT_ENOUGH_BALANCE -> pending.result().completeExceptionally(
+                        new NotEnoughBalanceException("Не хватает средств для совершения покупки"));
+                case CLIENT_NOT_FOUND -> pending.result().completeExceptionally(
+                        new ClientNotFoundException("Пользователь не найден"));
+                // Порция клиента откатилась вместе с соседями по пачке: покупка повторяется одна
+                case FAILED -> {
+                    if (batch.size() > 1) {
+                        apply(List.of(pending));
+                    } else {
+                        pending.result().completeExceptionally(new IllegalStateException("Покупка не проведена"));
+                    }
+                }
+                default -> pending.result().completeExceptionally(
+                        new IllegalStateException("Покупка не проведена: " + result.status()));
+            }
+        }
+    }
+
+    private boolean isStripable(PurchaseCreateDto dto, Long clientId) {
+        return clientId != null
+                && (dto.pointsToRedeem() == null || dto.pointsToRedeem() == 0)
+                && dto.name() != null && !dto.name().isBlank()
+                && dto.price() != null && dto.price().signum() > 0;
+    }
+
+    private record PendingPurchase(PurchaseBatchLineDto line, CompletableFuture<IdDto> result, AtomicBoolean claimed) {
+    }
+}
@@ -0,0 +1,70 @@
+package com.projectsky.loyaltysystem.accrual;
+
+import com.projectsky.loyaltysystem.config.AccrualProperties;
+import com.projectsky.loyaltysystem.enums.Category;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Скорость расчета баллов: скомпилированные таблицы и вызов движка с BigDecimal.
+// JMH в проекте нет, поэтому замер - прогретые циклы в JUnit. Запуск: mvn test -Pload -Dtest=AccrualRuleEngineLoadTest
+@Tag("load")
+class AccrualRuleEngineLoadTest {
+
+    static final int ROUNDS = 5;
+    static final int RULE_EVALUATIONS = 50_000_000;
+    static final int ENGINE_EVALUATIONS = 10_000_000;
+
+    AccrualProperties properties = new AccrualProperties(
+            Map.of(
+                    Category.BASIC, new AccrualProperties.TierRule(500, null, 0),
+                    Category.SILVER, new AccrualProperties.TierRule(700, 300L, 0),
+                    Category.GOLD, new AccrualProperties.TierRule(1000, null, 5)
+            ),
+            List.of(
+                    new AccrualProperties.Campaign("summer", LocalDate.parse("2025-06-01"), LocalDate.parse("2025-06-30"), 200),
+                    new AccrualProperties.Campaign("winter", LocalDate.parse("2025-12-01"), LocalDate.parse("2025-12-31"), 150)
+            ));
+
+    @Test
+    void shouldEvaluateAtLeastMillionRulesPerSecond() {
+        AccrualRules rules = AccrualRules.compile(properties, 1);
+        AccrualRuleEngine engine = new AccrualRuleEngine(properties);
+        long day = LocalDate.parse("2025-06-15").toEpochDay();
+        LocalDateTime purchasedAt = LocalDateTime.parse("2025-06-15T10:00:00");
+        Category[] categories = Category.values();
+        BigDecimal[] prices = new Random(1).ints(1024, 1, 10_000_000)
+                .mapToObj(minor -> BigDecimal.valueOf(minor, 2))
+                .toArray(BigDecimal[]::new);
+
+        double rulesPerSecond = 0;
+        double enginePerSecond = 0;
+        long sink = 0;
+        // Первые раунды прогревают JIT, в отчет идет последний
+        for (int round = 0; round < ROUNDS; round++) {
+            long started = System.nanoTime();
+            for (int i = 0; i < RULE_EVALUATIONS; i++) {
+                sink += rules.points(i % 3, 100 + (i & 0xFFFFF), day + (i & 63));
+            }
+            rulesPerSecond = RULE_EVALUATIONS * 1e9 / (System.nanoTime() - started);
+
+            started = System.nanoTime();
+            for (int i = 0; i < ENGINE_EVALUATIONS; i++) {
+                sink += engine.calculatePoints(categories[i % 3], prices[i & 1023], purchasedAt);
+            }
+            enginePerSecond = ENGINE_EVALUATIONS * 1e9 / (System.nanoTime() - started);
+        }
+
+        System.out.printf("AccrualRules.points: %.1f M/s, AccrualRuleEngine.calculatePoints: %.1f M/s (%d)%n",
+                rulesPerSecond / 1e6, enginePerSecond / 1e6, sink);
+        assertThat(enginePerSecond).isGreaterThan(1_000_000);
+    }
+}
@@ -0,0 +1,60 @@
+package com.projectsky.loyaltysystem.accrual;
+
+import com.projectsky.loyaltysystem.config.AccrualProperties;
+import com.projectsky.loyaltysystem.enums.Category;
+import com.projectsky.loyaltysystem.exception.InvalidAccrualRulesException;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AccrualRuleEngineTest {
+
+    static final LocalDateTime PURCHASED_AT = LocalDateTime.parse("2025-06-27T15:00:00");
+
+    @Test
+    void shouldMatchPreviousFormulaWithDefaultRules() {
+        AccrualRuleEngine engine = new AccrualRuleEngine(new AccrualProperties(null, null));
+
+        for (String price : List.of("0.01", "1", "19.99", "20", "20.01", "123.45", "99999.99")) {
+            int expected = (int) Math.ceil(new BigDecimal(price).doubleValue() * 0.05);
+            assertThat(engine.calculatePoints(Category.BASIC, new BigDecimal(price), PURCHASED_AT))
+                    .as(price)
+                    .isEqualTo(expected);
+        }
+    }
+
+    @Test
+    void shouldApplyTierRateCapBonusAndCampaign() {
+        AccrualRuleEngine engine = new AccrualRuleEngine(new AccrualProperties(
+                Map.of(
+                        Category.BASIC, new AccrualProperties.TierRule(500, null, 0),
+                        Category.SILVER, new AccrualProperties.TierRule(1000, 30L, 0),
+                        Category.GOLD, new AccrualProperties.TierRule(1000, null, 5)
+                ),
+                List.of(new AccrualProperties.Campaign("summer", LocalDate.parse("2025-06-01"), LocalDate.parse("2025-06-30"), 200))
+        ));
+
+        assertThat(engine.calculatePoints(Category.BASIC, BigDecimal.valueOf(100), PURCHASED_AT)).isEqualTo(10);
+        assertThat(engine.calculatePoints(Category.BASIC, BigDecimal.valueOf(100), PURCHASED_AT.plusMonths(1))).isEqualTo(5);
+        assertThat(engine.calculatePoints(Category.SILVER, BigDecimal.valueOf(1000), PURCHASED_AT)).isEqualTo(30);
+        assertThat(engine.calculatePoints(Category.GOLD, BigDecimal.valueOf(100), PURCHASED_AT)).isEqualTo(25);
+    }
+
+    @Test
+    void shouldKeepCurrentRulesWhenReplacementIsInvalid() {
+        AccrualRuleEngine engine = new AccrualRuleEngine(new AccrualProperties(null, null));
+
+        assertThatThrownBy(() -> engine.replaceRules(new AccrualProperties(
+                Map.of(Category.BASIC, new AccrualProperties.TierRule(900, null, 0)), null), 1))
+                .isInstanceOf(InvalidAccrualRulesException.class);
+
+        assertThat(engine.calculatePoints(Category.BASIC, BigDecimal.valueOf(100), PURCHASED_AT)).isEqualTo(5);
+    }
+}
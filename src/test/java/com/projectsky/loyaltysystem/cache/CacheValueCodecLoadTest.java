@@ -0,0 +1,66 @@
+package com.projectsky.loyaltysystem.cache;
+
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.projectsky.loyaltysystem.dto.ClientFullDto;
+import com.projectsky.loyaltysystem.enums.Category;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Размер и время кодирования ClientFullDto: компактный кодек против JDK-сериализации и Jackson.
+// JMH в проекте нет, поэтому замер - прогретые циклы в JUnit. Запуск: mvn test -Pload -Dtest=CacheValueCodecLoadTest
+@Tag("load")
+class CacheValueCodecLoadTest {
+
+    static final int ITERATIONS = 200_000;
+    static final int ROUNDS = 3;
+
+    ClientFullDto dto = new ClientFullDto(42L, "akimara", "mackvej@gmail.com", new BigDecimal("1234.50"), 100,
+            Category.SILVER, LocalDateTime.parse("2025-06-27T15:00:58.092813"), 7);
+
+    long sink;
+
+    @Test
+    void shouldCompareCodecs() throws Exception {
+        RedisSerializer<Object> compact = new CompactCacheValueSerializer(List.of(new ClientFullDtoCodec()));
+        RedisSerializer<Object> jdk = new JdkSerializationRedisSerializer();
+        JsonMapper json = JsonMapper.builder().findAndAddModules().build();
+
+        byte[] compactBytes = compact.serialize(dto);
+        byte[] jdkBytes = jdk.serialize(dto);
+        byte[] jsonBytes = json.writeValueAsBytes(dto);
+
+        report("compact", compactBytes.length, () -> compact.serialize(dto), () -> compact.deserialize(compactBytes));
+        report("jdk", jdkBytes.length, () -> jdk.serialize(dto), () -> jdk.deserialize(jdkBytes));
+        // У ClientFullDto нет конструктора для Jackson, поэтому JSON читается деревом
+        report("jackson", jsonBytes.length, () -> json.writeValueAsBytes(dto), () -> json.readTree(jsonBytes));
+        assertThat(compactBytes.length).isLessThan(jsonBytes.length).isLessThan(jdkBytes.length);
+    }
+
+    private void report(String codec, int size, Callable<Object> encode, Callable<Object> decode) throws Exception {
+        double encodeNs = 0;
+        double decodeNs = 0;
+        // Первые раунды прогревают JIT, в отчет идет последний
+        for (int round = 0; round < ROUNDS; round++) {
+            encodeNs = nanosPerOp(encode);
+            decodeNs = nanosPerOp(decode);
+        }
+        System.out.printf("%s: %d B, encode=%.0f ns/op, decode=%.0f ns/op%n", codec, size, encodeNs, decodeNs);
+    }
+
+    private double nanosPerOp(Callable<Object> operation) throws Exception {
+        long started = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            sink += operation.call().hashCode();
+        }
+        return (System.nanoTime() - started) / (double) ITERATIONS;
+    }
+}
@@ -0,0 +1,79 @@
+package com.projectsky.loyaltysystem.cache;
+
+import com.projectsky.loyaltysystem.dto.ClientDto;
+import com.projectsky.loyaltysystem.dto.ClientFullDto;
+import com.projectsky.loyaltysystem.dto.PurchaseDto;
+import com.projectsky.loyaltysystem.enums.Category;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CompactCacheValueSerializerTest {
+
+    CompactCacheValueSerializer serializer = new CompactCacheValueSerializer(List.of(
+            new ClientFullDtoCodec(),
+            new ClientDtoCodec(),
+            new PurchaseDtoCodec()
+    ));
+
+    @Test
+    void shouldRoundTripClientFullDto() {
+        ClientFullDto dto = new ClientFullDto(
+                42L,
+                "akimara",
+                "mackvej@gmail.com",
+                new BigDecimal("1234.50"),
+                100,
+                Category.SILVER,
+                LocalDateTime.parse("2025-06-27T15:00:58.092813"),
+                7
+        );
+
+        Object restored = serializer.deserialize(serializer.serialize(dto));
+
+        assertThat(restored).usingRecursiveComparison().isEqualTo(dto);
+    }
+
+    @Test
+    void shouldRoundTripNullsAndHugeDecimals() {
+        ClientFullDto dto = new ClientFullDto(1L, "akimara", null,
+                new BigDecimal("123456789012345678901234567890.123"), 0, Category.BASIC, null, 0);
+        PurchaseDto purchase = new PurchaseDto(5L, 1L, "item", new BigDecimal("-0.01"),
+                LocalDateTime.parse("1969-12-31T23:59:59.999999"));
+
+        assertThat(serializer.deserialize(serializer.serialize(dto))).usingRecursiveComparison().isEqualTo(dto);
+        assertThat(serializer.deserialize(serializer.serialize(purchase))).isEqualTo(purchase);
+    }
+
+    @Test
+    void shouldBeSmallerThanJdkSerialization() {
+        ClientDto dto = new ClientDto(42L, "akimara", "mackvej@gmail.com", new BigDecimal("1234.50"), 100, "GOLD");
+
+        byte[] compact = serializer.serialize(dto);
+        byte[] jdk = new JdkSerializationRedisSerializer().serialize(dto);
+
+        assertThat(serializer.deserialize(compact)).isEqualTo(dto);
+        assertThat(compact.length).isLessThan(jdk.length / 4);
+    }
+
+    @Test
+    void shouldReadJdkEntriesAndFallBackForUnknownTypes() {
+        ClientDto dto = new ClientDto(42L, "akimara", "mackvej@gmail.com", BigDecimal.ONE, 1, "GOLD");
+
+        assertThat(serializer.deserialize(new JdkSerializationRedisSerializer().serialize(dto))).isEqualTo(dto);
+        assertThat(serializer.deserialize(serializer.serialize("plain"))).isEqualTo("plain");
+    }
+
+    @Test
+    void shouldTreatNewerSchemaVersionAsMiss() {
+        byte[] bytes = serializer.serialize(new PurchaseDto(1L, 1L, "item", BigDecimal.ONE, null));
+        bytes[2] = 99;
+
+        assertThat(serializer.deserialize(bytes)).isNull();
+    }
+}
@@ -0,0 +1,248 @@
+package com.projectsky.loyaltysystem.cache;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import com.projectsky.loyaltysystem.config.TwoLevelCacheConfig;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.CachingConfigurer;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.cache.interceptor.CacheErrorHandler;
+import org.springframework.cache.transaction.TransactionAwareCacheDecorator;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.RedisConnectionFailureException;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+
+class TwoLevelCacheTest {
+
+    static final String REGION = "clientSummary";
+
+    // Общий удаленный уровень и шина сообщений вместо Redis
+    ConcurrentMapCacheManager remote;
+    AtomicBoolean remoteDown;
+    List<TwoLevelCacheManager> nodes;
+
+    TwoLevelCacheManager nodeA;
+    TwoLevelCacheManager nodeB;
+
+    @BeforeEach
+    void setUp() {
+        remoteDown = new AtomicBoolean();
+        remote = new ConcurrentMapCacheManager(REGION) {
+            @Override
+            protected Cache createConcurrentMapCache(String name) {
+                return new FailingCache(name, remoteDown);
+            }
+        };
+        nodes = new CopyOnWriteArrayList<>();
+        nodeA = startNode();
+        nodeB = startNode();
+    }
+
+    @Test
+    void shouldServeRepeatedReadsFromLocalTier() {
+        cache(nodeA).put(1L, "v1");
+
+        assertThat(cache(nodeB).get(1L).get()).isEqualTo("v1");
+        assertThat(cache(nodeB).get(1L).get()).isEqualTo("v1");
+
+        assertThat(cache(nodeB).remoteHitCount()).isEqualTo(1);
+        assertThat(cache(nodeB).localHitCount()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldNotBroadcastCacheFills() {
+        cache(nodeA).put(1L, "v1");
+        cache(nodeB).get(1L);
+
+        cache(nodeA).put(1L, "v1");
+
+        assertThat(cache(nodeB).getNativeCache().getIfPresent(1L)).isEqualTo("v1");
+        assertThat(cache(nodeB).localHitCount()).isZero();
+    }
+
+    @Test
+    void shouldInvalidateOtherNodesOnEvictAndClear() {
+        cache(nodeA).put(1L, "v1");
+        cache(nodeA).put(2L, "v2");
+        cache(nodeB).get(1L);
+        cache(nodeB).get(2L);
+
+        cache(nodeA).evict(1L);
+        assertThat(cache(nodeB).get(1L)).isNull();
+        assertThat(cache(nodeB).getNativeCache().getIfPresent(2L)).isEqualTo("v2");
+
+        cache(nodeA).clear();
+        assertThat(cache(nodeB).get(2L)).isNull();
+        assertThat(cache(nodeB).missCount()).isEqualTo(2);
+    }
+
+    @Test
+    void shouldKeepLocalCopyOnOwnMessages() {
+        cache(nodeA).put(1L, "v1");
+
+        assertThat(cache(nodeA).getNativeCache().getIfPresent(1L)).isEqualTo("v1");
+    }
+
+    @Test
+    void shouldKeepWritesBestEffortWhenRemoteTierIsDown() {
+        cache(nodeA).put(1L, "v1");
+        cache(nodeB).get(1L);
+        remoteDown.set(true);
+
+        assertThatCode(() -> {
+            cache(nodeA).put(1L, "v2");
+            cache(nodeA).evict(1L);
+            cache(nodeA).evict(2L);
+        }).doesNotThrowAnyException();
+
+        // Ни один узел не держит значение, которого нет в Redis, и инвалидация все равно разослана
+        assertThat(cache(nodeA).getNativeCache().getIfPresent(1L)).isNull();
+        assertThat(cache(nodeB).getNativeCache().getIfPresent(1L)).isNull();
+        assertThat(cache(nodeA).putCount()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldRetryEvictThatDidNotReachRemoteTier() {
+        cache(nodeA).put(1L, "v1");
+        cache(nodeA).put(2L, "v2");
+        remoteDown.set(true);
+        cache(nodeA).evict(1L);
+        assertThat(nodeA.repairRemote()).isEqualTo(1);
+        remoteDown.set(false);
+
+        // До повтора ключ читается мимо устаревшего значения в Redis
+        assertThat(cache(nodeA).get(1L)).isNull();
+        assertThat(remote.getCache(REGION).get(1L).get()).isEqualTo("v1");
+
+        assertThat(nodeA.repairRemote()).isZero();
+        assertThat(remote.getCache(REGION).get(1L)).isNull();
+        assertThat(cache(nodeB).get(2L).get()).isEqualTo("v2");
+
+        remoteDown.set(true);
+        cache(nodeA).clear();
+        remoteDown.set(false);
+        assertThat(cache(nodeA).get(2L)).isNull();
+        assertThat(nodeA.repairRemote()).isZero();
+        assertThat(cache(nodeB).get(2L)).isNull();
+    }
+
+    @Test
+    void shouldFallThroughToLoaderWhenRemoteTierIsDown() {
+        remoteDown.set(true);
+
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext()) {
+            context.registerBean(CacheManager.class, () -> nodeA);
+            context.register(CachingSetup.class);
+            context.refresh();
+            SummaryLoader loader = context.getBean(SummaryLoader.class);
+
+            assertThat(loader.load(1L)).isEqualTo("summary-1");
+            assertThat(loader.load(1L)).isEqualTo("summary-1");
+            assertThat(loader.calls()).isEqualTo(2);
+
+            remoteDown.set(false);
+            loader.load(1L);
+            loader.load(1L);
+            assertThat(loader.calls()).isEqualTo(3);
+        }
+    }
+
+    private TwoLevelCacheManager startNode() {
+        TwoLevelCacheManager manager = new TwoLevelCacheManager(
+                remote,
+                List.of(REGION),
+                name -> "maximumSize=100",
+                message -> nodes.forEach(node -> node.onInvalidation(message)));
+        manager.afterPropertiesSet();
+        nodes.add(manager);
+        return manager;
+    }
+
+    private TwoLevelCache cache(TwoLevelCacheManager manager) {
+        Cache cache = manager.getCache(REGION);
+        return (TwoLevelCache) ((TransactionAwareCacheDecorator) cache).getTargetCache();
+    }
+
+    static class FailingCache extends ConcurrentMapCache {
+
+        private final AtomicBoolean down;
+
+        FailingCache(String name, AtomicBoolean down) {
+            super(name, false);
+            this.down = down;
+        }
+
+        @Override
+        public ValueWrapper get(Object key) {
+            failIfDown();
+            return super.get(key);
+        }
+
+        @Override
+        public void put(Object key, Object value) {
+            failIfDown();
+            super.put(key, value);
+        }
+
+        @Override
+        public void evict(Object key) {
+            failIfDown();
+            super.evict(key);
+        }
+
+        @Override
+        public void clear() {
+            failIfDown();
+            super.clear();
+        }
+
+        private void failIfDown() {
+            if (down.get()) {
+                throw new RedisConnectionFailureException("redis down");
+            }
+        }
+    }
+
+    @Configuration
+    @EnableCaching
+    static class CachingSetup implements CachingConfigurer {
+
+        @Override
+        public CacheErrorHandler errorHandler() {
+            return new TwoLevelCacheConfig().errorHandler();
+        }
+
+        @Bean
+        SummaryLoader summaryLoader() {
+            return new SummaryLoader();
+        }
+    }
+
+    static class SummaryLoader {
+
+        private final AtomicInteger calls = new AtomicInteger();
+
+        @Cacheable(REGION)
+        public String load(Long id) {
+            calls.incrementAndGet();
+            return "summary-" + id;
+        }
+
+        public int calls() {
+            return calls.get();
+        }
+    }
+}
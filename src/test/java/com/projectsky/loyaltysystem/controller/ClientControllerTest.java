@@ -3,10 +3,12 @@ package com.projectsky.loyaltysystem.controller;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.projectsky.loyaltysystem.dto.*;
 import com.projectsky.loyaltysystem.enums.Category;
+import com.projectsky.loyaltysystem.enums.PurchaseStatus;
 import com.projectsky.loyaltysystem.exception.ClientAlreadyExistsException;
 import com.projectsky.loyaltysystem.exception.ClientNotFoundException;
 import com.projectsky.loyaltysystem.exception.UsernameAlreadyExistsException;
 import com.projectsky.loyaltysystem.service.ClientService;
+import com.projectsky.loyaltysystem.service.PurchaseService;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.MethodSource;
@@ -17,8 +19,11 @@ import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.Collections;
+import java.util.List;
+import java.util.Set;
 import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
@@ -33,6 +38,9 @@ class ClientControllerTest {
     @MockitoBean
     ClientService clientService;
 
+    @MockitoBean
+    PurchaseService purchaseService;
+
     @Autowired
     ObjectMapper mapper;
 
@@ -42,6 +50,7 @@ class ClientControllerTest {
     @Test
     void shouldReturnNotEmptyListAndOk() throws Exception {
         ClientDto dto = ClientDto.builder()
+                .id(1L)
                 .username("akimara")
                 .email("mackvej@gmail.com")
                 .balance(BigDecimal.valueOf(100))
@@ -49,26 +58,49 @@ class ClientControllerTest {
                 .category(Category.BASIC.name())
                 .build();
 
-        when(clientService.getAllClients()).thenReturn(Collections.singletonList(dto));
+        when(clientService.getAllClients(null, 100)).thenReturn(Collections.singletonList(dto));
 
         mockMvc.perform(get("/api/client"))
                 .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value(1L))
                 .andExpect(jsonPath("$[0].username").value("akimara"))
                 .andExpect(jsonPath("$[0].category").value("BASIC"))
                 .andExpect(jsonPath("$[0].email").value("mackvej@gmail.com"))
                 .andExpect(jsonPath("$[0].balance").value(100))
                 .andExpect(jsonPath("$[0].points").value(100));
 
-        verify(clientService, times(1)).getAllClients();
+        verify(clientService, times(1)).getAllClients(null, 100);
     }
 
     @Test
     void shouldReturnNoContentIfEmptyList() throws Exception {
-        when(clientService.getAllClients()).thenReturn(Collections.emptyList());
+        when(clientService.getAllClients(null, 100)).thenReturn(Collections.emptyList());
         mockMvc.perform(get("/api/client"))
                 .andExpect(status().isNoContent());
 
-        verify(clientService, times(1)).getAllClients();
+        verify(clientService, times(1)).getAllClients(null, 100);
+    }
+
+    @Test
+    void shouldPassCursorAndLimitToService() throws Exception {
+        when(clientService.getAllClients(10L, 2)).thenReturn(Collections.emptyList());
+
+        mockMvc.perform(get("/api/client")
+                        .param("after", "10")
+                        .param("limit", "2"))
+                .andExpect(status().isNoContent());
+
+        verify(clientService, times(1)).getAllClients(10L, 2);
+    }
+
+    @Test
+    void shouldReturnBadRequestIfLimitTooLarge() throws Exception {
+        mockMvc.perform(get("/api/client")
+                        .param("limit", "5000"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("Invalid request"));
+
+        verify(clientService, never()).getAllClients(any(), anyInt());
     }
 
     @Test
@@ -259,4 +291,21 @@ class ClientControllerTest {
         verify(clientService, times(1)).deleteClientById(1L);
     }
 
-}
\ No newline at end of file
+
+    @Test
+    void shouldPassHistoryFiltersAndCursorToService() throws Exception {
+        LocalDateTime cursor = LocalDateTime.of(2026, 3, 2, 12, 0);
+        when(purchaseService.getClientPurchases(1L, LocalDate.of(2026, 3, 1), null, Set.of(PurchaseStatus.REFUNDED),
+                cursor, 42L, 50))
+                .thenReturn(List.of(new ClientPurchaseDto(41L, "item", BigDecimal.TEN, cursor, PurchaseStatus.REFUNDED, BigDecimal.TEN)));
+
+        mockMvc.perform(get("/api/client/1/purchases")
+                        .param("from", "2026-03-01")
+                        .param("status", "REFUNDED")
+                        .param("beforeDate", "2026-03-02T12:00:00")
+                        .param("beforeId", "42"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value(41L))
+                .andExpect(jsonPath("$[0].status").value("REFUNDED"));
+    }
+}
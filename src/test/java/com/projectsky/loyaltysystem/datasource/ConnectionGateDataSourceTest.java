@@ -0,0 +1,42 @@
+package com.projectsky.loyaltysystem.datasource;
+
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ConnectionGateDataSourceTest {
+
+    @Test
+    void shouldHoldPermitUntilConnectionIsClosed() throws Exception {
+        DataSource target = mock(DataSource.class);
+        when(target.getConnection()).thenAnswer(invocation -> mock(Connection.class));
+        ConnectionGateDataSource gate = new ConnectionGateDataSource(target, 1, Duration.ofMillis(50), 10);
+
+        Connection connection = gate.getConnection();
+
+        assertThatThrownBy(gate::getConnection).isInstanceOf(DatabaseBusyException.class);
+        connection.close();
+        connection.close();
+        assertThat(gate.availablePermits()).isEqualTo(1);
+        gate.getConnection();
+        assertThat(gate.availablePermits()).isZero();
+    }
+
+    @Test
+    void shouldReleasePermitWhenPoolFails() throws Exception {
+        DataSource target = mock(DataSource.class);
+        when(target.getConnection()).thenThrow(new SQLTransientConnectionException("timeout"));
+        ConnectionGateDataSource gate = new ConnectionGateDataSource(target, 1, Duration.ofMillis(50), 10);
+
+        assertThatThrownBy(gate::getConnection).isInstanceOf(SQLTransientConnectionException.class);
+        assertThat(gate.availablePermits()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,7 @@
+package com.projectsky.loyaltysystem.datasource;
+
+import org.springframework.test.context.TestPropertySource;
+
+@TestPropertySource(properties = {"spring.threads.virtual.enabled=false", "loyalty.db.gate.enabled=false"})
+class PlatformThreadsLoadTest extends RequestExecutionLoadTest {
+}
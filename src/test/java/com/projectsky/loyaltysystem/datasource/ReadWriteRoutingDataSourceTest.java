@@ -0,0 +1,102 @@
+package com.projectsky.loyaltysystem.datasource;
+
+import com.projectsky.loyaltysystem.service.ClientServiceImpl;
+import com.projectsky.loyaltysystem.service.PurchaseServiceImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ReadWriteRoutingDataSourceTest {
+
+    DataSource primary;
+    DataSource replica;
+    JdbcTemplate jdbcTemplate;
+    TransactionTemplate readOnly;
+    TransactionTemplate readWrite;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        primary = pool();
+        replica = pool();
+        DataSource dataSource = new LazyConnectionDataSourceProxy(new ReadWriteRoutingDataSource(primary, replica));
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        readWrite = new TransactionTemplate(transactionManager);
+        readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+
+        // Первое соединение ленивый прокси тратит на чтение настроек по умолчанию
+        readWrite.executeWithoutResult(status -> jdbcTemplate.execute("SELECT 1"));
+        clearInvocations(primary, replica);
+    }
+
+    @AfterEach
+    void tearDown() {
+        ReadYourWrites.clear();
+    }
+
+    @Test
+    void shouldSendReadOnlyTransactionsToReplica() throws Exception {
+        readOnly.executeWithoutResult(status -> jdbcTemplate.execute("SELECT 1"));
+        verify(replica).getConnection();
+        verify(primary, never()).getConnection();
+
+        readWrite.executeWithoutResult(status -> jdbcTemplate.execute("UPDATE clients SET balance = balance"));
+        verify(primary).getConnection();
+    }
+
+    @Test
+    void shouldKeepPinnedRequestsOnPrimary() throws Exception {
+        ReadYourWrites.pin();
+
+        readOnly.executeWithoutResult(status -> jdbcTemplate.execute("SELECT 1"));
+
+        verify(primary).getConnection();
+        verify(replica, never()).getConnection();
+    }
+
+    @Test
+    void shouldLoadCachedValuesFromPrimary() {
+        // Загрузчики кэша не должны быть readOnly: иначе кэш заполнялся бы с отстающей реплики
+        Stream.of(ClientServiceImpl.class, PurchaseServiceImpl.class)
+                .flatMap(type -> Arrays.stream(type.getDeclaredMethods()))
+                .filter(method -> method.isAnnotationPresent(Cacheable.class))
+                .forEach(method -> assertThat(method.getAnnotation(Transactional.class))
+                        .as(method.getName())
+                        .isNotNull()
+                        .extracting(Transactional::readOnly)
+                        .isEqualTo(false));
+    }
+
+    private DataSource pool() throws Exception {
+        DataSource dataSource = mock(DataSource.class);
+        when(dataSource.getConnection()).thenAnswer(invocation -> {
+            Connection connection = mock(Connection.class);
+            Statement statement = mock(Statement.class);
+            when(connection.createStatement()).thenReturn(statement);
+            when(statement.execute(anyString())).thenReturn(false);
+            return connection;
+        });
+        return dataSource;
+    }
+}
@@ -0,0 +1,143 @@
+package com.projectsky.loyaltysystem.datasource;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// 5000 одновременных HTTP-клиентов по 2 запроса к эндпоинту, который держит соединение из пула 10 мс.
+// Режимы выполнения запросов сравниваются наследниками; клиент работает в той же JVM, поэтому нужен
+// многоядерный хост и открытые дескрипторы (ulimit -n 65536). Запуск: mvn test -Pload -Dtest='*ThreadsLoadTest'
+@Tag("load")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@TestPropertySource(properties = {
+        "spring.datasource.url=jdbc:h2:mem:load;DB_CLOSE_DELAY=-1",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.hikari.maximum-pool-size=10",
+        "loyalty.jobs.tier-recalculation.enabled=false",
+        "loyalty.jobs.points-expiry.enabled=false",
+        "logging.level.root=WARN"
+})
+@Import(RequestExecutionLoadTest.LoadConfig.class)
+abstract class RequestExecutionLoadTest {
+
+    static final int CLIENTS = 5000;
+    static final int WARMUP_CLIENTS = 2000;
+    static final int REQUESTS_PER_CLIENT = 2;
+    static final long HOLD_MS = 10;
+
+    @LocalServerPort
+    int port;
+
+    @TestConfiguration
+    static class LoadConfig {
+
+        @Bean
+        HoldConnectionController holdConnectionController(JdbcTemplate jdbcTemplate) {
+            return new HoldConnectionController(jdbcTemplate);
+        }
+    }
+
+    @RestController
+    static class HoldConnectionController {
+
+        private final JdbcTemplate jdbcTemplate;
+
+        HoldConnectionController(JdbcTemplate jdbcTemplate) {
+            this.jdbcTemplate = jdbcTemplate;
+        }
+
+        // Ожидание на соединении имитирует запрос к базе по сети
+        @GetMapping("/load/hold-connection")
+        String holdConnection() {
+            return jdbcTemplate.execute((ConnectionCallback<String>) connection -> {
+                try {
+                    Thread.sleep(HOLD_MS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return "ok";
+            });
+        }
+    }
+
+    @Test
+    void shouldServeConcurrentClients() throws Exception {
+        HttpClient http = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+        URI uri = URI.create("http://localhost:" + port + "/load/hold-connection");
+
+        round(http, uri, WARMUP_CLIENTS);
+        Result result = round(http, uri, CLIENTS);
+
+        System.out.printf("%s: %d ok, %d shed (503), %d errors in %.1f s -> %.0f req/s, p50=%d ms, p99=%d ms%n",
+                getClass().getSimpleName(), result.ok(), result.shed(), result.errors(), result.seconds(),
+                result.ok() / result.seconds(), result.percentileMs(50), result.percentileMs(99));
+        assertThat(result.errors()).isZero();
+    }
+
+    private Result round(HttpClient http, URI uri, int clients) throws InterruptedException {
+        List<Long> latencies = new CopyOnWriteArrayList<>();
+        AtomicInteger ok = new AtomicInteger();
+        AtomicInteger shed = new AtomicInteger();
+        AtomicInteger errors = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        long started;
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int c = 0; c < clients; c++) {
+                executor.submit(() -> {
+                    start.await();
+                    for (int r = 0; r < REQUESTS_PER_CLIENT; r++) {
+                        long requestStarted = System.nanoTime();
+                        try {
+                            int status = http.send(HttpRequest.newBuilder(uri).timeout(Duration.ofMinutes(2)).build(),
+                                    HttpResponse.BodyHandlers.discarding()).statusCode();
+                            (status == 200 ? ok : status == 503 ? shed : errors).incrementAndGet();
+                        } catch (Exception e) {
+                            errors.incrementAndGet();
+                        }
+                        latencies.add(System.nanoTime() - requestStarted);
+                    }
+                    return null;
+                });
+            }
+            started = System.nanoTime();
+            start.countDown();
+        }
+        return new Result(ok.get(), shed.get(), errors.get(), (System.nanoTime() - started) / 1e9,
+                latencies.stream().sorted().toList());
+    }
+
+    record Result(int ok, int shed, int errors, double seconds, List<Long> sortedLatencies) {
+
+        long percentileMs(int percentile) {
+            return sortedLatencies.get(sortedLatencies.size() * percentile / 100) / 1_000_000;
+        }
+    }
+}
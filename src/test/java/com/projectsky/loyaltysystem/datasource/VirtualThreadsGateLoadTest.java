@@ -0,0 +1,10 @@
+package com.projectsky.loyaltysystem.datasource;
+
+import org.springframework.test.context.TestPropertySource;
+
+// Ожидание в шлюзе увеличено, чтобы сравнивать пропускную способность, а не долю отказов:
+// с рабочим acquire-timeout (5s) избыток запросов отсекается ответом 503
+@TestPropertySource(properties = {"spring.threads.virtual.enabled=true", "loyalty.db.gate.enabled=true",
+        "loyalty.db.gate.acquire-timeout=60s"})
+class VirtualThreadsGateLoadTest extends RequestExecutionLoadTest {
+}
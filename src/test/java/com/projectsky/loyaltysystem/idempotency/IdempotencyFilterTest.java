@@ -0,0 +1,185 @@
+package com.projectsky.loyaltysystem.idempotency;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.projectsky.loyaltysystem.config.IdempotencyConfig;
+import com.projectsky.loyaltysystem.controller.ClientController;
+import com.projectsky.loyaltysystem.dto.BalanceDto;
+import com.projectsky.loyaltysystem.dto.ClientDto;
+import com.projectsky.loyaltysystem.exception.PurchaseTimeoutException;
+import com.projectsky.loyaltysystem.service.ClientService;
+import com.projectsky.loyaltysystem.service.PurchaseService;
+import jakarta.servlet.ReadListener;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.web.util.pattern.PathPatternParser;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(ClientController.class)
+@Import(IdempotencyConfig.class)
+class IdempotencyFilterTest {
+
+    @MockitoBean
+    ClientService clientService;
+
+    @MockitoBean
+    PurchaseService purchaseService;
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Test
+    void shouldReplayStoredResponseForRepeatedKey() throws Exception {
+        when(clientService.topUpBalance(any(BalanceDto.class), eq(1L)))
+                .thenReturn(new ClientDto(1L, "akimara", "mackvej@gmail.com", BigDecimal.valueOf(150), 0, "BASIC"));
+
+        for (int i = 0; i < 3; i++) {
+            mockMvc.perform(topUp("key-1", "50"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.balance").value(150));
+        }
+        mockMvc.perform(topUp("key-1", "50"))
+                .andExpect(header().string(IdempotencyFilter.REPLAYED_HEADER, "true"));
+
+        verify(clientService, times(1)).topUpBalance(any(BalanceDto.class), eq(1L));
+    }
+
+    @Test
+    void shouldRejectKeyReusedForDifferentRequest() throws Exception {
+        when(clientService.topUpBalance(any(BalanceDto.class), eq(1L)))
+                .thenReturn(new ClientDto(1L, "akimara", "mackvej@gmail.com", BigDecimal.valueOf(150), 0, "BASIC"));
+
+        mockMvc.perform(topUp("key-2", "50")).andExpect(status().isOk());
+        mockMvc.perform(topUp("key-2", "70"))
+                .andExpect(status().isUnprocessableEntity())
+                .andExpect(jsonPath("$.error").value("Idempotency key reused"));
+
+        verify(clientService, times(1)).topUpBalance(any(BalanceDto.class), eq(1L));
+    }
+
+    @Test
+    void shouldNotStoreServerErrors() throws Exception {
+        when(clientService.topUpBalance(any(BalanceDto.class), eq(1L)))
+                .thenThrow(new IllegalStateException("boom"))
+                .thenReturn(new ClientDto(1L, "akimara", "mackvej@gmail.com", BigDecimal.valueOf(150), 0, "BASIC"));
+
+        mockMvc.perform(topUp("key-3", "50")).andExpect(status().is5xxServerError());
+        mockMvc.perform(topUp("key-3", "50")).andExpect(status().isOk());
+
+        verify(clientService, times(2)).topUpBalance(any(BalanceDto.class), eq(1L));
+    }
+
+    @Test
+    void shouldNotStoreTransientConflicts() throws Exception {
+        when(clientService.topUpBalance(any(BalanceDto.class), eq(1L)))
+                .thenThrow(new OptimisticLockingFailureException("conflict"))
+                .thenReturn(new ClientDto(1L, "akimara", "mackvej@gmail.com", BigDecimal.valueOf(150), 0, "BASIC"));
+
+        mockMvc.perform(topUp("key-conflict", "50")).andExpect(status().isConflict());
+        mockMvc.perform(topUp("key-conflict", "50"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(IdempotencyFilter.REPLAYED_HEADER));
+
+        verify(clientService, times(2)).topUpBalance(any(BalanceDto.class), eq(1L));
+    }
+
+    @Test
+    void shouldKeepKeyReservedWhenOutcomeIsUnknown() throws Exception {
+        when(clientService.topUpBalance(any(BalanceDto.class), eq(1L)))
+                .thenThrow(new PurchaseTimeoutException("timeout"))
+                .thenReturn(new ClientDto(1L, "akimara", "mackvej@gmail.com", BigDecimal.valueOf(150), 0, "BASIC"));
+
+        mockMvc.perform(topUp("key-timeout", "50")).andExpect(status().isGatewayTimeout());
+        mockMvc.perform(topUp("key-timeout", "50"))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.error").value("Request in progress"));
+
+        verify(clientService, times(1)).topUpBalance(any(BalanceDto.class), eq(1L));
+    }
+
+    @Test
+    void shouldPassThroughWithoutKey() throws Exception {
+        mockMvc.perform(patch("/api/client/1/balance")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"balance\": 50}"));
+        mockMvc.perform(patch("/api/client/1/balance")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"balance\": 50}"));
+
+        verify(clientService, times(2)).topUpBalance(any(BalanceDto.class), eq(1L));
+    }
+
+    @Test
+    void shouldHoldReservationWhileRequestOutlivesLockTimeout() throws Exception {
+        LocalIdempotencyStore store = new LocalIdempotencyStore(100, Duration.ofHours(1), Duration.ofMillis(150));
+        IdempotencyFilter filter = new IdempotencyFilter(store, new ObjectMapper(),
+                List.of(new IdempotencyFilter.Endpoint("PATCH",
+                        PathPatternParser.defaultInstance.parse("/api/client/{clientId}/balance"))),
+                1024,
+                Executors.newSingleThreadScheduledExecutor(),
+                Duration.ofMillis(50));
+        MockHttpServletRequest request = new MockHttpServletRequest("PATCH", "/api/client/1/balance");
+        request.addHeader(IdempotencyFilter.IDEMPOTENCY_KEY_HEADER, "key-slow");
+        request.setContent("{\"balance\": 50}".getBytes(StandardCharsets.UTF_8));
+        AtomicBoolean retryRejected = new AtomicBoolean();
+
+        filter.doFilter(request, new MockHttpServletResponse(), (req, res) -> {
+            try {
+                Thread.sleep(500);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            // Повтор в этот момент не должен получить ключ и провести операцию второй раз
+            retryRejected.set(store.find("key-slow").filter(record -> !record.completed()).isPresent()
+                    && !store.reserve("key-slow", "retry"));
+            res.getOutputStream().write("{}".getBytes(StandardCharsets.UTF_8));
+        });
+        filter.destroy();
+
+        assertThat(retryRejected).isTrue();
+        assertThat(store.find("key-slow")).get().matches(IdempotencyRecord::completed);
+    }
+
+    @Test
+    void shouldNotifyReadListenerRightAway() throws Exception {
+        CachedBodyHttpServletRequest request = new CachedBodyHttpServletRequest(
+                new MockHttpServletRequest(), "{}".getBytes(StandardCharsets.UTF_8));
+        var input = request.getInputStream();
+        ReadListener listener = mock(ReadListener.class);
+        doAnswer(invocation -> input.readAllBytes()).when(listener).onDataAvailable();
+
+        input.setReadListener(listener);
+
+        verify(listener).onDataAvailable();
+        verify(listener).onAllDataRead();
+        verify(listener, never()).onError(any());
+    }
+
+    private RequestBuilder topUp(String key, String amount) {
+        return patch("/api/client/1/balance")
+                .header(IdempotencyFilter.IDEMPOTENCY_KEY_HEADER, key)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"balance\": " + amount + "}");
+    }
+}
@@ -0,0 +1,174 @@
+package com.projectsky.loyaltysystem.job;
+
+import com.projectsky.loyaltysystem.dto.BalanceDto;
+import com.projectsky.loyaltysystem.dto.ClientCreateDto;
+import com.projectsky.loyaltysystem.dto.PurchaseCreateDto;
+import com.projectsky.loyaltysystem.enums.OutboxEventType;
+import com.projectsky.loyaltysystem.exception.NotEnoughBalanceException;
+import com.projectsky.loyaltysystem.model.OutboxEvent;
+import com.projectsky.loyaltysystem.outbox.InMemoryOutboxSink;
+import com.projectsky.loyaltysystem.outbox.OutboxSink;
+import com.projectsky.loyaltysystem.repository.ClientRepository;
+import com.projectsky.loyaltysystem.repository.OutboxEventRepository;
+import com.projectsky.loyaltysystem.repository.PurchaseRepository;
+import com.projectsky.loyaltysystem.service.ClientService;
+import com.projectsky.loyaltysystem.service.PurchaseService;
+import com.projectsky.loyaltysystem.service.ServiceTestConfiguration;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DataJpaTest
+@Import(ServiceTestConfiguration.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class OutboxRelayJobTest {
+
+    @Autowired
+    PurchaseService purchaseService;
+
+    @Autowired
+    ClientService clientService;
+
+    @Autowired
+    ClientRepository clientRepository;
+
+    @Autowired
+    PurchaseRepository purchaseRepository;
+
+    @Autowired
+    OutboxEventRepository outboxEventRepository;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @AfterEach
+    void tearDown() {
+        outboxEventRepository.deleteAll();
+        purchaseRepository.deleteAll();
+        clientRepository.deleteAll();
+    }
+
+    @Test
+    void shouldRecordEventsWithMutationsAndRelayThemOnce() {
+        Long clientId = clientService.addClient(new ClientCreateDto("outboxclient", "outbox@test.ru")).id();
+        clientService.topUpBalance(new BalanceDto(BigDecimal.valueOf(100)), clientId);
+        Long purchaseId = purchaseService.addPurchase(new PurchaseCreateDto("item", BigDecimal.valueOf(80), 0), clientId).id();
+        assertThatThrownBy(() -> purchaseService.addPurchase(new PurchaseCreateDto("expensive", BigDecimal.valueOf(500), 0), clientId))
+                .isInstanceOf(NotEnoughBalanceException.class);
+        purchaseService.refundPurchase(purchaseId, BigDecimal.valueOf(30));
+
+        // Откаченная покупка не оставляет события
+        assertThat(outboxEventRepository.findAll()).extracting(OutboxEvent::getType).containsExactly(
+                OutboxEventType.CLIENT_REGISTERED,
+                OutboxEventType.BALANCE_TOPPED_UP,
+                OutboxEventType.PURCHASE_CREATED,
+                OutboxEventType.PURCHASE_REFUNDED);
+
+        InMemoryOutboxSink sink = new InMemoryOutboxSink(100);
+        OutboxRelayJob job = relayJob(List.of(sink));
+        job.relay();
+        job.relay();
+
+        assertThat(sink.events()).extracting(OutboxEvent::getType).containsExactly(
+                OutboxEventType.CLIENT_REGISTERED,
+                OutboxEventType.BALANCE_TOPPED_UP,
+                OutboxEventType.PURCHASE_CREATED,
+                OutboxEventType.PURCHASE_REFUNDED);
+        assertThat(sink.events().get(3).getPayload())
+                .contains("\"purchaseId\":" + purchaseId)
+                .contains("\"status\":\"PARTIALLY_REFUNDED\"");
+        assertThat(outboxEventRepository.findAll()).allSatisfy(event -> assertThat(event.getPublishedAt()).isNotNull());
+    }
+
+    @Test
+    void shouldResendOnlyToTheSinkThatFailed() {
+        Long clientId = clientService.addClient(new ClientCreateDto("failingsink", "failing@test.ru")).id();
+        clientService.addPoints(clientId, 10);
+
+        InMemoryOutboxSink healthy = new InMemoryOutboxSink(100);
+        InMemoryOutboxSink recovered = new InMemoryOutboxSink(100);
+        AtomicBoolean down = new AtomicBoolean(true);
+        OutboxSink flaky = new OutboxSink() {
+            @Override
+            public void publish(List<OutboxEvent> events) {
+                if (down.get()) {
+                    throw new IllegalStateException("broker is down");
+                }
+                recovered.publish(events);
+            }
+
+            @Override
+            public String name() {
+                return "flaky";
+            }
+        };
+        OutboxRelayJob job = relayJob(List.of(healthy, flaky));
+        job.relay();
+
+        // Отказ засчитывается событию, на котором он случился; остальные ждут следующего запуска
+        assertThat(healthy.events()).hasSize(2);
+        assertThat(outboxEventRepository.findAll()).allSatisfy(event -> assertThat(event.getPublishedAt()).isNull());
+        assertThat(outboxEventRepository.findAll()).extracting(OutboxEvent::getAttempts).containsExactly(1, 0);
+        assertThat(outboxEventRepository.findAll().get(0).getLastError()).contains("flaky").contains("broker is down");
+
+        down.set(false);
+        job.relay();
+
+        assertThat(healthy.events()).hasSize(2);
+        assertThat(recovered.events()).extracting(OutboxEvent::getType)
+                .containsExactly(OutboxEventType.CLIENT_REGISTERED, OutboxEventType.POINTS_ACCRUED);
+        assertThat(outboxEventRepository.findAll()).allSatisfy(event -> assertThat(event.getPublishedAt()).isNotNull());
+    }
+
+    @Test
+    void shouldDeadLetterEventThatNeverGoesThroughAndMoveOn() {
+        Long clientId = clientService.addClient(new ClientCreateDto("poisonevent", "poison@test.ru")).id();
+        clientService.addPoints(clientId, 10);
+        Long poisonId = outboxEventRepository.findAll().get(1).getId();
+
+        InMemoryOutboxSink sink = new InMemoryOutboxSink(100);
+        OutboxRelayJob job = relayJob(List.of(events -> {
+            if (events.stream().anyMatch(event -> event.getId().equals(poisonId))) {
+                throw new IllegalStateException("unreadable payload");
+            }
+            sink.publish(events);
+        }));
+        for (int i = 0; i < 3; i++) {
+            job.relay();
+        }
+        clientService.addPoints(clientId, 5);
+        job.relay();
+
+        assertThat(sink.events()).extracting(OutboxEvent::getType)
+                .containsExactly(OutboxEventType.CLIENT_REGISTERED, OutboxEventType.POINTS_ACCRUED);
+        assertThat(sink.events()).extracting(OutboxEvent::getId).doesNotContain(poisonId);
+        OutboxEvent poison = outboxEventRepository.findById(poisonId).orElseThrow();
+        assertThat(poison.getAttempts()).isEqualTo(3);
+        assertThat(poison.getDeadLetteredAt()).isNotNull();
+        assertThat(poison.getPublishedAt()).isNull();
+    }
+
+    private OutboxRelayJob relayJob(List<OutboxSink> sinks) {
+        OutboxRelayJob job = new OutboxRelayJob(outboxEventRepository, sinks, transactionManager);
+        // Маленькая пачка, чтобы ретранслятор прошел очередь в несколько транзакций
+        ReflectionTestUtils.setField(job, "batchSize", 2);
+        ReflectionTestUtils.setField(job, "maxAttempts", 3);
+        ReflectionTestUtils.setField(job, "retryBackoff", Duration.ZERO);
+        ReflectionTestUtils.setField(job, "maxBackoff", Duration.ZERO);
+        return job;
+    }
+}
@@ -0,0 +1,130 @@
+package com.projectsky.loyaltysystem.job;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+// DDL проверяется по тексту: в тестах нет PostgreSQL, а H2 не поддерживает секционирование
+class PurchasePartitionJobTest {
+
+    static final DateTimeFormatter NAME_FORMAT = DateTimeFormatter.ofPattern("yyyy_MM");
+
+    JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+    ClusterJobLock clusterJobLock = mock(ClusterJobLock.class);
+
+    @Test
+    void shouldRejectUnsafeArchiveSchema() {
+        assertThatThrownBy(() -> new PurchasePartitionJob(jdbcTemplate, transactionManager, clusterJobLock, 3, 3, 6,
+                "archive; DROP TABLE clients"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void shouldMoveDefaultRowsIntoPartitionBeforeAttachingIt() {
+        YearMonth current = YearMonth.now();
+        String next = "purchases_" + current.plusMonths(1).format(NAME_FORMAT);
+        partitioned("purchases_before_" + current.plusMonths(1).format(NAME_FORMAT), "purchases_default");
+
+        new PurchasePartitionJob(jdbcTemplate, transactionManager, clusterJobLock, 1, 0, 0, "archive").maintain();
+
+        InOrder ddl = inOrder(jdbcTemplate, transactionManager);
+        ddl.verify(transactionManager).getTransaction(any());
+        ddl.verify(jdbcTemplate).execute("LOCK TABLE purchases_default IN ACCESS EXCLUSIVE MODE");
+        ddl.verify(jdbcTemplate).execute("CREATE TABLE \"" + next + "\" (LIKE purchases INCLUDING DEFAULTS)");
+        ddl.verify(jdbcTemplate).update(contains("DELETE FROM purchases_default"),
+                eq(current.plusMonths(1).atDay(1)), eq(current.plusMonths(2).atDay(1)));
+        ddl.verify(jdbcTemplate).execute("ALTER TABLE purchases ATTACH PARTITION \"" + next
+                + "\" FOR VALUES FROM ('" + current.plusMonths(1).atDay(1) + "') TO ('" + current.plusMonths(2).atDay(1) + "')");
+        ddl.verify(transactionManager).commit(any());
+        // Текущий месяц покрыт секцией, присоединенной миграцией
+        verify(jdbcTemplate, times(1)).execute(startsWith("CREATE TABLE"));
+    }
+
+    @Test
+    void shouldDetachExpiredPartitionsIntoQuotedArchiveSchema() {
+        String expired = "purchases_" + YearMonth.now().minusMonths(7).format(NAME_FORMAT);
+        String kept = "purchases_" + YearMonth.now().minusMonths(6).format(NAME_FORMAT);
+        partitioned(expired, kept, "purchases_" + YearMonth.now().format(NAME_FORMAT),
+                "purchases_" + YearMonth.now().plusMonths(1).format(NAME_FORMAT), "purchases_default");
+
+        new PurchasePartitionJob(jdbcTemplate, transactionManager, clusterJobLock, 1, 3, 6, "archive").maintain();
+
+        verify(jdbcTemplate).execute("CREATE SCHEMA IF NOT EXISTS \"archive\"");
+        verify(jdbcTemplate).execute("ALTER TABLE purchases DETACH PARTITION \"" + expired + "\"");
+        verify(jdbcTemplate).execute("ALTER TABLE \"" + expired + "\" SET SCHEMA \"archive\"");
+        verify(jdbcTemplate, never()).execute(contains("DETACH PARTITION \"" + kept + "\""));
+        verify(jdbcTemplate, never()).execute(startsWith("CREATE TABLE"));
+    }
+
+    @Test
+    void shouldSplitOldestLegacyMonthAndShrinkLegacyRange() {
+        YearMonth oldest = YearMonth.now().minusMonths(2);
+        String legacy = "purchases_before_" + YearMonth.now().plusMonths(1).format(NAME_FORMAT);
+        String split = "purchases_" + oldest.format(NAME_FORMAT);
+        partitioned(legacy, "purchases_default");
+        when(jdbcTemplate.queryForObject("SELECT min(purchase_date) FROM \"" + legacy + "\"", LocalDateTime.class))
+                .thenReturn(oldest.atDay(10).atStartOfDay());
+
+        new PurchasePartitionJob(jdbcTemplate, transactionManager, clusterJobLock, 0, 1, 0, "archive").maintain();
+
+        InOrder ddl = inOrder(jdbcTemplate, transactionManager);
+        ddl.verify(transactionManager).getTransaction(any());
+        ddl.verify(jdbcTemplate).execute("ALTER TABLE purchases DETACH PARTITION \"" + legacy + "\"");
+        ddl.verify(jdbcTemplate).execute("CREATE TABLE \"" + split + "\" (LIKE purchases INCLUDING DEFAULTS)");
+        ddl.verify(jdbcTemplate).update(contains("DELETE FROM \"" + legacy + "\""), eq(oldest.plusMonths(1).atDay(1)));
+        ddl.verify(jdbcTemplate).execute("ALTER TABLE purchases ATTACH PARTITION \"" + split
+                + "\" FOR VALUES FROM ('" + oldest.atDay(1) + "') TO ('" + oldest.plusMonths(1).atDay(1) + "')");
+        ddl.verify(jdbcTemplate).execute("ALTER TABLE purchases ATTACH PARTITION \"" + legacy
+                + "\" FOR VALUES FROM ('" + oldest.plusMonths(1).atDay(1) + "') TO ('" + YearMonth.now().plusMonths(1).atDay(1) + "')");
+        ddl.verify(transactionManager).commit(any());
+        // За запуск выделяется не больше legacy-months-per-run месяцев
+        verify(jdbcTemplate, times(1)).execute(startsWith("CREATE TABLE"));
+    }
+
+    @Test
+    void shouldArchiveEmptyLegacyPartition() {
+        String legacy = "purchases_before_" + YearMonth.now().plusMonths(1).format(NAME_FORMAT);
+        partitioned(legacy, "purchases_default");
+
+        new PurchasePartitionJob(jdbcTemplate, transactionManager, clusterJobLock, 0, 3, 0, "archive").maintain();
+
+        verify(jdbcTemplate).execute("ALTER TABLE purchases DETACH PARTITION \"" + legacy + "\"");
+        verify(jdbcTemplate).execute("ALTER TABLE \"" + legacy + "\" SET SCHEMA \"archive\"");
+        verify(jdbcTemplate, never()).execute(startsWith("DROP"));
+    }
+
+    @Test
+    void shouldSkipMaintenanceWhenAnotherNodeHoldsTheLock() {
+        when(clusterJobLock.runExclusively(eq("purchase-partitions"), any())).thenReturn(false);
+
+        new PurchasePartitionJob(jdbcTemplate, transactionManager, clusterJobLock, 3, 3, 6, "archive").maintain();
+
+        verifyNoInteractions(jdbcTemplate, transactionManager);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void partitioned(String... partitions) {
+        when(jdbcTemplate.execute(any(ConnectionCallback.class))).thenReturn("PostgreSQL");
+        when(jdbcTemplate.queryForObject(contains("pg_partitioned_table"), eq(Boolean.class))).thenReturn(true);
+        when(jdbcTemplate.queryForList(anyString(), eq(String.class))).thenReturn(List.of(partitions));
+        when(clusterJobLock.runExclusively(eq("purchase-partitions"), any())).thenAnswer(invocation -> {
+            invocation.<Runnable>getArgument(1).run();
+            return true;
+        });
+    }
+}
@@ -0,0 +1,59 @@
+package com.projectsky.loyaltysystem.metrics;
+
+import com.projectsky.loyaltysystem.exception.ClientNotFoundException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.framework.ProxyFactory;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ServiceTimingInterceptorTest {
+
+    SimpleMeterRegistry registry;
+    Lookup proxy;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        ProxyFactory factory = new ProxyFactory(new ClientLookup());
+        factory.addAdvice(new ServiceTimingInterceptor(() -> registry));
+        proxy = (Lookup) factory.getProxy();
+    }
+
+    @Test
+    void shouldTimeSuccessfulCallsWithOneTimerPerMethod() {
+        proxy.find(1L);
+        proxy.find(2L);
+
+        assertThat(registry.get(ServiceTimingInterceptor.METRIC)
+                .tags("class", "ClientLookup", "method", "find", "exception", "none")
+                .timer().count()).isEqualTo(2);
+    }
+
+    @Test
+    void shouldTagFailedCallsWithException() {
+        assertThatThrownBy(() -> proxy.find(-1L)).isInstanceOf(ClientNotFoundException.class);
+
+        assertThat(registry.get(ServiceTimingInterceptor.METRIC)
+                .tags("method", "find", "exception", "ClientNotFoundException")
+                .timer().count()).isEqualTo(1);
+        assertThat(registry.find(ServiceTimingInterceptor.METRIC).tag("exception", "none").timer()).isNull();
+    }
+
+    interface Lookup {
+        String find(Long id);
+    }
+
+    static class ClientLookup implements Lookup {
+
+        @Override
+        public String find(Long id) {
+            if (id < 0) {
+                throw new ClientNotFoundException("Клиент не найден");
+            }
+            return "client" + id;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.projectsky.loyaltysystem.notification;
+
+import com.projectsky.loyaltysystem.enums.NotificationType;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSender;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+class NotificationDispatcherTest {
+
+    @Test
+    void shouldCoalesceBurstPerRecipientAndSendWindowInOneCall() throws Exception {
+        JavaMailSender mailSender = mock(JavaMailSender.class);
+        NotificationDispatcher dispatcher = new NotificationDispatcher(mailSender, new NotificationTemplates(), "noreply@test.ru",
+                100, Duration.ofMillis(500), 200);
+        dispatcher.start();
+
+        for (int i = 0; i < 10; i++) {
+            dispatcher.enqueue(receipt("busy@test.ru", "item" + i));
+        }
+        dispatcher.enqueue(receipt("quiet@test.ru", "single"));
+
+        ArgumentCaptor<SimpleMailMessage[]> captor = ArgumentCaptor.forClass(SimpleMailMessage[].class);
+        verify(mailSender, timeout(5000)).send(captor.capture());
+        dispatcher.stop();
+
+        SimpleMailMessage[] messages = captor.getValue();
+        assertThat(messages).hasSize(2);
+        assertThat(messages[0].getTo()).containsExactly("busy@test.ru");
+        assertThat(messages[0].getSubject()).isEqualTo("Операции по вашему счету: 10");
+        assertThat(messages[0].getText()).contains("Покупка «item0»", "Покупка «item9»");
+        assertThat(messages[1].getTo()).containsExactly("quiet@test.ru");
+        assertThat(messages[1].getSubject()).isEqualTo("Покупка «single»");
+        assertThat(messages[1].getText()).contains("Здравствуйте, quiet!", "Начислено баллов: 5");
+    }
+
+    @Test
+    void shouldRejectBatchThatDoesNotFitWithoutWaiting() {
+        NotificationDispatcher dispatcher = new NotificationDispatcher(mock(JavaMailSender.class), new NotificationTemplates(),
+                "noreply@test.ru", 2, Duration.ofMillis(500), 200);
+
+        assertThat(dispatcher.enqueueAll(List.of(receipt("first@test.ru", "item")))).isTrue();
+        assertThat(dispatcher.enqueueAll(List.of(receipt("second@test.ru", "item"), receipt("third@test.ru", "item")))).isFalse();
+        assertThat(dispatcher.queued()).isEqualTo(1);
+        assertThat(dispatcher.enqueue(receipt("second@test.ru", "item"))).isTrue();
+        assertThat(dispatcher.enqueue(receipt("third@test.ru", "item"))).isFalse();
+    }
+
+    @Test
+    void shouldRejectTemplateWithoutSubject() {
+        assertThatThrownBy(() -> MailTemplate.compile("broken", "Тема без текста"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> MailTemplate.compile("broken", "Тема\n\nТекст {name"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private Notification receipt(String recipient, String name) {
+        return new Notification(recipient, recipient.substring(0, recipient.indexOf('@')), NotificationType.PURCHASE_RECEIPT, Map.of(
+                "name", name,
+                "price", BigDecimal.valueOf(100),
+                "balancePaid", BigDecimal.valueOf(100),
+                "pointsRedeemed", 0,
+                "pointsAccrued", 5));
+    }
+}
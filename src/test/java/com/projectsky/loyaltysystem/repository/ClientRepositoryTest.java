@@ -0,0 +1,121 @@
+package com.projectsky.loyaltysystem.repository;
+
+import com.projectsky.loyaltysystem.dto.ClientFullDto;
+import com.projectsky.loyaltysystem.dto.ClientTierDto;
+import com.projectsky.loyaltysystem.enums.Category;
+import com.projectsky.loyaltysystem.enums.PurchaseStatus;
+import com.projectsky.loyaltysystem.model.Client;
+import com.projectsky.loyaltysystem.model.ClientSpendBucket;
+import com.projectsky.loyaltysystem.model.ClientSpendBucketId;
+import com.projectsky.loyaltysystem.model.Purchase;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+class ClientRepositoryTest {
+
+    @Autowired
+    ClientRepository clientRepository;
+
+    @Autowired
+    TestEntityManager entityManager;
+
+    static final BigDecimal SILVER = BigDecimal.valueOf(15);
+    static final BigDecimal GOLD = BigDecimal.valueOf(100);
+    static final Map<Category, Integer> POINTS = Map.of(Category.BASIC, 1, Category.SILVER, 2, Category.GOLD, 3);
+
+    Client client;
+
+    @BeforeEach
+    void setUp() {
+        client = entityManager.persist(Client.builder()
+                .username("summaryclient")
+                .email("summary@test.ru")
+                .balance(BigDecimal.valueOf(100))
+                .bonusPoints(0)
+                .totalPurchases(0)
+                .rollingSpend(BigDecimal.ZERO)
+                .category(Category.BASIC)
+                .build());
+        entityManager.flush();
+    }
+
+    @Test
+    void shouldMaintainSummaryOnCharge() {
+        LocalDateTime later = LocalDateTime.parse("2025-06-27T15:00:00");
+        LocalDateTime earlier = later.minusDays(1);
+
+        assertThat(clientRepository.chargeForPurchase(client.getId(), BigDecimal.TEN, BigDecimal.TEN, 0, POINTS, later, SILVER, GOLD))
+                .map(ClientTierDto::category).contains(Category.BASIC);
+        // Покупка переводит порог: баллы по уровню до нее, уровень - по сумме после
+        assertThat(clientRepository.chargeForPurchase(client.getId(), BigDecimal.TEN, BigDecimal.TEN, 0, POINTS, earlier, SILVER, GOLD))
+                .hasValueSatisfying(tier -> {
+                    assertThat(tier.category()).isEqualTo(Category.SILVER);
+                    assertThat(tier.rollingSpend()).isEqualByComparingTo("20");
+                });
+        assertThat(clientRepository.chargeForPurchase(client.getId(), BigDecimal.valueOf(1000), BigDecimal.valueOf(1000), 0, POINTS, later, SILVER, GOLD)).isEmpty();
+        assertThat(clientRepository.chargeForPurchase(client.getId(), BigDecimal.ONE, BigDecimal.ZERO, 3, POINTS, later, SILVER, GOLD)).isEmpty();
+        entityManager.clear();
+
+        ClientFullDto summary = clientRepository.findClientSummaryById(client.getId()).orElseThrow();
+        assertThat(summary.getTotalPurchases()).isEqualTo(2);
+        assertThat(summary.getLastPurchase()).isEqualTo(later);
+        assertThat(summary.getBalance()).isEqualByComparingTo("80");
+        assertThat(summary.getPoints()).isEqualTo(2);
+        assertThat(summary.getCategory()).isEqualTo(Category.SILVER.name());
+    }
+
+    @Test
+    void shouldBackfillSummaryFromPurchaseHistory() {
+        LocalDateTime last = LocalDateTime.parse("2025-06-27T15:00:00");
+        for (int i = 0; i < 3; i++) {
+            entityManager.persist(Purchase.builder()
+                    .name("item" + i)
+                    .client(client)
+                    .price(BigDecimal.ONE)
+                    .purchaseDate(last.minusDays(i))
+                    .status(PurchaseStatus.SUCCESSFUL)
+                    .pointsAccrued(0)
+                    .pointsRedeemed(0)
+                    .balancePaid(BigDecimal.ONE)
+                    .refundedAmount(BigDecimal.ZERO)
+                    .build());
+        }
+        entityManager.flush();
+
+        assertThat(clientRepository.recalculatePurchaseSummary(client.getId(), client.getId())).isEqualTo(1);
+        entityManager.clear();
+
+        ClientFullDto summary = clientRepository.findClientSummaryById(client.getId()).orElseThrow();
+        assertThat(summary.getTotalPurchases()).isEqualTo(3);
+        assertThat(summary.getLastPurchase()).isEqualTo(last);
+    }
+
+    @Test
+    void shouldFindClientsWhoseTierDriftedFromBucketsInsideWindow() {
+        LocalDate windowStart = LocalDate.parse("2025-01-01");
+        entityManager.persist(new ClientSpendBucket(new ClientSpendBucketId(client.getId(), windowStart.minusMonths(1)), BigDecimal.valueOf(500)));
+        entityManager.persist(new ClientSpendBucket(new ClientSpendBucketId(client.getId(), windowStart), BigDecimal.valueOf(10)));
+        entityManager.persist(new ClientSpendBucket(new ClientSpendBucketId(client.getId(), windowStart.plusMonths(3)), BigDecimal.valueOf(10)));
+        entityManager.flush();
+
+        assertThat(clientRepository.findTierDrift(client.getId(), client.getId(), windowStart, SILVER, GOLD))
+                .containsExactly(client.getId());
+
+        client.setRollingSpend(BigDecimal.valueOf(20));
+        client.setCategory(Category.SILVER);
+        entityManager.flush();
+
+        assertThat(clientRepository.findTierDrift(client.getId(), client.getId(), windowStart, SILVER, GOLD)).isEmpty();
+    }
+}
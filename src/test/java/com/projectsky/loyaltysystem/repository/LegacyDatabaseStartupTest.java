@@ -0,0 +1,69 @@
+package com.projectsky.loyaltysystem.repository;
+
+import com.projectsky.loyaltysystem.enums.Category;
+import com.projectsky.loyaltysystem.enums.PurchaseStatus;
+import com.projectsky.loyaltysystem.model.Client;
+import com.projectsky.loyaltysystem.model.Purchase;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Запуск на базе, которую до Liquibase создавал ddl-auto и в которой уже есть строки:
+// changelog должен принять существующие таблицы и сдвинуть последовательности за максимальные id
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:legacy;DB_CLOSE_DELAY=-1;INIT=RUNSCRIPT FROM 'classpath:db/legacy-schema.sql'",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password="
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class LegacyDatabaseStartupTest {
+
+    @Autowired
+    ClientRepository clientRepository;
+
+    @Autowired
+    PurchaseRepository purchaseRepository;
+
+    @Test
+    void shouldTakeNewIdsFromSequencesPastExistingRows() {
+        assertThat(clientRepository.findById(120L)).isPresent();
+
+        Client first = clientRepository.save(client("newclient1"));
+        Client second = clientRepository.save(client("newclient2"));
+        Purchase purchase = purchaseRepository.save(Purchase.builder()
+                .name("item")
+                .client(first)
+                .purchaseDate(LocalDateTime.now())
+                .price(BigDecimal.TEN)
+                .status(PurchaseStatus.SUCCESSFUL)
+                .pointsAccrued(0)
+                .pointsRedeemed(0)
+                .balancePaid(BigDecimal.TEN)
+                .refundedAmount(BigDecimal.ZERO)
+                .build());
+
+        // Последовательность выставлена в max(id) + 50, и пул из 50 значений начинается сразу за max(id)
+        assertThat(first.getId()).isEqualTo(121L);
+        assertThat(second.getId()).isEqualTo(122L);
+        assertThat(purchase.getId()).isEqualTo(481L);
+    }
+
+    private Client client(String username) {
+        return Client.builder()
+                .username(username)
+                .email(username + "@test.ru")
+                .balance(BigDecimal.ZERO)
+                .bonusPoints(0)
+                .totalPurchases(0)
+                .rollingSpend(BigDecimal.ZERO)
+                .category(Category.BASIC)
+                .build();
+    }
+}
@@ -0,0 +1,158 @@
+package com.projectsky.loyaltysystem.repository;
+
+import com.projectsky.loyaltysystem.dto.ClientPurchaseDto;
+import com.projectsky.loyaltysystem.dto.PurchaseDto;
+import com.projectsky.loyaltysystem.enums.Category;
+import com.projectsky.loyaltysystem.enums.PurchaseStatus;
+import com.projectsky.loyaltysystem.model.Client;
+import com.projectsky.loyaltysystem.model.Purchase;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.Limit;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class PurchaseRepositoryTest {
+
+    @Autowired
+    PurchaseRepository purchaseRepository;
+
+    @Autowired
+    TestEntityManager entityManager;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    Statistics statistics;
+
+    Long firstPurchaseId;
+
+    @BeforeEach
+    void setUp() {
+        for (int i = 0; i < 3; i++) {
+            Client client = entityManager.persist(Client.builder()
+                    .username("client" + i)
+                    .email("client" + i + "@test.ru")
+                    .balance(BigDecimal.TEN)
+                    .bonusPoints(0)
+                    .totalPurchases(0)
+                    .rollingSpend(BigDecimal.ZERO)
+                    .category(Category.BASIC)
+                    .build());
+
+            for (int j = 0; j < 4; j++) {
+                Purchase purchase = entityManager.persist(Purchase.builder()
+                        .name("item" + j)
+                        .client(client)
+                        .price(BigDecimal.ONE)
+                        .purchaseDate(LocalDateTime.now())
+                        .status(PurchaseStatus.SUCCESSFUL)
+                        .pointsAccrued(0)
+                        .pointsRedeemed(0)
+                        .balancePaid(BigDecimal.ONE)
+                        .refundedAmount(BigDecimal.ZERO)
+                        .build());
+                if (firstPurchaseId == null) {
+                    firstPurchaseId = purchase.getId();
+                }
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void shouldLoadPurchasePageInOneStatement() {
+        List<PurchaseDto> page = purchaseRepository.findPurchaseDtoPage(0L, Limit.of(100));
+
+        assertThat(page).hasSize(12);
+        assertThat(page).allSatisfy(dto -> assertThat(dto.clientId()).isNotNull());
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+    }
+
+    @Test
+    void shouldLoadPurchaseByIdInOneStatement() {
+        PurchaseDto dto = purchaseRepository.findPurchaseDtoById(firstPurchaseId).orElseThrow();
+
+        assertThat(dto.id()).isEqualTo(firstPurchaseId);
+        assertThat(dto.clientId()).isNotNull();
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+    }
+
+    @Test
+    void shouldPageClientHistoryByDateAndId() {
+        Client client = entityManager.persist(Client.builder()
+                .username("history")
+                .email("history@test.ru")
+                .balance(BigDecimal.TEN)
+                .bonusPoints(0)
+                .totalPurchases(0)
+                .rollingSpend(BigDecimal.ZERO)
+                .category(Category.BASIC)
+                .build());
+        LocalDateTime day = LocalDateTime.of(2026, 3, 1, 12, 0);
+        Long oldest = persistPurchase(client, day, PurchaseStatus.SUCCESSFUL);
+        Long sameTimeFirst = persistPurchase(client, day.plusDays(1), PurchaseStatus.SUCCESSFUL);
+        Long sameTimeSecond = persistPurchase(client, day.plusDays(1), PurchaseStatus.SUCCESSFUL);
+        Long refunded = persistPurchase(client, day.plusDays(2), PurchaseStatus.REFUNDED);
+        entityManager.flush();
+        entityManager.clear();
+        statistics.clear();
+
+        List<ClientPurchaseDto> first = purchaseRepository.findClientPurchasePage(client.getId(), day.minusDays(1),
+                day.plusDays(10), Long.MAX_VALUE, EnumSet.allOf(PurchaseStatus.class), Limit.of(2));
+        ClientPurchaseDto last = first.get(first.size() - 1);
+        List<ClientPurchaseDto> second = purchaseRepository.findClientPurchasePage(client.getId(), day.minusDays(1),
+                last.purchaseDate(), last.id(), EnumSet.allOf(PurchaseStatus.class), Limit.of(2));
+        List<ClientPurchaseDto> successful = purchaseRepository.findClientPurchasePage(client.getId(), day.plusDays(1),
+                day.plusDays(10), Long.MAX_VALUE, EnumSet.of(PurchaseStatus.SUCCESSFUL), Limit.of(10));
+
+        assertThat(first).extracting(ClientPurchaseDto::id).containsExactly(refunded, sameTimeSecond);
+        assertThat(second).extracting(ClientPurchaseDto::id).containsExactly(sameTimeFirst, oldest);
+        assertThat(successful).extracting(ClientPurchaseDto::id).containsExactly(sameTimeSecond, sameTimeFirst);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(3);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+    }
+
+    @Test
+    void shouldStreamPurchasesInOneStatement() {
+        try (Stream<PurchaseDto> purchases = purchaseRepository.streamAllPurchaseDtos()) {
+            assertThat(purchases.count()).isEqualTo(12);
+        }
+
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+    }
+
+    private Long persistPurchase(Client client, LocalDateTime purchaseDate, PurchaseStatus status) {
+        return entityManager.persist(Purchase.builder()
+                .name("history item")
+                .client(client)
+                .price(BigDecimal.ONE)
+                .purchaseDate(purchaseDate)
+                .status(status)
+                .pointsAccrued(0)
+                .pointsRedeemed(0)
+                .balancePaid(BigDecimal.ONE)
+                .refundedAmount(status == PurchaseStatus.REFUNDED ? BigDecimal.ONE : BigDecimal.ZERO)
+                .build()).getId();
+    }
+}
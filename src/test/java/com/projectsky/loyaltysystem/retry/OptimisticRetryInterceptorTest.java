@@ -0,0 +1,66 @@
+package com.projectsky.loyaltysystem.retry;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.dao.OptimisticLockingFailureException;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class OptimisticRetryInterceptorTest {
+
+    SimpleMeterRegistry registry;
+    Updater proxy;
+    FlakyUpdater target;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        target = new FlakyUpdater();
+        ProxyFactory factory = new ProxyFactory(target);
+        factory.addAdvice(new OptimisticRetryInterceptor(3, Duration.ofMillis(1), Duration.ofMillis(5), () -> registry));
+        proxy = (Updater) factory.getProxy();
+    }
+
+    @Test
+    void shouldRetryUntilConflictResolves() {
+        target.conflicts = 2;
+
+        assertThat(proxy.update()).isEqualTo(3);
+        assertThat(registry.get(OptimisticRetryInterceptor.RETRIES_METRIC)
+                .tag("method", "FlakyUpdater.update").counter().count()).isEqualTo(2);
+        assertThat(registry.find(OptimisticRetryInterceptor.EXHAUSTED_METRIC).counter()).isNull();
+    }
+
+    @Test
+    void shouldGiveUpAfterMaxAttempts() {
+        target.conflicts = 10;
+
+        assertThatThrownBy(() -> proxy.update()).isInstanceOf(OptimisticLockingFailureException.class);
+        assertThat(target.calls).isEqualTo(3);
+        assertThat(registry.get(OptimisticRetryInterceptor.EXHAUSTED_METRIC).counter().count()).isEqualTo(1);
+    }
+
+    interface Updater {
+        int update();
+    }
+
+    static class FlakyUpdater implements Updater {
+
+        int conflicts;
+        int calls;
+
+        @Override
+        public int update() {
+            calls++;
+            if (calls <= conflicts) {
+                throw new OptimisticLockingFailureException("conflict");
+            }
+            return calls;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.projectsky.loyaltysystem.service;
+
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.projectsky.loyaltysystem.accrual.AccrualRuleEngine;
+import com.projectsky.loyaltysystem.accrual.AccrualRulesReloadPublisher;
+import com.projectsky.loyaltysystem.config.AccrualProperties;
+import com.projectsky.loyaltysystem.enums.Category;
+import com.projectsky.loyaltysystem.exception.InvalidAccrualRulesException;
+import com.projectsky.loyaltysystem.repository.AccrualRuleSetRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// Два "узла" - два движка правил над одной базой
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class AccrualRulesServiceTest {
+
+    private static final LocalDateTime PURCHASED_AT = LocalDateTime.parse("2025-06-15T12:00:00");
+
+    @Autowired
+    AccrualRuleSetRepository accrualRuleSetRepository;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    final List<Long> published = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        accrualRuleSetRepository.deleteAll();
+    }
+
+    @Test
+    void shouldPersistNewVersionAndLetAnotherNodeReloadIt() {
+        AccrualRuleEngine firstEngine = new AccrualRuleEngine(new AccrualProperties(null, null));
+        AccrualRuleEngine secondEngine = new AccrualRuleEngine(new AccrualProperties(null, null));
+        AccrualRulesService firstNode = node(firstEngine);
+        AccrualRulesService secondNode = node(secondEngine);
+
+        transactionTemplate.executeWithoutResult(status -> firstNode.replaceRules(new AccrualProperties(
+                Map.of(
+                        Category.BASIC, new AccrualProperties.TierRule(1000, null, 0),
+                        Category.SILVER, new AccrualProperties.TierRule(1000, null, 0),
+                        Category.GOLD, new AccrualProperties.TierRule(1000, null, 0)
+                ),
+                List.of(new AccrualProperties.Campaign("summer", LocalDate.parse("2025-06-01"), LocalDate.parse("2025-06-30"), 200))
+        )));
+
+        assertThat(accrualRuleSetRepository.findLatestVersion()).contains(1L);
+        assertThat(published).containsExactly(1L);
+        assertThat(firstEngine.currentVersion()).isEqualTo(1);
+        assertThat(firstEngine.calculatePoints(Category.BASIC, BigDecimal.valueOf(100), PURCHASED_AT)).isEqualTo(20);
+        assertThat(secondEngine.calculatePoints(Category.BASIC, BigDecimal.valueOf(100), PURCHASED_AT)).isEqualTo(5);
+
+        assertThat(secondNode.reload()).isTrue();
+        assertThat(secondNode.reload()).isFalse();
+
+        assertThat(secondEngine.currentVersion()).isEqualTo(1);
+        assertThat(secondEngine.calculatePoints(Category.BASIC, BigDecimal.valueOf(100), PURCHASED_AT)).isEqualTo(20);
+    }
+
+    @Test
+    void shouldNotPersistInvalidRules() {
+        AccrualRuleEngine engine = new AccrualRuleEngine(new AccrualProperties(null, null));
+        AccrualRulesService node = node(engine);
+
+        assertThatThrownBy(() -> transactionTemplate.executeWithoutResult(status -> node.replaceRules(new AccrualProperties(
+                Map.of(Category.BASIC, new AccrualProperties.TierRule(900, null, 0)), null))))
+                .isInstanceOf(InvalidAccrualRulesException.class);
+
+        assertThat(accrualRuleSetRepository.count()).isZero();
+        assertThat(published).isEmpty();
+        assertThat(engine.currentVersion()).isZero();
+    }
+
+    private AccrualRulesService node(AccrualRuleEngine engine) {
+        StaticListableBeanFactory beanFactory = new StaticListableBeanFactory();
+        beanFactory.addBean("publisher", (AccrualRulesReloadPublisher) published::add);
+        return new AccrualRulesServiceImpl(accrualRuleSetRepository, engine, JsonMapper.builder().findAndAddModules().build(),
+                beanFactory.getBeanProvider(AccrualRulesReloadPublisher.class));
+    }
+}
@@ -0,0 +1,96 @@
+package com.projectsky.loyaltysystem.service;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.projectsky.loyaltysystem.config.CacheNames;
+import com.projectsky.loyaltysystem.dto.BalanceDto;
+import com.projectsky.loyaltysystem.dto.ClientFullDto;
+import com.projectsky.loyaltysystem.enums.Category;
+import com.projectsky.loyaltysystem.model.Client;
+import com.projectsky.loyaltysystem.repository.ClientRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.cache.transaction.TransactionAwareCacheDecorator;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@Import(ServiceTestConfiguration.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ClientServiceCacheTest {
+
+    @Autowired
+    ClientService clientService;
+
+    @Autowired
+    ClientRepository clientRepository;
+
+    @Autowired
+    CacheManager cacheManager;
+
+    Long clientId;
+
+    @BeforeEach
+    void setUp() {
+        clientId = clientRepository.save(Client.builder()
+                .username("cachedclient")
+                .email("cached@test.ru")
+                .balance(BigDecimal.TEN)
+                .bonusPoints(0)
+                .totalPurchases(0)
+                .rollingSpend(BigDecimal.ZERO)
+                .category(Category.BASIC)
+                .build()).getId();
+    }
+
+    @AfterEach
+    void tearDown() {
+        clientRepository.deleteAll();
+        cacheManager.getCache(CacheNames.CLIENT_SUMMARY).clear();
+    }
+
+    @Test
+    void shouldCacheClientSummaryAndCountHits() {
+        CacheStats before = nativeStats();
+
+        clientService.getClientById(clientId);
+        clientService.getClientById(clientId);
+
+        CacheStats stats = nativeStats().minus(before);
+        assertThat(stats.hitCount()).isEqualTo(1);
+        assertThat(stats.missCount()).isEqualTo(1);
+        assertThat(summaryCache().get(clientId).get()).isInstanceOf(ClientFullDto.class);
+    }
+
+    @Test
+    void shouldEvictSummaryOnBalanceAndPointChanges() {
+        clientService.getClientById(clientId);
+
+        clientService.topUpBalance(new BalanceDto(BigDecimal.ONE), clientId);
+        assertThat(summaryCache().get(clientId)).isNull();
+        assertThat(clientService.getClientById(clientId).getBalance()).isEqualByComparingTo("11");
+
+        clientService.addPoints(clientId, 5);
+        assertThat(summaryCache().get(clientId)).isNull();
+        assertThat(clientService.getClientById(clientId).getPoints()).isEqualTo(5);
+    }
+
+    private Cache summaryCache() {
+        return cacheManager.getCache(CacheNames.CLIENT_SUMMARY);
+    }
+
+    private CacheStats nativeStats() {
+        TransactionAwareCacheDecorator decorator = (TransactionAwareCacheDecorator) summaryCache();
+        return ((CaffeineCache) decorator.getTargetCache()).getNativeCache().stats();
+    }
+}
@@ -0,0 +1,135 @@
+package com.projectsky.loyaltysystem.service;
+
+import com.projectsky.loyaltysystem.config.OptimisticRetryConfig;
+import com.projectsky.loyaltysystem.dto.BalanceDto;
+import com.projectsky.loyaltysystem.dto.ClientUpdateDto;
+import com.projectsky.loyaltysystem.enums.Category;
+import com.projectsky.loyaltysystem.model.Client;
+import com.projectsky.loyaltysystem.repository.ClientRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@Import({ServiceTestConfiguration.class, OptimisticRetryConfig.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ClientServiceConcurrencyTest {
+
+    static final int THREADS = 16;
+    static final int OPERATIONS_PER_THREAD = 50;
+
+    @Autowired
+    ClientService clientService;
+
+    @Autowired
+    ClientRepository clientRepository;
+
+    Long clientId;
+
+    @BeforeEach
+    void setUp() {
+        clientId = clientRepository.save(Client.builder()
+                .username("hotclient")
+                .email("hot@test.ru")
+                .balance(BigDecimal.ZERO)
+                .bonusPoints(0)
+                .totalPurchases(0)
+                .rollingSpend(BigDecimal.ZERO)
+                .category(Category.BASIC)
+                .build()).getId();
+    }
+
+    @AfterEach
+    void tearDown() {
+        clientRepository.deleteAll();
+    }
+
+    @Test
+    void shouldNotLoseConcurrentTopUpsAndPointChanges() throws Exception {
+        runConcurrently(() -> {
+            clientService.topUpBalance(new BalanceDto(new BigDecimal("1.50")), clientId);
+            clientService.addPoints(clientId, 3);
+            clientService.takePoints(clientId, 1);
+            return null;
+        });
+
+        Client client = clientRepository.findById(clientId).orElseThrow();
+        int operations = THREADS * OPERATIONS_PER_THREAD;
+        assertThat(client.getBalance()).isEqualByComparingTo(new BigDecimal("1.50").multiply(BigDecimal.valueOf(operations)));
+        assertThat(client.getBonusPoints()).isEqualTo(2 * operations);
+    }
+
+    @Test
+    void shouldNotLoseTopUpsToConcurrentProfileUpdates() throws Exception {
+        AtomicInteger sequence = new AtomicInteger();
+        AtomicInteger profileUpdates = new AtomicInteger();
+        runConcurrently(() -> {
+            int n = sequence.incrementAndGet();
+            // Правка профиля пишет только свои колонки и не ждет, пока поток пополнений оставит строку в покое
+            if (n % 8 == 0) {
+                clientService.updateClient(new ClientUpdateDto(null, "hot" + n + "@test.ru"), clientId);
+                profileUpdates.incrementAndGet();
+            } else {
+                clientService.topUpBalance(new BalanceDto(BigDecimal.ONE), clientId);
+            }
+            return null;
+        });
+
+        int operations = THREADS * OPERATIONS_PER_THREAD;
+        Client client = clientRepository.findById(clientId).orElseThrow();
+        assertThat(profileUpdates.get()).isEqualTo(operations / 8);
+        assertThat(client.getBalance()).isEqualByComparingTo(BigDecimal.valueOf(operations - operations / 8));
+    }
+
+    @Test
+    void shouldNeverOverdrawOnConcurrentDebits() throws Exception {
+        clientRepository.addBalance(clientId, BigDecimal.valueOf(100));
+
+        Map<Category, Integer> noPoints = new EnumMap<>(Map.of(Category.BASIC, 0, Category.SILVER, 0, Category.GOLD, 0));
+
+        List<Boolean> results = runConcurrently(() -> clientRepository.chargeForPurchase(clientId, BigDecimal.ONE,
+                BigDecimal.ONE, 0, noPoints, LocalDateTime.now(), BigDecimal.valueOf(10_000), BigDecimal.valueOf(20_000))
+                .isPresent());
+
+        Client client = clientRepository.findById(clientId).orElseThrow();
+        assertThat(results).filteredOn(Boolean::booleanValue).hasSize(100);
+        assertThat(client.getBalance()).isEqualByComparingTo(BigDecimal.ZERO);
+        assertThat(client.getTotalPurchases()).isEqualTo(100);
+    }
+
+    private <T> List<T> runConcurrently(Callable<T> operation) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<T>> futures = new ArrayList<>();
+            for (int i = 0; i < THREADS * OPERATIONS_PER_THREAD; i++) {
+                futures.add(executor.submit(operation));
+            }
+            List<T> results = new ArrayList<>();
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.projectsky.loyaltysystem.service;
+
+import com.projectsky.loyaltysystem.enums.Category;
+import com.projectsky.loyaltysystem.enums.PointsEntryType;
+import com.projectsky.loyaltysystem.exception.InvalidPointsAmountException;
+import com.projectsky.loyaltysystem.exception.NotEnoughPointsException;
+import com.projectsky.loyaltysystem.model.Client;
+import com.projectsky.loyaltysystem.model.PointsLedgerEntry;
+import com.projectsky.loyaltysystem.model.PointsLot;
+import com.projectsky.loyaltysystem.repository.ClientRepository;
+import com.projectsky.loyaltysystem.repository.PointsLedgerRepository;
+import com.projectsky.loyaltysystem.repository.PointsLotRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+
+@DataJpaTest
+@Import(ServiceTestConfiguration.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class PointsLedgerServiceTest {
+
+    @Autowired
+    ClientService clientService;
+
+    @Autowired
+    PointsLedgerService pointsLedgerService;
+
+    @Autowired
+    ClientRepository clientRepository;
+
+    @Autowired
+    PointsLotRepository lotRepository;
+
+    @Autowired
+    PointsLedgerRepository ledgerRepository;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    Long clientId;
+
+    @BeforeEach
+    void setUp() {
+        clientId = clientRepository.save(Client.builder()
+                .username("ledgerclient")
+                .email("ledger@test.ru")
+                .balance(BigDecimal.ZERO)
+                .bonusPoints(0)
+                .totalPurchases(0)
+                .rollingSpend(BigDecimal.ZERO)
+                .category(Category.BASIC)
+                .build()).getId();
+    }
+
+    @AfterEach
+    void tearDown() {
+        clientRepository.deleteAll();
+    }
+
+    @Test
+    void shouldRedeemFromLotsThatExpireFirst() {
+        LocalDateTime now = LocalDateTime.now();
+        credit(10, 101L, now.minusDays(10));
+        credit(5, 102L, now.minusDays(20));
+
+        clientService.takePoints(clientId, 7);
+
+        assertThat(lotRepository.findAvailable(clientId))
+                .extracting(PointsLot::getPurchaseId, PointsLot::getRemaining)
+                .containsExactly(tuple(101L, 8));
+        assertThat(clientRepository.findById(clientId).orElseThrow().getBonusPoints()).isEqualTo(8);
+        assertThatThrownBy(() -> clientService.takePoints(clientId, 9)).isInstanceOf(NotEnoughPointsException.class);
+        assertLedgerMatchesBalance();
+    }
+
+    @Test
+    void shouldRejectNonPositivePointChanges() {
+        credit(10, 101L, LocalDateTime.now());
+
+        assertThatThrownBy(() -> clientService.addPoints(clientId, -5)).isInstanceOf(InvalidPointsAmountException.class);
+        assertThatThrownBy(() -> clientService.takePoints(clientId, -5)).isInstanceOf(InvalidPointsAmountException.class);
+        assertThatThrownBy(() -> clientService.addPoints(clientId, 0)).isInstanceOf(InvalidPointsAmountException.class);
+
+        assertThat(clientRepository.findById(clientId).orElseThrow().getBonusPoints()).isEqualTo(10);
+        assertLedgerMatchesBalance();
+    }
+
+    @Test
+    void shouldRollBackRedemptionNotCoveredByLots() {
+        credit(5, 101L, LocalDateTime.now());
+        // Остаток без партий: так выглядит рассинхронизация, которую списание не должно закреплять
+        clientRepository.addBonusPoints(clientId, 10);
+
+        assertThatThrownBy(() -> clientService.takePoints(clientId, 12)).isInstanceOf(IllegalStateException.class);
+
+        assertThat(clientRepository.findById(clientId).orElseThrow().getBonusPoints()).isEqualTo(15);
+        assertThat(lotRepository.findAvailable(clientId))
+                .extracting(PointsLot::getRemaining)
+                .containsExactly(5);
+    }
+
+    @Test
+    void shouldClampReversalToRemainingPoints() {
+        LocalDateTime now = LocalDateTime.now();
+        credit(10, 101L, now);
+        credit(4, 102L, now);
+        clientService.takePoints(clientId, 12);
+
+        Map<Long, Integer> delta = transactionTemplate.execute(status -> {
+            clientRepository.findAllByIdForUpdate(List.of(clientId));
+            Map<Long, Integer> result = pointsLedgerService.recordRefunds(
+                    List.of(new PointsLedgerService.PointsRefund(clientId, 102L, 4, 0)), now);
+            clientRepository.addBonusPoints(clientId, result.get(clientId));
+            return result;
+        });
+
+        assertThat(delta).containsEntry(clientId, -2);
+        assertThat(clientRepository.findById(clientId).orElseThrow().getBonusPoints()).isZero();
+        assertLedgerMatchesBalance();
+    }
+
+    @Test
+    void shouldExpireLotsInChunks() {
+        LocalDateTime now = LocalDateTime.now();
+        credit(10, 101L, now.minusDays(400));
+        credit(3, 102L, now);
+
+        List<Long> expired = pointsLedgerService.expireLots(0L, now, 100);
+
+        assertThat(expired).containsExactly(clientId);
+        assertThat(pointsLedgerService.expireLots(clientId, now, 100)).isEmpty();
+        assertThat(clientRepository.findById(clientId).orElseThrow().getBonusPoints()).isEqualTo(3);
+        assertThat(ledgerRepository.findByClientIdOrderByIdAsc(clientId))
+                .extracting(PointsLedgerEntry::getType)
+                .containsExactly(PointsEntryType.ACCRUAL, PointsEntryType.ACCRUAL, PointsEntryType.EXPIRY);
+        assertLedgerMatchesBalance();
+    }
+
+    private void credit(int points, Long purchaseId, LocalDateTime earnedAt) {
+        transactionTemplate.executeWithoutResult(status -> {
+            clientRepository.addBonusPoints(clientId, points);
+            pointsLedgerService.recordAccrual(clientId, points, purchaseId, earnedAt);
+        });
+    }
+
+    private void assertLedgerMatchesBalance() {
+        int ledgerSum = ledgerRepository.findByClientIdOrderByIdAsc(clientId).stream()
+                .mapToInt(PointsLedgerEntry::getPoints)
+                .sum();
+        int lotsSum = lotRepository.findAvailable(clientId).stream()
+                .mapToInt(PointsLot::getRemaining)
+                .sum();
+        int balance = clientRepository.findById(clientId).orElseThrow().getBonusPoints();
+        assertThat(ledgerSum).isEqualTo(balance);
+        assertThat(lotsSum).isEqualTo(balance);
+    }
+}
@@ -0,0 +1,102 @@
+package com.projectsky.loyaltysystem.service;
+
+import com.projectsky.loyaltysystem.dto.PurchaseCreateDto;
+import com.projectsky.loyaltysystem.enums.Category;
+import com.projectsky.loyaltysystem.model.Client;
+import com.projectsky.loyaltysystem.repository.ClientRepository;
+import com.projectsky.loyaltysystem.repository.ClientSpendBucketRepository;
+import com.projectsky.loyaltysystem.repository.OutboxEventRepository;
+import com.projectsky.loyaltysystem.repository.PointsLedgerRepository;
+import com.projectsky.loyaltysystem.repository.PurchaseRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Задержка последовательных покупок одного клиента на встроенной H2: абсолютные цифры шумные,
+// устойчивый показатель - число запросов на покупку. Запуск: mvn test -Pload -Dtest=PurchaseLatencyLoadTest
+@Tag("load")
+@DataJpaTest(properties = "logging.level.root=WARN")
+@Import(ServiceTestConfiguration.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class PurchaseLatencyLoadTest {
+
+    static final int WARMUP = 10_000;
+    static final int PURCHASES = 30_000;
+
+    @Autowired
+    PurchaseService purchaseService;
+
+    @Autowired
+    ClientRepository clientRepository;
+
+    @Autowired
+    PurchaseRepository purchaseRepository;
+
+    @Autowired
+    ClientSpendBucketRepository bucketRepository;
+
+    @Autowired
+    PointsLedgerRepository pointsLedgerRepository;
+
+    @Autowired
+    OutboxEventRepository outboxEventRepository;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.execute("SET QUERY_STATISTICS FALSE");
+        outboxEventRepository.deleteAllInBatch();
+        pointsLedgerRepository.deleteAllInBatch();
+        bucketRepository.deleteAllInBatch();
+        purchaseRepository.deleteAllInBatch();
+        clientRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void shouldMeasureAddPurchaseLatency() {
+        Long clientId = clientRepository.save(Client.builder()
+                .username("latencyclient")
+                .email("latency@test.ru")
+                .balance(BigDecimal.valueOf(100_000_000))
+                .bonusPoints(0)
+                .totalPurchases(0)
+                .rollingSpend(BigDecimal.ZERO)
+                .category(Category.BASIC)
+                .build()).getId();
+        PurchaseCreateDto purchase = new PurchaseCreateDto("item", new BigDecimal("10.00"), null);
+        for (int i = 0; i < WARMUP; i++) {
+            purchaseService.addPurchase(purchase, clientId);
+        }
+
+        jdbcTemplate.execute("SET QUERY_STATISTICS TRUE");
+        long[] latencies = new long[PURCHASES];
+        for (int i = 0; i < PURCHASES; i++) {
+            long started = System.nanoTime();
+            purchaseService.addPurchase(purchase, clientId);
+            latencies[i] = System.nanoTime() - started;
+        }
+        Long statements = jdbcTemplate.queryForObject("""
+                SELECT SUM(EXECUTION_COUNT) FROM INFORMATION_SCHEMA.QUERY_STATISTICS
+                WHERE REGEXP_LIKE(SQL_STATEMENT, '^(select|insert|update|delete|merge)', 'i')
+                  AND SQL_STATEMENT NOT LIKE '%INFORMATION_SCHEMA%'
+                """, Long.class);
+
+        Arrays.sort(latencies);
+        System.out.printf("addPurchase: %.2f statements/op, p50=%.0f us, p99=%.0f us%n",
+                statements / (double) PURCHASES, latencies[PURCHASES / 2] / 1e3, latencies[PURCHASES * 99 / 100] / 1e3);
+        assertThat(clientRepository.findById(clientId).orElseThrow().getTotalPurchases()).isEqualTo(WARMUP + PURCHASES);
+    }
+}
@@ -0,0 +1,121 @@
+package com.projectsky.loyaltysystem.service;
+
+import com.projectsky.loyaltysystem.dto.PurchaseBatchLineDto;
+import com.projectsky.loyaltysystem.dto.PurchaseBatchResultDto;
+import com.projectsky.loyaltysystem.enums.BatchLineStatus;
+import com.projectsky.loyaltysystem.enums.Category;
+import com.projectsky.loyaltysystem.model.Client;
+import com.projectsky.loyaltysystem.repository.ClientRepository;
+import com.projectsky.loyaltysystem.repository.PurchaseRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@Import(ServiceTestConfiguration.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class PurchaseServiceBatchTest {
+
+    @Autowired
+    PurchaseService purchaseService;
+
+    @Autowired
+    ClientRepository clientRepository;
+
+    @Autowired
+    PurchaseRepository purchaseRepository;
+
+    @AfterEach
+    void tearDown() {
+        purchaseRepository.deleteAll();
+        clientRepository.deleteAll();
+    }
+
+    @Test
+    void shouldApplyLinesPerClientAndReportEachLine() {
+        Long first = createClient("batchclient1", BigDecimal.valueOf(30));
+        Long second = createClient("batchclient2", BigDecimal.valueOf(100));
+
+        List<PurchaseBatchResultDto> results = purchaseService.addPurchases(List.of(
+                line(first, "10"),
+                line(second, "40"),
+                line(first, "10"),
+                line(first, "15"),
+                line(999_999L, "1"),
+                line(second, "-5"),
+                line(first, "10")
+        ));
+
+        assertThat(results).extracting(PurchaseBatchResultDto::status).containsExactly(
+                BatchLineStatus.CREATED,
+                BatchLineStatus.CREATED,
+                BatchLineStatus.CREATED,
+                BatchLineStatus.NOT_ENOUGH_BALANCE,
+                BatchLineStatus.CLIENT_NOT_FOUND,
+                BatchLineStatus.INVALID,
+                BatchLineStatus.CREATED
+        );
+        assertThat(results).extracting(PurchaseBatchResultDto::line).containsExactly(0, 1, 2, 3, 4, 5, 6);
+        assertThat(results.get(0).purchaseId()).isNotNull();
+
+        Client firstClient = clientRepository.findById(first).orElseThrow();
+        assertThat(firstClient.getBalance()).isEqualByComparingTo("0");
+        assertThat(firstClient.getBonusPoints()).isEqualTo(3);
+        assertThat(firstClient.getTotalPurchases()).isEqualTo(3);
+        assertThat(firstClient.getLastPurchaseAt()).isNotNull();
+
+        Client secondClient = clientRepository.findById(second).orElseThrow();
+        assertThat(secondClient.getBalance()).isEqualByComparingTo("60");
+        assertThat(secondClient.getBonusPoints()).isEqualTo(2);
+        assertThat(purchaseRepository.count()).isEqualTo(4);
+    }
+
+    @Test
+    void shouldCommitEachClientChunkSeparately() {
+        Long first = createClient("chunkclient1", BigDecimal.valueOf(100));
+        Long second = createClient("chunkclient2", BigDecimal.valueOf(100));
+        // 999 несуществующих клиентов с меньшими id заполняют первую порцию вместе с first, second уходит во вторую
+        List<PurchaseBatchLineDto> lines = new ArrayList<>();
+        lines.add(line(first, "10"));
+        lines.add(new PurchaseBatchLineDto(second, "x".repeat(300), BigDecimal.TEN));
+        for (long id = -999; id < 0; id++) {
+            lines.add(line(id, "1"));
+        }
+
+        List<PurchaseBatchResultDto> results = purchaseService.addPurchases(lines.iterator());
+
+        assertThat(results).hasSize(lines.size());
+        assertThat(results.get(0).status()).isEqualTo(BatchLineStatus.CREATED);
+        assertThat(results.get(1).status()).isEqualTo(BatchLineStatus.FAILED);
+        assertThat(results.get(2).status()).isEqualTo(BatchLineStatus.CLIENT_NOT_FOUND);
+        assertThat(clientRepository.findById(first).orElseThrow().getBalance()).isEqualByComparingTo("90");
+        assertThat(clientRepository.findById(second).orElseThrow().getBalance()).isEqualByComparingTo("100");
+        assertThat(purchaseRepository.count()).isEqualTo(1);
+    }
+
+    private Long createClient(String username, BigDecimal balance) {
+        return clientRepository.save(Client.builder()
+                .username(username)
+                .email(username + "@test.ru")
+                .balance(balance)
+                .bonusPoints(0)
+                .totalPurchases(0)
+                .rollingSpend(BigDecimal.ZERO)
+                .category(Category.BASIC)
+                .build()).getId();
+    }
+
+    private PurchaseBatchLineDto line(Long clientId, String price) {
+        return new PurchaseBatchLineDto(clientId, "item", new BigDecimal(price));
+    }
+}
@@ -0,0 +1,131 @@
+package com.projectsky.loyaltysystem.service;
+
+import com.projectsky.loyaltysystem.dto.PurchaseCreateDto;
+import com.projectsky.loyaltysystem.enums.Category;
+import com.projectsky.loyaltysystem.exception.InvalidRedemptionException;
+import com.projectsky.loyaltysystem.exception.NotEnoughPointsException;
+import com.projectsky.loyaltysystem.model.Client;
+import com.projectsky.loyaltysystem.repository.ClientRepository;
+import com.projectsky.loyaltysystem.repository.PurchaseRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DataJpaTest
+@Import(ServiceTestConfiguration.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class PurchaseServiceRedemptionTest {
+
+    @Autowired
+    PurchaseService purchaseService;
+
+    @Autowired
+    ClientService clientService;
+
+    @Autowired
+    ClientRepository clientRepository;
+
+    @Autowired
+    PurchaseRepository purchaseRepository;
+
+    Long clientId;
+
+    @BeforeEach
+    void setUp() {
+        clientId = clientRepository.save(Client.builder()
+                .username("redeemclient")
+                .email("redeem@test.ru")
+                .balance(BigDecimal.valueOf(1000))
+                .bonusPoints(0)
+                .totalPurchases(0)
+                .rollingSpend(BigDecimal.ZERO)
+                .category(Category.BASIC)
+                .build()).getId();
+        clientService.addPoints(clientId, 30);
+    }
+
+    @AfterEach
+    void tearDown() {
+        purchaseRepository.deleteAll();
+        clientRepository.deleteAll();
+    }
+
+    @Test
+    void shouldSplitPaymentBetweenPointsAndBalanceAndRestoreOnRefund() {
+        Long purchaseId = purchaseService.addPurchase(new PurchaseCreateDto("item", BigDecimal.valueOf(100), 20), clientId).id();
+
+        Client client = clientRepository.findById(clientId).orElseThrow();
+        assertThat(client.getBalance()).isEqualByComparingTo("920");
+        // 30 - 20 списано + 4 начислено с 80, оплаченных балансом
+        assertThat(client.getBonusPoints()).isEqualTo(14);
+
+        purchaseService.refundPurchase(purchaseId, null);
+
+        client = clientRepository.findById(clientId).orElseThrow();
+        assertThat(client.getBalance()).isEqualByComparingTo("1000");
+        assertThat(client.getBonusPoints()).isEqualTo(30);
+    }
+
+    @Test
+    void shouldRejectRedemptionBeyondPointsOrPrice() {
+        assertThatThrownBy(() -> purchaseService.addPurchase(new PurchaseCreateDto("item", BigDecimal.valueOf(100), 31), clientId))
+                .isInstanceOf(NotEnoughPointsException.class);
+        assertThatThrownBy(() -> purchaseService.addPurchase(new PurchaseCreateDto("item", BigDecimal.valueOf(10), 20), clientId))
+                .isInstanceOf(InvalidRedemptionException.class);
+
+        Client client = clientRepository.findById(clientId).orElseThrow();
+        assertThat(client.getBalance()).isEqualByComparingTo("1000");
+        assertThat(client.getBonusPoints()).isEqualTo(30);
+    }
+
+    @Test
+    void shouldRejectNegativeRedemption() {
+        assertThatThrownBy(() -> purchaseService.addPurchase(new PurchaseCreateDto("item", BigDecimal.valueOf(100), -50), clientId))
+                .isInstanceOf(InvalidRedemptionException.class);
+
+        Client client = clientRepository.findById(clientId).orElseThrow();
+        assertThat(client.getBalance()).isEqualByComparingTo("1000");
+        assertThat(client.getBonusPoints()).isEqualTo(30);
+        assertThat(purchaseRepository.count()).isZero();
+    }
+
+    @Test
+    void shouldNeverOverdrawPointsOnConcurrentRedemptions() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<Boolean>> futures = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            // Цена полностью покрывается баллами, поэтому новых баллов не начисляется
+            futures.add(executor.submit(() -> {
+                try {
+                    purchaseService.addPurchase(new PurchaseCreateDto("item", BigDecimal.ONE, 1), clientId);
+                    return true;
+                } catch (NotEnoughPointsException e) {
+                    return false;
+                }
+            }));
+        }
+        int succeeded = 0;
+        for (Future<Boolean> future : futures) {
+            succeeded += future.get() ? 1 : 0;
+        }
+        executor.shutdown();
+
+        assertThat(succeeded).isEqualTo(30);
+        assertThat(clientRepository.findById(clientId).orElseThrow().getBonusPoints()).isZero();
+    }
+}
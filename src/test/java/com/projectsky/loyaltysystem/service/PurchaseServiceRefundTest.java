@@ -0,0 +1,140 @@
+package com.projectsky.loyaltysystem.service;
+
+import com.projectsky.loyaltysystem.dto.PurchaseCreateDto;
+import com.projectsky.loyaltysystem.dto.RefundLineDto;
+import com.projectsky.loyaltysystem.dto.RefundResultDto;
+import com.projectsky.loyaltysystem.enums.Category;
+import com.projectsky.loyaltysystem.enums.PurchaseStatus;
+import com.projectsky.loyaltysystem.enums.RefundLineStatus;
+import com.projectsky.loyaltysystem.exception.InvalidRefundAmountException;
+import com.projectsky.loyaltysystem.exception.PurchaseAlreadyRefundedException;
+import com.projectsky.loyaltysystem.model.Client;
+import com.projectsky.loyaltysystem.model.PointsLot;
+import com.projectsky.loyaltysystem.model.Purchase;
+import com.projectsky.loyaltysystem.repository.ClientRepository;
+import com.projectsky.loyaltysystem.repository.PointsLotRepository;
+import com.projectsky.loyaltysystem.repository.PurchaseRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DataJpaTest
+@Import(ServiceTestConfiguration.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class PurchaseServiceRefundTest {
+
+    @Autowired
+    PurchaseService purchaseService;
+
+    @Autowired
+    ClientService clientService;
+
+    @Autowired
+    ClientRepository clientRepository;
+
+    @Autowired
+    PurchaseRepository purchaseRepository;
+
+    @Autowired
+    PointsLotRepository lotRepository;
+
+    Long clientId;
+
+    @BeforeEach
+    void setUp() {
+        clientId = clientRepository.save(Client.builder()
+                .username("refundclient")
+                .email("refund@test.ru")
+                .balance(BigDecimal.valueOf(1000))
+                .bonusPoints(0)
+                .totalPurchases(0)
+                .rollingSpend(BigDecimal.ZERO)
+                .category(Category.BASIC)
+                .build()).getId();
+        clientService.addPoints(clientId, 30);
+    }
+
+    @AfterEach
+    void tearDown() {
+        purchaseRepository.deleteAll();
+        clientRepository.deleteAll();
+    }
+
+    @Test
+    void shouldSplitPartialRefundsProRataAndAddUpToFullRefund() {
+        Long purchaseId = purchaseService.addPurchase(new PurchaseCreateDto("item", BigDecimal.valueOf(100), 20), clientId).id();
+
+        RefundResultDto partial = purchaseService.refundPurchase(purchaseId, BigDecimal.valueOf(30));
+
+        assertThat(partial.status()).isEqualTo(RefundLineStatus.PARTIALLY_REFUNDED);
+        Client client = clientRepository.findById(clientId).orElseThrow();
+        // 30% от 80, оплаченных балансом; 6 из 20 потраченных баллов; 2 из 4 начисленных (с округлением вверх)
+        assertThat(client.getBalance()).isEqualByComparingTo("944");
+        assertThat(client.getBonusPoints()).isEqualTo(14 + 6 - 2);
+        assertThat(client.getRollingSpend()).isEqualByComparingTo("70");
+        assertThatThrownBy(() -> purchaseService.refundPurchase(purchaseId, BigDecimal.valueOf(71)))
+                .isInstanceOf(InvalidRefundAmountException.class);
+
+        purchaseService.refundPurchase(purchaseId, null);
+
+        client = clientRepository.findById(clientId).orElseThrow();
+        assertThat(client.getBalance()).isEqualByComparingTo("1000");
+        assertThat(client.getBonusPoints()).isEqualTo(30);
+        assertThat(client.getRollingSpend()).isEqualByComparingTo("0");
+        Purchase purchase = purchaseRepository.findById(purchaseId).orElseThrow();
+        assertThat(purchase.getStatus()).isEqualTo(PurchaseStatus.REFUNDED);
+        assertThat(purchase.getRefundedAmount()).isEqualByComparingTo("100");
+        assertThatThrownBy(() -> purchaseService.refundPurchase(purchaseId, null))
+                .isInstanceOf(PurchaseAlreadyRefundedException.class);
+        assertLotsMatchBalance();
+    }
+
+    @Test
+    void shouldApplyRefundBatchLineByLine() {
+        Long first = purchaseService.addPurchase(new PurchaseCreateDto("first", BigDecimal.valueOf(100), 0), clientId).id();
+        Long second = purchaseService.addPurchase(new PurchaseCreateDto("second", BigDecimal.valueOf(200), 10), clientId).id();
+
+        List<RefundResultDto> results = purchaseService.refundPurchases(List.of(
+                new RefundLineDto(first, null),
+                new RefundLineDto(second, BigDecimal.valueOf(50)),
+                new RefundLineDto(second, null),
+                new RefundLineDto(first, BigDecimal.ONE),
+                new RefundLineDto(-1L, null),
+                new RefundLineDto(null, null),
+                new RefundLineDto(second, BigDecimal.valueOf(-5))));
+
+        assertThat(results).extracting(RefundResultDto::status).containsExactly(
+                RefundLineStatus.REFUNDED,
+                RefundLineStatus.PARTIALLY_REFUNDED,
+                RefundLineStatus.REFUNDED,
+                RefundLineStatus.ALREADY_REFUNDED,
+                RefundLineStatus.PURCHASE_NOT_FOUND,
+                RefundLineStatus.INVALID,
+                RefundLineStatus.INVALID);
+        assertThat(results.get(2).refundedAmount()).isEqualByComparingTo("150");
+
+        Client client = clientRepository.findById(clientId).orElseThrow();
+        assertThat(client.getBalance()).isEqualByComparingTo("1000");
+        assertThat(client.getBonusPoints()).isEqualTo(30);
+        assertThat(client.getRollingSpend()).isEqualByComparingTo("0");
+        assertLotsMatchBalance();
+    }
+
+    private void assertLotsMatchBalance() {
+        int lotsSum = lotRepository.findAvailable(clientId).stream()
+                .mapToInt(PointsLot::getRemaining)
+                .sum();
+        assertThat(lotsSum).isEqualTo(clientRepository.findById(clientId).orElseThrow().getBonusPoints());
+    }
+}
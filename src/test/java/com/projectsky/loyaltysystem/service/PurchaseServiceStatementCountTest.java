@@ -0,0 +1,104 @@
+package com.projectsky.loyaltysystem.service;
+
+import com.projectsky.loyaltysystem.dto.PurchaseCreateDto;
+import com.projectsky.loyaltysystem.enums.Category;
+import com.projectsky.loyaltysystem.model.Client;
+import com.projectsky.loyaltysystem.model.Purchase;
+import com.projectsky.loyaltysystem.repository.ClientRepository;
+import com.projectsky.loyaltysystem.repository.ClientSpendBucketRepository;
+import com.projectsky.loyaltysystem.repository.OutboxEventRepository;
+import com.projectsky.loyaltysystem.repository.PurchaseRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Import(ServiceTestConfiguration.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class PurchaseServiceStatementCountTest {
+
+    @Autowired
+    PurchaseService purchaseService;
+
+    @Autowired
+    ClientRepository clientRepository;
+
+    @Autowired
+    PurchaseRepository purchaseRepository;
+
+    @Autowired
+    ClientSpendBucketRepository bucketRepository;
+
+    @Autowired
+    OutboxEventRepository outboxEventRepository;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    Statistics statistics;
+
+    Long clientId;
+
+    @BeforeEach
+    void setUp() {
+        clientId = clientRepository.save(Client.builder()
+                .username("statementclient")
+                .email("statement@test.ru")
+                .balance(BigDecimal.valueOf(1000))
+                .bonusPoints(0)
+                .totalPurchases(0)
+                .rollingSpend(BigDecimal.ZERO)
+                .category(Category.BASIC)
+                .build()).getId();
+        // Первая покупка создает корзину месяца, а первые два вызова выбирают пулы идентификаторов
+        // из последовательностей: дальше считается обычная покупка
+        purchaseService.addPurchase(new PurchaseCreateDto("warmup", BigDecimal.TEN, null), clientId);
+        purchaseService.addPurchase(new PurchaseCreateDto("warmup", BigDecimal.TEN, null), clientId);
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        // Списание идет мимо Hibernate, поэтому запросы к таблицам считает сама H2
+        jdbcTemplate.execute("SET QUERY_STATISTICS TRUE");
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.execute("SET QUERY_STATISTICS FALSE");
+        outboxEventRepository.deleteAll();
+        bucketRepository.deleteAll();
+        purchaseRepository.deleteAll();
+        clientRepository.deleteAll();
+    }
+
+    @Test
+    void shouldChargeWithOneClientUpdateAndNoClientLoad() {
+        purchaseService.addPurchase(new PurchaseCreateDto("item", BigDecimal.valueOf(100), null), clientId);
+
+        // Одно условное списание с начислением, возвращающее уровень, корзина месяца
+        // и вставки покупки, партии баллов, записи журнала и события outbox
+        assertThat(jdbcTemplate.queryForObject("""
+                SELECT SUM(EXECUTION_COUNT) FROM INFORMATION_SCHEMA.QUERY_STATISTICS
+                WHERE REGEXP_LIKE(SQL_STATEMENT, '^(select|insert|update|delete|merge)', 'i')
+                  AND SQL_STATEMENT NOT LIKE '%INFORMATION_SCHEMA%'
+                """, Integer.class)).isEqualTo(6);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(5);
+        assertThat(statistics.getEntityStatistics(Client.class.getName()).getLoadCount()).isZero();
+        assertThat(statistics.getEntityStatistics(Purchase.class.getName()).getInsertCount()).isEqualTo(1);
+        assertThat(statistics.getEntityInsertCount()).isEqualTo(4);
+    }
+}
@@ -0,0 +1,133 @@
+package com.projectsky.loyaltysystem.service;
+
+import com.projectsky.loyaltysystem.config.TierProperties;
+import com.projectsky.loyaltysystem.dto.PurchaseCreateDto;
+import com.projectsky.loyaltysystem.enums.Category;
+import com.projectsky.loyaltysystem.enums.OutboxEventType;
+import com.projectsky.loyaltysystem.model.Client;
+import com.projectsky.loyaltysystem.model.ClientSpendBucket;
+import com.projectsky.loyaltysystem.model.OutboxEvent;
+import com.projectsky.loyaltysystem.repository.ClientRepository;
+import com.projectsky.loyaltysystem.repository.ClientSpendBucketRepository;
+import com.projectsky.loyaltysystem.repository.OutboxEventRepository;
+import com.projectsky.loyaltysystem.repository.PurchaseRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest(properties = {
+        "loyalty.tiers.silver-threshold=50",
+        "loyalty.tiers.gold-threshold=100"
+})
+@Import(ServiceTestConfiguration.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class PurchaseServiceTierTest {
+
+    @Autowired
+    PurchaseService purchaseService;
+
+    @Autowired
+    ClientRepository clientRepository;
+
+    @Autowired
+    PurchaseRepository purchaseRepository;
+
+    @Autowired
+    ClientSpendBucketRepository bucketRepository;
+
+    @Autowired
+    OutboxEventRepository outboxEventRepository;
+
+    @Autowired
+    TierService tierService;
+
+    @Autowired
+    TierProperties tierProperties;
+
+    @AfterEach
+    void tearDown() {
+        outboxEventRepository.deleteAll();
+        bucketRepository.deleteAll();
+        purchaseRepository.deleteAll();
+        clientRepository.deleteAll();
+    }
+
+    @Test
+    void shouldMoveTierWithRollingSpend() {
+        Long clientId = clientRepository.save(Client.builder()
+                .username("tierclient")
+                .email("tier@test.ru")
+                .balance(BigDecimal.valueOf(500))
+                .bonusPoints(0)
+                .totalPurchases(0)
+                .rollingSpend(BigDecimal.ZERO)
+                .category(Category.BASIC)
+                .build()).getId();
+
+        Long first = purchaseService.addPurchase(new PurchaseCreateDto("item", BigDecimal.valueOf(60), null), clientId).id();
+        assertThat(categoryOf(clientId)).isEqualTo(Category.SILVER);
+
+        purchaseService.addPurchase(new PurchaseCreateDto("item", BigDecimal.valueOf(50), null), clientId);
+        assertThat(categoryOf(clientId)).isEqualTo(Category.GOLD);
+
+        purchaseService.refundPurchase(first, null);
+        Client client = clientRepository.findById(clientId).orElseThrow();
+        assertThat(client.getCategory()).isEqualTo(Category.SILVER);
+        assertThat(client.getRollingSpend()).isEqualByComparingTo("50");
+        assertThat(bucketRepository.findAll()).singleElement()
+                .extracting(ClientSpendBucket::getAmount)
+                .satisfies(amount -> assertThat(amount).isEqualByComparingTo("50"));
+        assertThat(outboxEventRepository.findAll())
+                .filteredOn(event -> event.getType() == OutboxEventType.TIER_CHANGED)
+                .extracting(OutboxEvent::getPayload)
+                .satisfiesExactly(
+                        payload -> assertThat(payload).contains("\"from\":\"BASIC\",\"to\":\"SILVER\""),
+                        payload -> assertThat(payload).contains("\"from\":\"SILVER\",\"to\":\"GOLD\""),
+                        payload -> assertThat(payload).contains("\"from\":\"GOLD\",\"to\":\"SILVER\""));
+    }
+
+    @Test
+    void shouldDowngradeAndNotifyWhenSpendLeavesWindowAndSkipUnchangedClients() {
+        Long clientId = clientRepository.save(Client.builder()
+                .username("downgradeclient")
+                .email("downgrade@test.ru")
+                .balance(BigDecimal.valueOf(500))
+                .bonusPoints(0)
+                .totalPurchases(0)
+                .rollingSpend(BigDecimal.ZERO)
+                .category(Category.BASIC)
+                .build()).getId();
+        purchaseService.addPurchase(new PurchaseCreateDto("item", BigDecimal.valueOf(60), null), clientId);
+        LocalDate today = LocalDate.now();
+
+        // Окно еще включает покупку: пересчет не переписывает строку
+        Long version = clientRepository.findById(clientId).orElseThrow().getVersion();
+        assertThat(tierService.recalculateTiers(clientId, clientId, tierProperties.windowStart(today))).isZero();
+        assertThat(clientRepository.findById(clientId).orElseThrow().getVersion()).isEqualTo(version);
+
+        // Корзина покупки выпала из окна
+        assertThat(tierService.recalculateTiers(clientId, clientId, today.withDayOfMonth(1).plusMonths(1))).isEqualTo(1);
+
+        Client client = clientRepository.findById(clientId).orElseThrow();
+        assertThat(client.getCategory()).isEqualTo(Category.BASIC);
+        assertThat(client.getRollingSpend()).isEqualByComparingTo("0");
+        assertThat(outboxEventRepository.findAll())
+                .filteredOn(event -> event.getType() == OutboxEventType.TIER_CHANGED)
+                .extracting(OutboxEvent::getPayload)
+                .last()
+                .satisfies(payload -> assertThat(payload).contains("\"from\":\"SILVER\",\"to\":\"BASIC\""));
+    }
+
+    private Category categoryOf(Long clientId) {
+        return clientRepository.findById(clientId).orElseThrow().getCategory();
+    }
+}
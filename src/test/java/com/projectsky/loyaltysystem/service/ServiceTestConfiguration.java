@@ -0,0 +1,18 @@
+package com.projectsky.loyaltysystem.service;
+
+import com.projectsky.loyaltysystem.accrual.AccrualRuleEngine;
+import com.projectsky.loyaltysystem.config.AccrualConfig;
+import com.projectsky.loyaltysystem.config.CacheConfig;
+import com.projectsky.loyaltysystem.config.TierConfig;
+import com.projectsky.loyaltysystem.metrics.LoyaltyMetrics;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Import;
+
+// Граф сервисов для @DataJpaTest: новый компонент сервисов добавляется сюда, а не в каждый тест.
+// Одинаковый набор импортов позволяет тестам делить один закэшированный контекст
+@TestConfiguration(proxyBeanMethods = false)
+@Import({PurchaseServiceImpl.class, ClientServiceImpl.class, TierServiceImpl.class, PointsLedgerServiceImpl.class, OutboxServiceImpl.class, LoyaltyMetrics.class,
+        AccrualRuleEngine.class, CacheConfig.class, TierConfig.class, AccrualConfig.class, JacksonAutoConfiguration.class})
+public class ServiceTestConfiguration {
+}
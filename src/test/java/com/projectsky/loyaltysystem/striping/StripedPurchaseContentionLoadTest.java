@@ -0,0 +1,179 @@
+package com.projectsky.loyaltysystem.striping;
+
+import com.projectsky.loyaltysystem.dto.PurchaseCreateDto;
+import com.projectsky.loyaltysystem.enums.Category;
+import com.projectsky.loyaltysystem.model.Client;
+import com.projectsky.loyaltysystem.repository.ClientRepository;
+import com.projectsky.loyaltysystem.service.PurchaseService;
+import com.projectsky.loyaltysystem.service.ServiceTestConfiguration;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Покупки горячего клиента: прямые транзакции, ждущие блокировку строки clients, против очередей по клиентам.
+// Встроенная H2 отвечает мгновенно, поэтому соединение добавляет задержку сети к каждому запросу и fsync к фиксации.
+// Запуск: mvn test -Pload -Dtest=StripedPurchaseContentionLoadTest
+@Tag("load")
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:contention;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=60000",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "logging.level.root=WARN"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({ServiceTestConfiguration.class, StripedPurchaseContentionLoadTest.RoundTripLatencyConfig.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class StripedPurchaseContentionLoadTest {
+
+    static final int ROUNDS = 4;
+    static final int THREADS = 64;
+    static final int PURCHASES_PER_THREAD = 40;
+    static final Duration STATEMENT_LATENCY = Duration.ofNanos(300_000);
+    static final Duration COMMIT_LATENCY = Duration.ofMillis(1);
+
+    @Autowired
+    PurchaseService purchaseService;
+
+    @Autowired
+    ClientRepository clientRepository;
+
+    @TestConfiguration(proxyBeanMethods = false)
+    static class RoundTripLatencyConfig {
+
+        @Bean
+        static BeanPostProcessor roundTripLatencyPostProcessor() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    return bean instanceof DataSource dataSource && "dataSource".equals(beanName)
+                            ? new RoundTripLatencyDataSource(dataSource)
+                            : bean;
+                }
+            };
+        }
+    }
+
+    static class RoundTripLatencyDataSource extends DelegatingDataSource {
+
+        RoundTripLatencyDataSource(DataSource target) {
+            super(target);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            Connection connection = super.getConnection();
+            return proxy(Connection.class, (method, args) -> {
+                if ("commit".equals(method.getName())) {
+                    Thread.sleep(COMMIT_LATENCY);
+                }
+                Object result = method.invoke(connection, args);
+                if (result instanceof PreparedStatement statement) {
+                    return proxy(PreparedStatement.class, (statementMethod, statementArgs) -> {
+                        if (statementMethod.getName().startsWith("execute")) {
+                            Thread.sleep(STATEMENT_LATENCY);
+                        }
+                        return statementMethod.invoke(statement, statementArgs);
+                    });
+                }
+                return result;
+            });
+        }
+
+        private static <T> T proxy(Class<T> type, Invocation invocation) {
+            return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+                try {
+                    return invocation.invoke(method, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+            }));
+        }
+
+        interface Invocation {
+            Object invoke(Method method, Object[] args) throws Exception;
+        }
+    }
+
+    @Test
+    void shouldOutrunRowLocksOnHotClient() throws Exception {
+        StripedPurchaseExecutor executor = new StripedPurchaseExecutor(purchaseService, 8, 1000, 256,
+                Duration.ofSeconds(1), Duration.ofSeconds(30));
+        executor.start();
+        try {
+            for (int round = 0; round < ROUNDS; round++) {
+                run("direct", round, purchaseService::addPurchase);
+                run("striped", round, executor::addPurchase);
+            }
+        } finally {
+            executor.stop();
+        }
+    }
+
+    private void run(String mode, int round, BiConsumer<PurchaseCreateDto, Long> purchase) throws Exception {
+        int purchases = THREADS * PURCHASES_PER_THREAD;
+        Long clientId = clientRepository.save(Client.builder()
+                .username(mode + round)
+                .email(mode + round + "@test.ru")
+                .balance(BigDecimal.valueOf(purchases))
+                .bonusPoints(0)
+                .totalPurchases(0)
+                .rollingSpend(BigDecimal.ZERO)
+                .category(Category.BASIC)
+                .build()).getId();
+        PurchaseCreateDto dto = new PurchaseCreateDto("item", BigDecimal.ONE, null);
+        List<Long> latencies = new CopyOnWriteArrayList<>();
+        AtomicInteger errors = new AtomicInteger();
+
+        long started = System.nanoTime();
+        try (ExecutorService threads = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int t = 0; t < THREADS; t++) {
+                threads.submit(() -> {
+                    for (int i = 0; i < PURCHASES_PER_THREAD; i++) {
+                        long purchaseStarted = System.nanoTime();
+                        try {
+                            purchase.accept(dto, clientId);
+                        } catch (RuntimeException e) {
+                            errors.incrementAndGet();
+                        }
+                        latencies.add(System.nanoTime() - purchaseStarted);
+                    }
+                });
+            }
+        }
+        double seconds = (System.nanoTime() - started) / 1e9;
+
+        List<Long> sorted = latencies.stream().sorted().toList();
+        System.out.printf("%s round %d: %.0f purchases/s, p50=%.1f ms, p99=%.1f ms, errors=%d%n", mode, round,
+                purchases / seconds, sorted.get(purchases / 2) / 1e6, sorted.get(purchases * 99 / 100) / 1e6, errors.get());
+        assertThat(errors).hasValue(0);
+        assertThat(clientRepository.findById(clientId).orElseThrow().getBalance()).isEqualByComparingTo(BigDecimal.ZERO);
+    }
+}
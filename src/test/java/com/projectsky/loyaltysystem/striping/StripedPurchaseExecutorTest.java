@@ -0,0 +1,151 @@
+package com.projectsky.loyaltysystem.striping;
+
+import com.projectsky.loyaltysystem.dto.PurchaseCreateDto;
+import com.projectsky.loyaltysystem.enums.Category;
+import com.projectsky.loyaltysystem.exception.ClientNotFoundException;
+import com.projectsky.loyaltysystem.exception.NotEnoughBalanceException;
+import com.projectsky.loyaltysystem.exception.WriteQueueFullException;
+import com.projectsky.loyaltysystem.model.Client;
+import com.projectsky.loyaltysystem.repository.ClientRepository;
+import com.projectsky.loyaltysystem.repository.OutboxEventRepository;
+import com.projectsky.loyaltysystem.repository.PurchaseRepository;
+import com.projectsky.loyaltysystem.service.PurchaseService;
+import com.projectsky.loyaltysystem.service.ServiceTestConfiguration;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@DataJpaTest
+@Import(ServiceTestConfiguration.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class StripedPurchaseExecutorTest {
+
+    @Autowired
+    PurchaseService purchaseService;
+
+    @Autowired
+    ClientRepository clientRepository;
+
+    @Autowired
+    PurchaseRepository purchaseRepository;
+
+    @Autowired
+    OutboxEventRepository outboxEventRepository;
+
+    StripedPurchaseExecutor executor;
+
+    @BeforeEach
+    void setUp() {
+        executor = new StripedPurchaseExecutor(purchaseService, 2, 100, 16, Duration.ofSeconds(5), Duration.ofSeconds(30));
+        executor.start();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        executor.stop();
+        outboxEventRepository.deleteAll();
+        purchaseRepository.deleteAll();
+        clientRepository.deleteAll();
+    }
+
+    @Test
+    void shouldSerializeConcurrentPurchasesOfHotClient() throws Exception {
+        Long clientId = clientRepository.save(Client.builder()
+                .username("hotclient")
+                .email("hot@test.ru")
+                .balance(BigDecimal.valueOf(150))
+                .bonusPoints(0)
+                .totalPurchases(0)
+                .rollingSpend(BigDecimal.ZERO)
+                .category(Category.BASIC)
+                .build()).getId();
+
+        // 200 покупок по 1 на балансе 150: ровно 150 проходят, остальные получают отказ
+        List<Future<?>> results = new ArrayList<>();
+        try (ExecutorService threads = Executors.newFixedThreadPool(16)) {
+            for (int i = 0; i < 200; i++) {
+                results.add(threads.submit(() -> executor.addPurchase(new PurchaseCreateDto("item", BigDecimal.ONE, null), clientId)));
+            }
+        }
+        long rejected = results.stream().filter(result -> {
+            try {
+                result.get();
+                return false;
+            } catch (Exception e) {
+                assertThat(e.getCause()).isInstanceOf(NotEnoughBalanceException.class);
+                return true;
+            }
+        }).count();
+
+        Client client = clientRepository.findById(clientId).orElseThrow();
+        assertThat(rejected).isEqualTo(50);
+        assertThat(client.getBalance()).isEqualByComparingTo("0");
+        assertThat(client.getTotalPurchases()).isEqualTo(150);
+        assertThat(purchaseRepository.count()).isEqualTo(150);
+    }
+
+    @Test
+    void shouldReportMissingClient() {
+        assertThatThrownBy(() -> executor.addPurchase(new PurchaseCreateDto("item", BigDecimal.ONE, null), -1L))
+                .isInstanceOf(ClientNotFoundException.class);
+    }
+
+    @Test
+    void shouldRejectPurchasesAfterStop() throws InterruptedException {
+        executor.stop();
+
+        assertThatThrownBy(() -> executor.addPurchase(new PurchaseCreateDto("item", BigDecimal.ONE, null), 1L))
+                .isInstanceOf(WriteQueueFullException.class);
+    }
+
+    @Test
+    void shouldFailPurchaseWhenWorkerHitsError() throws InterruptedException {
+        PurchaseService failing = mock(PurchaseService.class);
+        when(failing.addPurchases(anyList())).thenThrow(new StackOverflowError());
+        StripedPurchaseExecutor failingExecutor = new StripedPurchaseExecutor(failing, 1, 10, 16,
+                Duration.ofSeconds(1), Duration.ofSeconds(5));
+        failingExecutor.start();
+        try {
+            assertThatThrownBy(() -> failingExecutor.addPurchase(new PurchaseCreateDto("item", BigDecimal.ONE, null), 1L))
+                    .isInstanceOf(IllegalStateException.class)
+                    .hasCauseInstanceOf(StackOverflowError.class);
+            // Поток полосы пережил сбой и принимает следующую покупку
+            assertThatThrownBy(() -> failingExecutor.addPurchase(new PurchaseCreateDto("item", BigDecimal.ONE, null), 1L))
+                    .hasCauseInstanceOf(StackOverflowError.class);
+        } finally {
+            failingExecutor.stop();
+        }
+    }
+
+    @Test
+    void shouldGiveUpOnPurchaseStuckInQueue() throws InterruptedException {
+        // Поток полосы не запущен: покупка остается в очереди, вызывающий забирает ее по таймауту
+        StripedPurchaseExecutor idle = new StripedPurchaseExecutor(purchaseService, 1, 10, 16,
+                Duration.ofSeconds(1), Duration.ofMillis(200));
+
+        assertThatThrownBy(() -> idle.addPurchase(new PurchaseCreateDto("item", BigDecimal.ONE, null), 1L))
+                .isInstanceOf(WriteQueueFullException.class);
+        idle.start();
+        idle.stop();
+        assertThat(purchaseRepository.count()).isZero();
+    }
+}
@@ -0,0 +1,26 @@
+-- Схема и строки, которые оставил ddl-auto до перехода на Liquibase: id клиентов из IDENTITY,
+-- последовательность покупок отстала от данных. Скрипт выполняется при каждом открытии соединения
+CREATE TABLE IF NOT EXISTS clients (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    username VARCHAR(255) NOT NULL UNIQUE,
+    email VARCHAR(255) NOT NULL UNIQUE,
+    balance NUMERIC(38, 2) NOT NULL,
+    bonus_points INTEGER NOT NULL,
+    category VARCHAR(255),
+    total_purchases INTEGER NOT NULL,
+    last_purchase_at TIMESTAMP
+);
+CREATE TABLE IF NOT EXISTS purchases (
+    id BIGINT PRIMARY KEY,
+    name VARCHAR(255),
+    price NUMERIC(38, 2),
+    purchase_date TIMESTAMP,
+    status VARCHAR(255),
+    client_id BIGINT,
+    CONSTRAINT fk_purchases_client FOREIGN KEY (client_id) REFERENCES clients (id)
+);
+CREATE SEQUENCE IF NOT EXISTS purchases_seq START WITH 1 INCREMENT BY 50;
+MERGE INTO clients (id, username, email, balance, bonus_points, category, total_purchases, last_purchase_at) KEY (id)
+    VALUES (120, 'legacy', 'legacy@test.ru', 100, 0, 'BASIC', 1, TIMESTAMP '2024-05-01 10:00:00');
+MERGE INTO purchases (id, name, price, purchase_date, status, client_id) KEY (id)
+    VALUES (480, 'legacy item', 10, TIMESTAMP '2024-05-01 10:00:00', 'SUCCESSFUL', 120);